@@ -1,10 +1,19 @@
 package io.github.coolcrabs.brachyura.bootstrap;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
@@ -18,9 +27,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
 
 public class Main {
     public static final int VERSION = 0;
+    static final int DAEMON_PROTOCOL_VERSION = 1;
+    static final int DAEMON_OUT = 1;
+    static final int DAEMON_ERR = 2;
+    static final int DAEMON_EXIT = 3;
+    static final int DAEMON_REJECTED = 4;
     static final Path BOOTSTRAP_DIR;
 
     public static void main(String[] args) throws Throwable {
@@ -52,6 +67,10 @@ public class Main {
             }
         }
         classpath.addAll(getBuildscriptDependencies(projectPath));
+        Integer daemonExitCode = runInDaemon(projectPath, classpath, args);
+        if (daemonExitCode != null) {
+            System.exit(daemonExitCode);
+        }
         URL[] urls = new URL[classpath.size()];
         for (int i = 0; i < classpath.size(); i++) {
             urls[i] = classpath.get(i).toUri().toURL();
@@ -67,6 +86,79 @@ public class Main {
         ).invokeExact(args, projectPath, classpath);
     }
 
+    /**
+     * Forwards the invocation to the daemon started for the project with the {@code daemon} argument, if one is running.
+     * Keep the protocol in sync with io.github.coolcrabs.brachyura.project.BrachyuraDaemon.
+     *
+     * @return The exit code, or null if the invocation has to be run in this process
+     */
+    static Integer runInDaemon(Path projectPath, List<Path> classpath, String[] args) throws IOException {
+        boolean stop = args.length == 2 && "daemon".equalsIgnoreCase(args[0]) && "stop".equalsIgnoreCase(args[1]);
+        if (Boolean.getBoolean("brachyura.noDaemon") || (args.length != 0 && !stop && ("daemon".equalsIgnoreCase(args[0]) || "createTemplate".equalsIgnoreCase(args[0])))) {
+            return null;
+        }
+        Path infoFile = projectPath.resolve(".brachyura").resolve("daemon.properties");
+        if (!Files.isRegularFile(infoFile)) {
+            if (stop) {
+                System.out.println("No brachyura daemon is running");
+                return 0;
+            }
+            return null;
+        }
+        Properties info = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(infoFile)) {
+            info.load(reader);
+        }
+        boolean sent = false;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(info.getProperty("port"))), 1000);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(DAEMON_PROTOCOL_VERSION);
+            out.writeUTF(info.getProperty("token"));
+            out.writeInt(classpath.size());
+            for (Path p : classpath) {
+                out.writeUTF(p.toString());
+            }
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            sent = true;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                int type = in.readUnsignedByte();
+                if (type == DAEMON_OUT || type == DAEMON_ERR) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    PrintStream stream = type == DAEMON_OUT ? System.out : System.err;
+                    stream.write(bytes);
+                    stream.flush();
+                } else if (type == DAEMON_EXIT) {
+                    return in.readInt();
+                } else if (type == DAEMON_REJECTED) {
+                    System.out.println("Brachyura daemon rejected the invocation, running it in this process: " + in.readUTF());
+                    return null;
+                } else {
+                    throw new IOException("Unknown daemon frame " + type);
+                }
+            }
+        } catch (IOException e) {
+            if (sent) {
+                // The task may have partially run, so don't run it again
+                System.err.println("Lost connection to the brachyura daemon: " + e);
+                return 1;
+            }
+            if (stop) {
+                System.out.println("No brachyura daemon is running");
+                Files.deleteIfExists(infoFile);
+                return 0;
+            }
+            System.out.println("Brachyura daemon not reachable, running in this process: " + e);
+            return null;
+        }
+    }
+
     private static Collection<? extends Path> getBuildscriptDependencies(Path projectPath) throws Exception {
         Path buildscriptDir = projectPath.resolve("buildscript");
         if (!Files.isDirectory(buildscriptDir)) {
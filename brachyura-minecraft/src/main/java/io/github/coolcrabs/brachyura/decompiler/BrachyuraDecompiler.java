@@ -2,10 +2,15 @@ package io.github.coolcrabs.brachyura.decompiler;
 
 import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
 import io.github.coolcrabs.brachyura.maven.MavenId;
+import io.github.coolcrabs.brachyura.project.BackgroundTasks;
 import io.github.coolcrabs.brachyura.util.AtomicDirectory;
+import io.github.coolcrabs.brachyura.util.PathUtil;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -14,6 +19,12 @@ import net.fabricmc.mappingio.tree.MappingTree;
 import org.tinylog.Logger;
 
 public abstract class BrachyuraDecompiler {
+    /**
+     * Decompilations started by {@link #getDecompiledLazily(Path, List, Path, MappingTree, int, DecompilePriority)}
+     * that are still running, by absolute result directory
+     */
+    private static final Map<Path, LazyDecompileResult> LAZY_DECOMPILATIONS = new HashMap<>();
+
     public abstract String getName();
     public abstract String getVersion();
     public abstract int getThreadCount();
@@ -27,11 +38,15 @@ public abstract class BrachyuraDecompiler {
     }
     
     public DecompileResult getDecompiled(Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace) {
+        return getDecompiled(jar, classpath, resultDir, tree, namespace, DecompilePriority.NONE, null);
+    }
+
+    private DecompileResult getDecompiled(Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace, @NotNull DecompilePriority priority, @Nullable LazySources lazySources) {
         if (!Files.exists(resultDir)) {
             Logger.info("Decompiling {} using {} {} with {} threads", jar.getFileName(), getName(), getVersion(), getThreadCount());
             long start = System.currentTimeMillis();
             try (AtomicDirectory a = new AtomicDirectory(resultDir)) {
-                decompileAndLinemap(jar, classpath, a.tempPath, tree, namespace);
+                decompileAndLinemap(jar, classpath, a.tempPath, tree, namespace, priority, lazySources);
                 a.commit();
             }
             long end = System.currentTimeMillis();
@@ -39,6 +54,63 @@ public abstract class BrachyuraDecompiler {
         }
         return getDecompileResult(jar, resultDir);
     }
+
+    /**
+     * Decompiles in the background unless the result already exists, so that the jar can be used right away. Until the
+     * decompilation is done, the returned jar is the input jar rather than the linemapped one, and the returned sources
+     * jar only holds the classes that were decompiled so far, see {@link LazySources}. Asking again for a result that
+     * is still being decompiled returns the running decompilation.
+     *
+     * <p>The decompilation is a {@link BackgroundTasks background task}: a daemon lets it finish while serving other
+     * invocations, otherwise brachyura waits for it before exiting.
+     *
+     * @param priority The classes to decompile first, if the decompiler supports it
+     */
+    public LazyDecompileResult getDecompiledLazily(Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace, @NotNull DecompilePriority priority) {
+        Path key = resultDir.toAbsolutePath().normalize();
+        synchronized (LAZY_DECOMPILATIONS) {
+            LazyDecompileResult running = LAZY_DECOMPILATIONS.get(key);
+            if (running != null) {
+                return running;
+            }
+            Path lazySourcesJar = resultDir.resolveSibling(resultDir.getFileName() + "-lazy-sources.jar");
+            if (Files.exists(resultDir)) {
+                // Only needed until the IDE is pointed at the complete sources
+                PathUtil.deleteIfExists(lazySourcesJar);
+                DecompileResult result = getDecompileResult(jar, resultDir);
+                return new LazyDecompileResult(result.jar, result.sourcesJar, CompletableFuture.completedFuture(result));
+            }
+            LazyDecompileResult lazy = decompileLazily(jar, classpath, resultDir, tree, namespace, priority, lazySourcesJar);
+            LAZY_DECOMPILATIONS.put(key, lazy);
+            lazy.completion.whenComplete((result, t) -> {
+                synchronized (LAZY_DECOMPILATIONS) {
+                    LAZY_DECOMPILATIONS.remove(key);
+                }
+            });
+            return lazy;
+        }
+    }
+
+    private LazyDecompileResult decompileLazily(Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace, @NotNull DecompilePriority priority, Path lazySourcesJar) {
+        LazySources lazySources = new LazySources(lazySourcesJar);
+        CompletableFuture<DecompileResult> completion = new CompletableFuture<>();
+        BackgroundTasks.add("decompiling " + jar.getFileName(), completion);
+        Thread thread = new Thread(() -> {
+            try {
+                DecompileResult result = getDecompiled(jar, classpath, resultDir, tree, namespace, priority, lazySources);
+                lazySources.complete(result.sourcesJar);
+                Logger.info("Sources of {} are complete", jar.getFileName());
+                completion.complete(result);
+            } catch (Throwable t) {
+                Logger.error("Exception Decompiling " + jar.getFileName());
+                Logger.error(t);
+                completion.completeExceptionally(t);
+            }
+        }, "Lazy Decompiler");
+        thread.start();
+        Logger.info("Decompiling {} in the background, sources appear in {} as they are decompiled", jar.getFileName(), lazySourcesJar);
+        return new LazyDecompileResult(jar, lazySourcesJar, completion);
+    }
     
     // Result dir is already atomic
     protected DecompileResult getDecompileResult(Path jar, Path resultDir) {
@@ -48,6 +120,15 @@ public abstract class BrachyuraDecompiler {
     }
     
     protected abstract void decompileAndLinemap(@NotNull Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace);
+
+    /**
+     * Decompiles for {@link #getDecompiledLazily(Path, List, Path, MappingTree, int, DecompilePriority)}. Decompilers
+     * that can should decompile the classes of the priority first and add sources to the lazy sources as they are done.
+     * By default, the sources only appear once everything is decompiled.
+     */
+    protected void decompileAndLinemap(@NotNull Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace, @NotNull DecompilePriority priority, @Nullable LazySources lazySources) {
+        decompileAndLinemap(jar, classpath, resultDir, tree, namespace);
+    }
     
     public static class DecompileResult {
         // Original jar but is linemapped in some capacity if decompiler can do so
@@ -66,4 +147,15 @@ public abstract class BrachyuraDecompiler {
             return new JavaJarDependency(jar, sourcesJar, id);
         }
     }
+
+    public static class LazyDecompileResult extends DecompileResult {
+        // Completed with the final result once the decompilation is done
+        @NotNull
+        public final CompletableFuture<DecompileResult> completion;
+
+        public LazyDecompileResult(@NotNull Path jar, Path sourcesJar, @NotNull CompletableFuture<DecompileResult> completion) {
+            super(jar, sourcesJar);
+            this.completion = completion;
+        }
+    }
 }
@@ -0,0 +1,247 @@
+package io.github.coolcrabs.brachyura.decompiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.ClassLineMap;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodId;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodLineMap;
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+
+/**
+ * The decompiled sources and line maps of single classes, shared by all decompilations with the same decompiler so that
+ * classes whose inputs did not change are not decompiled again, for instance when only a few mappings were updated.
+ *
+ * <p>Entries are looked up by a key that the decompiler derives from everything the decompiled output depends on. Every
+ * entry is a gzipped file named after its key, written atomically so that several processes can share the cache.
+ * The least recently used entries are deleted by {@link #prune()} once there are more than the maximum.
+ */
+public class DecompileCache {
+    private static final int VERSION = 1;
+
+    /**
+     * Enough for the classes of a few minecraft versions with a few sets of mappings each
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    @NotNull
+    private final Path directory;
+    private final int maxEntries;
+
+    public DecompileCache(@NotNull Path directory) {
+        this(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    public DecompileCache(@NotNull Path directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param key A hexadecimal hash of the inputs of the decompiled classes
+     * @return The cached output of the classes, or null if they were not decompiled with these inputs before
+     */
+    @Nullable
+    public Entry get(@NotNull String key) {
+        Path file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            Map<String, String> sources = new HashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                String path = in.readUTF();
+                byte[] source = new byte[in.readInt()];
+                in.readFully(source);
+                sources.put(path, new String(source, StandardCharsets.UTF_8));
+            }
+            Map<String, ClassLineMap> lineMaps = new HashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                String className = in.readUTF();
+                lineMaps.put(className, readClassLineMap(in));
+            }
+            // Marks the entry as recently used for pruning
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(sources, lineMaps);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Logger.warn("Unable to read decompile cache entry {}", file.toAbsolutePath());
+            Logger.warn(e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the output of decompiled classes, replacing any output stored under the same key.
+     */
+    public void put(@NotNull String key, @NotNull Entry entry) {
+        Path file = getFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            try (AtomicFile atomicFile = new AtomicFile(file)) {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(atomicFile.tempPath))))) {
+                    out.writeInt(VERSION);
+                    out.writeInt(entry.sources.size());
+                    for (Map.Entry<String, String> source : entry.sources.entrySet()) {
+                        out.writeUTF(source.getKey());
+                        byte[] bytes = source.getValue().getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    }
+                    out.writeInt(entry.lineMaps.size());
+                    for (Map.Entry<String, ClassLineMap> lineMap : entry.lineMaps.entrySet()) {
+                        out.writeUTF(lineMap.getKey());
+                        writeClassLineMap(out, lineMap.getValue());
+                    }
+                }
+                atomicFile.commit();
+            }
+        } catch (IOException e) {
+            // Only means that the classes will be decompiled again
+            Logger.warn("Unable to write decompile cache entry {}", file.toAbsolutePath());
+            Logger.warn(e);
+        }
+    }
+
+    /**
+     * Deletes all but the most recently used entries
+     */
+    public void prune() {
+        List<Map.Entry<Path, FileTime>> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(file, attributes.lastModifiedTime()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Pruned by another process
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            Logger.warn("Unable to prune decompile cache {}", directory.toAbsolutePath());
+            Logger.warn(e);
+            return;
+        }
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        entries.sort(Map.Entry.<Path, FileTime>comparingByValue().reversed());
+        for (Map.Entry<Path, FileTime> entry : entries.subList(maxEntries, entries.size())) {
+            PathUtil.deleteIfExists(entry.getKey());
+        }
+    }
+
+    @NotNull
+    private Path getFile(@NotNull String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static ClassLineMap readClassLineMap(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            int[] stupid = new int[in.readInt() * 2];
+            for (int i = 0; i < stupid.length; i++) {
+                stupid[i] = in.readInt();
+            }
+            return new ClassLineMap(stupid);
+        }
+        Map<MethodId, MethodLineMap> methods = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            MethodId id = new MethodId(in.readUTF(), in.readUTF());
+            if (in.readBoolean()) {
+                List<LineNumberTableEntry> replace = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; j--) {
+                    replace.add(new LineNumberTableEntry(in.readShort(), in.readShort()));
+                }
+                methods.put(id, new MethodLineMap(replace));
+            } else {
+                methods.put(id, new MethodLineMap(readIntMap(in)));
+            }
+        }
+        return new ClassLineMap(methods);
+    }
+
+    private static void writeClassLineMap(DataOutputStream out, ClassLineMap lineMap) throws IOException {
+        out.writeBoolean(lineMap.isStupid);
+        if (lineMap.isStupid) {
+            writeIntMap(out, lineMap.stupid);
+            return;
+        }
+        out.writeInt(lineMap.methods.size());
+        for (Map.Entry<MethodId, MethodLineMap> method : lineMap.methods.entrySet()) {
+            out.writeUTF(method.getKey().name);
+            out.writeUTF(method.getKey().desc);
+            MethodLineMap methodLineMap = method.getValue();
+            out.writeBoolean(methodLineMap.isReplace);
+            if (methodLineMap.isReplace) {
+                out.writeInt(methodLineMap.replace.size());
+                for (LineNumberTableEntry entry : methodLineMap.replace) {
+                    out.writeShort(entry.startPc);
+                    out.writeShort(entry.lineNumber);
+                }
+            } else {
+                writeIntMap(out, methodLineMap.remap);
+            }
+        }
+    }
+
+    private static Map<Integer, Integer> readIntMap(DataInputStream in) throws IOException {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            map.put(in.readInt(), in.readInt());
+        }
+        return map;
+    }
+
+    private static void writeIntMap(DataOutputStream out, Map<Integer, Integer> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    public static class Entry {
+        /**
+         * The decompiled sources by their path in the sources jar.
+         */
+        @NotNull
+        public final Map<String, String> sources;
+        /**
+         * The line maps of the decompiled classes, by internal name.
+         */
+        @NotNull
+        public final Map<String, ClassLineMap> lineMaps;
+
+        public Entry(@NotNull Map<String, String> sources, @NotNull Map<String, ClassLineMap> lineMaps) {
+            this.sources = sources;
+            this.lineMaps = lineMaps;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.coolcrabs.brachyura.decompiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * The classes a decompilation running in the background should decompile first, because a developer is likely to open
+ * them soon. See {@link BrachyuraDecompiler#getDecompiledLazily(Path, java.util.List, Path, net.fabricmc.mappingio.tree.MappingTree, int, DecompilePriority)}.
+ */
+public class DecompilePriority {
+    public static final DecompilePriority NONE = new DecompilePriority(Collections.emptySet(), Collections.emptySet());
+
+    private static final Pattern IMPORT = Pattern.compile("^\\s*import\\s+(?:static\\s+)?([\\w.$]+?)(\\.\\*)?\\s*;");
+
+    /**
+     * Top level classes in internal form.
+     */
+    private final Set<String> classes;
+    /**
+     * Packages in internal form, with a trailing slash.
+     */
+    private final Set<String> packages;
+
+    public DecompilePriority(@NotNull Set<String> classes, @NotNull Set<String> packages) {
+        this.classes = classes;
+        this.packages = packages;
+    }
+
+    /**
+     * Prioritizes the classes imported by java sources, such as those of a mod, assuming that package names start
+     * with a lower case letter and class names do not.
+     *
+     * @param srcDirs The source directories to scan
+     */
+    @NotNull
+    public static DecompilePriority fromSources(@NotNull Path... srcDirs) {
+        Set<String> classes = new HashSet<>();
+        Set<String> packages = new HashSet<>();
+        for (Path srcDir : srcDirs) {
+            if (!Files.isDirectory(srcDir)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(srcDir)) {
+                files.filter(file -> file.toString().endsWith(".java")).forEach(file -> {
+                    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                            Matcher matcher = IMPORT.matcher(line);
+                            if (matcher.find()) {
+                                addImport(matcher.group(1), matcher.group(2) != null, classes, packages);
+                            }
+                        }
+                    } catch (IOException e) {
+                        Logger.warn("Unable to read imports of {}", file);
+                        Logger.warn(e);
+                    }
+                });
+            } catch (IOException e) {
+                Logger.warn("Unable to scan {} for imports", srcDir);
+                Logger.warn(e);
+            }
+        }
+        return new DecompilePriority(classes, packages);
+    }
+
+    private static void addImport(String name, boolean wildcard, Set<String> classes, Set<String> packages) {
+        StringBuilder internalName = new StringBuilder();
+        for (String segment : name.split("\\.")) {
+            if (internalName.length() > 0) {
+                internalName.append('/');
+            }
+            internalName.append(segment);
+            if (!segment.isEmpty() && !Character.isLowerCase(segment.charAt(0))) {
+                // Nested classes and static members of the top level class
+                classes.add(internalName.toString());
+                return;
+            }
+        }
+        if (wildcard) {
+            packages.add(internalName.append('/').toString());
+        }
+    }
+
+    /**
+     * @param topLevelClass A top level class in internal form
+     */
+    public boolean isPriority(@NotNull String topLevelClass) {
+        if (classes.contains(topLevelClass)) {
+            return true;
+        }
+        int slash = topLevelClass.lastIndexOf('/');
+        return slash != -1 && packages.contains(topLevelClass.substring(0, slash + 1));
+    }
+
+    public boolean isEmpty() {
+        return classes.isEmpty() && packages.isEmpty();
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.coolcrabs.brachyura.decompiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.StreamUtil;
+
+/**
+ * A sources jar that is filled while its classes are decompiled in the background. It starts out without sources, so
+ * IDEs fall back to their own decompiler for the classes that are not in it yet, and is rewritten whenever the
+ * decompiler {@link #flush() flushes} it. Sources left over from an earlier, interrupted decompilation are kept.
+ */
+public class LazySources {
+    @NotNull
+    private final Path sourcesJar;
+    private final Map<String, byte[]> sources = new ConcurrentHashMap<>();
+    private boolean completed = false;
+
+    public LazySources(@NotNull Path sourcesJar) {
+        this.sourcesJar = sourcesJar;
+        if (Files.exists(sourcesJar)) {
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(sourcesJar))) {
+                for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                    if (!entry.isDirectory()) {
+                        sources.put("/" + entry.getName(), StreamUtil.readFullyAsBytes(in));
+                    }
+                }
+            } catch (IOException e) {
+                Logger.warn("Unable to read partial sources {}", sourcesJar.toAbsolutePath());
+                Logger.warn(e);
+                sources.clear();
+                flush();
+            }
+        } else {
+            flush();
+        }
+    }
+
+    @NotNull
+    public Path getSourcesJar() {
+        return sourcesJar;
+    }
+
+    /**
+     * Adds a decompiled source, which appears in the jar on the next {@link #flush()}.
+     *
+     * @param path The path of the source in the jar, such as {@code /a/b/C.java}
+     * @param source The source, UTF-8 encoded
+     */
+    public void add(@NotNull String path, byte @NotNull [] source) {
+        sources.put(path, source);
+    }
+
+    /**
+     * Writes all sources added so far to the jar.
+     */
+    public synchronized void flush() {
+        if (completed) {
+            return;
+        }
+        try (AtomicFile atomicFile = new AtomicFile(sourcesJar)) {
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(atomicFile.tempPath))) {
+                for (Map.Entry<String, byte[]> source : new TreeMap<>(sources).entrySet()) {
+                    out.putNextEntry(new ZipEntry(source.getKey().substring(1)));
+                    out.write(source.getValue());
+                    out.closeEntry();
+                }
+            }
+            atomicFile.commit();
+        } catch (IOException e) {
+            // The IDE keeps the previous sources
+            Logger.warn("Unable to write partial sources {}", sourcesJar.toAbsolutePath());
+            Logger.warn(e);
+        }
+    }
+
+    /**
+     * Replaces the partial sources with the sources of the finished decompilation.
+     */
+    synchronized void complete(@NotNull Path completeSourcesJar) {
+        try (AtomicFile atomicFile = new AtomicFile(sourcesJar)) {
+            Files.copy(completeSourcesJar, atomicFile.tempPath, StandardCopyOption.REPLACE_EXISTING);
+            atomicFile.commit();
+        } catch (IOException e) {
+            Logger.warn("Unable to write sources {}", sourcesJar.toAbsolutePath());
+            Logger.warn(e);
+        }
+        completed = true;
+        sources.clear();
+    }
+}
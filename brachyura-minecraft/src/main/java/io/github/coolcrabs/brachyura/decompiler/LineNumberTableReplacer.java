@@ -1,577 +1,358 @@
 package io.github.coolcrabs.brachyura.decompiler;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.ClassLineMap;
 import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodId;
+import io.github.coolcrabs.brachyura.processing.sinks.ZipProcessingSink;
+import io.github.coolcrabs.brachyura.processing.sources.ZipProcessingSource;
 import io.github.coolcrabs.brachyura.util.AtomicFile;
-import io.github.coolcrabs.brachyura.util.FileSystemUtil;
-import io.github.coolcrabs.brachyura.util.PathUtil;
+import io.github.coolcrabs.brachyura.util.StreamUtil;
 import io.github.coolcrabs.brachyura.util.Util;
 
 import org.jetbrains.annotations.NotNull;
 import org.tinylog.Logger;
 
-// Basically a mini class file reader + writer
-// Supports round trip with no unneeded changes
+// Basically a mini class file patcher
+// Only the LineNumberTable attributes of methods and the lengths around them are rewritten, everything else is copied as is
 // ow2 asm didn't have good apis for what I needed
 public class LineNumberTableReplacer {
 
-    static final String CODE_UTF8 = "Code";
-    static final String LINE_NUMBER_TABLE_UTF8 = "LineNumberTable";
+    static final byte[] CODE_UTF8 = "Code".getBytes(StandardCharsets.UTF_8);
+    static final byte[] LINE_NUMBER_TABLE_UTF8 = "LineNumberTable".getBytes(StandardCharsets.UTF_8);
     static final boolean REMAP_DEBUG = Boolean.getBoolean("brachyura.debugLineNumberRemap");
 
     public static void replaceLineNumbers(@NotNull Path sourceJar, Path targetJar, DecompileLineNumberTable table) {
-        try {
-            try (AtomicFile af = new AtomicFile(targetJar)) {
-                Files.deleteIfExists(af.tempPath);
-                try (
-                    FileSystem source = FileSystemUtil.newJarFileSystem(sourceJar);
-                    FileSystem target = FileSystemUtil.newJarFileSystem(af.tempPath);
-                ) {
-                    Files.walkFileTree(source.getPath("/"), new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                            if (file.toString().endsWith(".class")) {
-                                int lineNumberConstIndex = -1;
-                                ClassFile c;
-                                try (DataInputStream in = new DataInputStream(PathUtil.inputStream(file))) {
-                                    c = readClassFile(in);
-                                }
-                                String cName = ((ConstantUtf8)cpEntry(c.constantPool, ((ConstantClass) cpEntry(c.constantPool, c.thisClass)).nameIndex)).data;
-                                ClassLineMap mmap = table.classes.get(cName);
-                                if (mmap != null) {
-                                    for (Method method : c.methods) {
-                                        MethodId mid = new MethodId(((ConstantUtf8) cpEntry(c.constantPool, method.nameIndex)).data, ((ConstantUtf8) cpEntry(c.constantPool, method.descriptorIndex)).data);
-                                        DecompileLineNumberTable.MethodLineMap mln = mmap.isStupid ? null : mmap.methods.get(mid);
-                                        for (Attribute attr : method.attributes) {
-                                            if (attr instanceof AttributeCode) {
-                                                AttributeCode ac = (AttributeCode) attr;
-                                                if (mln != null && mln.isReplace) {
-                                                    AttributeLineNumberTable lnAttr = null;
-                                                    boolean foundFirstLnTable = false;
-                                                    for (int i = 0; i < ac.attributes.length; i++) {
-                                                        if (ac.attributes[i] instanceof AttributeLineNumberTable) {
-                                                            if (foundFirstLnTable) {
-                                                                ((AttributeLineNumberTable)ac.attributes[i]).lineNumberTable = new LineNumberTableEntry[0];
-                                                            } else {
-                                                                lnAttr = (AttributeLineNumberTable) ac.attributes[i];
-                                                                foundFirstLnTable = true;
-                                                            }
-                                                        }
-                                                    }
-                                                    if (!foundFirstLnTable) {
-                                                        ac.attributes = Arrays.copyOf(ac.attributes, ac.attributes.length + 1);
-                                                        ac.attributes[ac.attributes.length - 1] = lnAttr = new AttributeLineNumberTable();
-                                                        if (lineNumberConstIndex == -1) {
-                                                            lineNumberConstIndex = getOrCreateUtf8Const(LINE_NUMBER_TABLE_UTF8, c);
-                                                        }
-                                                    }
+        replaceLineNumbers(sourceJar, targetJar, table, Runtime.getRuntime().availableProcessors());
+    }
 
-                                                    Objects.requireNonNull(lnAttr).lineNumberTable = mln.replace.toArray(new LineNumberTableEntry[mln.replace.size()]); 
-                                                } else {
-                                                    for (int i = 0; i < ac.attributes.length; i++) {
-                                                        if (ac.attributes[i] instanceof AttributeLineNumberTable) {
-                                                            if (!mmap.isStupid && mln == null) {
-                                                                if (REMAP_DEBUG) Logger.info("Missing method map in {} {}", file, cpEntry(c.constantPool, method.nameIndex));
-                                                                continue;
-                                                            }
-                                                            Map<Integer, Integer> remap = mmap.isStupid ? mmap.stupid : Objects.requireNonNull(mln).remap;
-                                                            LineNumberTableEntry[] lnt = ((AttributeLineNumberTable)ac.attributes[i]).lineNumberTable;
-                                                            for (int j = 0; j < lnt.length; j++) {
-                                                                Integer rmp = remap.get((int)lnt[j].lineNumber);
-                                                                if (rmp != null) {
-                                                                    if (REMAP_DEBUG) Logger.info("Remapping {} {} in {} {}", lnt[j].lineNumber, rmp, file, cpEntry(c.constantPool, method.nameIndex));
-                                                                    lnt[j] = new LineNumberTableEntry(lnt[j].startPc, rmp);
-                                                                } else {
-                                                                    if (REMAP_DEBUG) Logger.info("Missing remap {} in {} {}", lnt[j].lineNumber, file, cpEntry(c.constantPool, method.nameIndex));
-                                                                }
-                                                            }
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                Path outPath = target.getPath(file.toString());
-                                try (DataOutputStream out = new DataOutputStream(PathUtil.outputStream(outPath))) {
-                                    writeClassFile(out, c);
-                                }
-                            } else {
-                                Path targetPath = target.getPath(file.toString());
-                                Files.createDirectories(targetPath.getParent());
-                                Files.copy(file, targetPath);
+    /**
+     * Classes are matched to the table by their path in the jar. Entries without line maps are copied without being
+     * decompressed, the others are patched and compressed on {@code parallelism} threads.
+     */
+    public static void replaceLineNumbers(@NotNull Path sourceJar, Path targetJar, DecompileLineNumberTable table, int parallelism) {
+        try (AtomicFile af = new AtomicFile(targetJar)) {
+            try (
+                ZipProcessingSource source = new ZipProcessingSource(sourceJar);
+                ZipProcessingSink sink = new ZipProcessingSink(af.tempPath, parallelism);
+            ) {
+                source.getInputs((in, id) -> {
+                    ClassLineMap mmap = id.path.endsWith(".class") ? table.classes.get(id.path.substring(0, id.path.length() - ".class".length())) : null;
+                    if (mmap == null) {
+                        sink.sink(in, id);
+                    } else {
+                        // Runs on the threads of the sink
+                        sink.sink(() -> {
+                            byte[] bytes;
+                            try (InputStream is = in.get()) {
+                                bytes = StreamUtil.readFullyAsBytes(is);
+                            } catch (IOException e) {
+                                throw Util.sneak(e);
                             }
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
-                }
-                af.commit();
+                            return new ByteArrayInputStream(replaceLineNumbers(bytes, mmap, id.path));
+                        }, id);
+                    }
+                });
             }
-        } catch (Exception e) {
-            throw Util.sneak(e);
+            af.commit();
         }
     }
-    
-    static int getOrCreateUtf8Const(String constant, ClassFile clazz) {
-        for (int i = 0; i < clazz.constantPool.length; i++) {
-            Constant c = clazz.constantPool[i];
-            if (c instanceof ConstantUtf8) {
-                ConstantUtf8 utf8 = (ConstantUtf8) c;
-                if (constant.equals(utf8.data)) {
-                    return i;
+
+    /**
+     * @param file The name of the class for debug logging
+     * @return The patched class, or the given array if nothing changed
+     */
+    static byte[] replaceLineNumbers(byte[] b, ClassLineMap mmap, String file) {
+        ClassPatcher patcher = new ClassPatcher(b);
+        int p = patcher.cpEnd + 6; // access_flags, this_class, super_class
+        p += 2 + 2 * u2(b, p); // interfaces
+        int fieldsCount = u2(b, p);
+        p += 2;
+        for (int i = 0; i < fieldsCount; i++) {
+            p = skipAttributes(b, p + 6);
+        }
+        int methodsCount = u2(b, p);
+        p += 2;
+        for (int i = 0; i < methodsCount; i++) {
+            MethodId mid = new MethodId(patcher.utf8(u2(b, p + 2)), patcher.utf8(u2(b, p + 4)));
+            DecompileLineNumberTable.MethodLineMap mln = mmap.isStupid ? null : mmap.methods.get(mid);
+            int attributesCount = u2(b, p + 6);
+            p += 8;
+            for (int j = 0; j < attributesCount; j++) {
+                int length = u4(b, p + 2);
+                if (patcher.utf8Equals(u2(b, p), CODE_UTF8)) {
+                    if (mln != null && mln.isReplace) {
+                        patcher.replaceLineNumberTables(p, mln.replace);
+                    } else if (mmap.isStupid || mln != null) {
+                        patcher.remapLineNumberTables(p, mmap.isStupid ? mmap.stupid : mln.remap, file, mid.name);
+                    } else {
+                        if (REMAP_DEBUG) Logger.info("Missing method map in {} {}", file, mid.name);
+                    }
                 }
+                p += 6 + length;
             }
         }
-        clazz.constantPool = Arrays.copyOf(clazz.constantPool, clazz.constantPool.length + 1);
-        int r = clazz.constantPool.length - 1;
-        ConstantUtf8 newConst = new ConstantUtf8();
-        newConst.tag = 1;
-        newConst.data = constant;
-        clazz.constantPool[r] = newConst;
-        return r;
-    }
-    
-    static class ClassFile {
-        int magic;
-        short minorVersion;
-        short majorVersion;
-        Constant[] constantPool;
-        short accessFlags;
-        short thisClass;
-        short superClass;
-        short[] interfaces;
-        Field[] fields;
-        Method[] methods;
-        Attribute[] attributes;
-    }
-
-    static Constant cpEntry(Constant[] cp, short index) {
-        return cp[Short.toUnsignedInt(index) - 1];
+        return patcher.apply();
     }
 
-    static ClassFile readClassFile(DataInputStream in) throws IOException {
-        ClassFile result = new ClassFile();
-        result.magic = in.readInt();
-        result.minorVersion = in.readShort();
-        result.majorVersion = in.readShort();
-        short cpCount = in.readShort();
-        result.constantPool = new Constant[cpCount - 1];
-        for (int i = 0; i < cpCount - 1; i++) {
-            Constant constant = readConstant(in);
-            result.constantPool[i] = constant;
-            if (constant instanceof ConstantU8) {
-                ++i; // dumb
+    /**
+     * Collects changes to a class file and applies them in one pass. Changes may not overlap.
+     */
+    static class ClassPatcher {
+        final byte[] b;
+        /**
+         * Offsets of the tags of the constants by index.
+         */
+        final int[] cp;
+        final int cpEnd;
+        final List<Edit> edits = new ArrayList<>();
+        int lineNumberTableIndex = -1;
+
+        ClassPatcher(byte[] b) {
+            this.b = b;
+            int cpCount = u2(b, 8);
+            cp = new int[cpCount];
+            int p = 10;
+            for (int i = 1; i < cpCount; i++) {
+                cp[i] = p;
+                byte tag = b[p];
+                switch (tag) {
+                case 1:
+                    p += 3 + u2(b, p + 1);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    p += 3;
+                    break;
+                case 15: // MethodHandle
+                    p += 4;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    p += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    p += 9;
+                    ++i; // dumb
+                    break;
+                default:
+                    throw new UnsupportedOperationException("" + tag);
+                }
             }
+            cpEnd = p;
         }
-        result.accessFlags = in.readShort();
-        result.thisClass = in.readShort();
-        result.superClass = in.readShort();
-        result.interfaces = new short[in.readShort()];
-        for (int i = 0; i < result.interfaces.length; i++) {
-            result.interfaces[i] = in.readShort();
-        }
-        result.fields = new Field[in.readShort()];
-        for (int i = 0; i < result.fields.length; i++) {
-            result.fields[i] = readField(in, result.constantPool);
-        }
-        result.methods = new Method[in.readShort()];
-        for (int i = 0; i < result.methods.length; i++) {
-            result.methods[i] = readMethod(in, result.constantPool);
-        }
-        result.attributes = new Attribute[in.readShort()];
-        for (int i = 0; i < result.attributes.length; i++) {
-            result.attributes[i] = readAttribute(in, result.constantPool, AttributeType.OTHER);
-        }
-        return result;
-    }
 
-    static void writeClassFile(DataOutputStream out, ClassFile c) throws IOException {
-        out.writeInt(c.magic);
-        out.writeShort(c.minorVersion);
-        out.writeShort(c.majorVersion);
-        out.writeShort(c.constantPool.length + 1);
-        for (int i = 0; i < c.constantPool.length; i++) {
-            Constant constant = c.constantPool[i];
-            if (constant != null) {
-                writeConstant(out, constant);
+        String utf8(int index) {
+            try {
+                return new DataInputStream(new ByteArrayInputStream(b, cp[index] + 1, b.length)).readUTF();
+            } catch (IOException e) {
+                throw Util.sneak(e);
             }
         }
-        out.writeShort(c.accessFlags);
-        out.writeShort(c.thisClass);
-        out.writeShort(c.superClass);
-        out.writeShort(c.interfaces.length);
-        for (int i = 0; i < c.interfaces.length; i++) {
-            out.writeShort(c.interfaces[i]);
-        }
-        out.writeShort(c.fields.length);
-        for (int i = 0; i < c.fields.length; i++) {
-            writeField(out, c.fields[i]);
-        }
-        out.writeShort(c.methods.length);
-        for (int i = 0; i < c.methods.length; i++) {
-            writeMethod(out, c.methods[i]);
-        }
-        out.writeShort(c.attributes.length);
-        for (int i = 0; i < c.attributes.length; i++) {
-            writeAttribute(out, c.attributes[i]);
-        }
-    }
-
-    enum AttributeType {
-        METHOD,
-        CODE,
-        OTHER
-    }
 
-    static Attribute readAttribute(DataInputStream in, Constant[] cp, AttributeType attributeType) throws IOException {
-        short attributeNameIndex = in.readShort();
-        int attributeLength = in.readInt();
-        ConstantUtf8 c = (ConstantUtf8) cpEntry(cp, attributeNameIndex);
-        Attribute result;
-        if (attributeType == AttributeType.METHOD && CODE_UTF8.equals(c.data)) {
-            AttributeCode result1;
-            result = result1 = new AttributeCode();
-            result1.maxStack = in.readShort();
-            result1.maxLocals = in.readShort();
-            result1.code = new byte[in.readInt()];
-            in.readFully(result1.code);
-            result1.exceptionTable = new AttributeCode.ExceptionTableEntry[in.readShort()];
-            for (int i = 0; i < result1.exceptionTable.length; i++) {
-                AttributeCode.ExceptionTableEntry e = new AttributeCode.ExceptionTableEntry();
-                e.startPc = in.readShort();
-                e.endPc = in.readShort();
-                e.handlerPc = in.readShort();
-                e.catchType = in.readShort();
-                result1.exceptionTable[i] = e;
+        boolean utf8Equals(int index, byte[] expected) {
+            int p = cp[index];
+            if (b[p] != 1 || u2(b, p + 1) != expected.length) return false;
+            for (int i = 0; i < expected.length; i++) {
+                if (b[p + 3 + i] != expected[i]) return false;
             }
-            result1.attributes = new Attribute[in.readShort()];
-            for (int i = 0; i < result1.attributes.length; i++) {
-                result1.attributes[i] = readAttribute(in, cp, AttributeType.CODE);
-            }
-        } else if (attributeType == AttributeType.CODE && LINE_NUMBER_TABLE_UTF8.equals(c.data)) {
-            AttributeLineNumberTable result2;
-            result = result2 = new AttributeLineNumberTable();
-            result2.lineNumberTable = new LineNumberTableEntry[in.readShort()];
-            for (int i = 0; i < result2.lineNumberTable.length; i++) {
-                result2.lineNumberTable[i] = new LineNumberTableEntry(in.readShort(), in.readShort());
+            return true;
+        }
+
+        /**
+         * @return The index of the LineNumberTable constant, which is added if the class does not have it yet
+         */
+        int lineNumberTableIndex() {
+            if (lineNumberTableIndex == -1) {
+                for (int i = 1; i < cp.length; i++) {
+                    if (cp[i] != 0 && utf8Equals(i, LINE_NUMBER_TABLE_UTF8)) {
+                        return lineNumberTableIndex = i;
+                    }
+                }
+                byte[] constant = new byte[3 + LINE_NUMBER_TABLE_UTF8.length];
+                constant[0] = 1;
+                putU2(constant, 1, LINE_NUMBER_TABLE_UTF8.length);
+                System.arraycopy(LINE_NUMBER_TABLE_UTF8, 0, constant, 3, LINE_NUMBER_TABLE_UTF8.length);
+                edits.add(new Edit(8, 10, u2Bytes(cp.length + 1)));
+                edits.add(new Edit(cpEnd, cpEnd, constant));
+                lineNumberTableIndex = cp.length;
             }
-        } else {
-            AttributeUnparsed result0;
-            result = result0 = new AttributeUnparsed();
-            result0.info = new byte[attributeLength];
-            in.readFully(result0.info);
+            return lineNumberTableIndex;
         }
-        result.attributeNameIndex = attributeNameIndex;
-        return result;
-    }
 
-    static void writeAttribute(DataOutputStream out, Attribute a) throws IOException {
-        out.writeShort(a.attributeNameIndex);
-        if (a instanceof AttributeCode) {
-            AttributeCode a0 = (AttributeCode) a;
-            ByteArrayOutputStream b = new ByteArrayOutputStream();
-            DataOutputStream bd = new DataOutputStream(b);
-            bd.writeShort(a0.maxStack);
-            bd.writeShort(a0.maxLocals);
-            bd.writeInt(a0.code.length);
-            bd.write(a0.code);
-            bd.writeShort(a0.exceptionTable.length);
-            for (int i = 0; i < a0.exceptionTable.length; i++) {
-                AttributeCode.ExceptionTableEntry e = a0.exceptionTable[i];
-                bd.writeShort(e.startPc);
-                bd.writeShort(e.endPc);
-                bd.writeShort(e.handlerPc);
-                bd.writeShort(e.catchType);
+        /**
+         * Replaces the first LineNumberTable of a Code attribute and empties the others, or adds one if there is none.
+         *
+         * @param code The offset of the Code attribute
+         */
+        void replaceLineNumberTables(int code, List<LineNumberTableEntry> lineNumbers) {
+            int firstEdit = edits.size();
+            int p = code + 14; // attribute header, max_stack, max_locals, code_length
+            p += 2 + u4(b, code + 10); // code, exception_table_length
+            p += 8 * u2(b, p - 2); // exception_table
+            int attributesCountOffset = p;
+            int attributesCount = u2(b, p);
+            p += 2;
+            boolean foundFirstLnTable = false;
+            for (int i = 0; i < attributesCount; i++) {
+                int attributeNameIndex = u2(b, p);
+                int end = p + 6 + u4(b, p + 2);
+                if (utf8Equals(attributeNameIndex, LINE_NUMBER_TABLE_UTF8)) {
+                    edits.add(new Edit(p, end, lineNumberTable(attributeNameIndex, foundFirstLnTable ? new ArrayList<>() : lineNumbers)));
+                    foundFirstLnTable = true;
+                }
+                p = end;
             }
-            bd.writeShort(a0.attributes.length);
-            for (int i = 0; i < a0.attributes.length; i++) {
-                writeAttribute(bd, a0.attributes[i]);
+            if (!foundFirstLnTable) {
+                edits.add(new Edit(attributesCountOffset, attributesCountOffset + 2, u2Bytes(attributesCount + 1)));
+                edits.add(new Edit(p, p, lineNumberTable(lineNumberTableIndex(), lineNumbers)));
             }
-            byte[] attributeInfo = b.toByteArray();
-            out.writeInt(attributeInfo.length);
-            out.write(attributeInfo);
-        } else if (a instanceof AttributeLineNumberTable) {
-            AttributeLineNumberTable a0 = (AttributeLineNumberTable) a;
-            out.writeInt(a0.lineNumberTable.length * 4 + 2); // attribute_length
-            out.writeShort(a0.lineNumberTable.length);
-            for (int i = 0; i < a0.lineNumberTable.length; i++) {
-                out.writeShort(a0.lineNumberTable[i].startPc);
-                out.writeShort(a0.lineNumberTable[i].lineNumber);
+            int delta = 0;
+            for (int i = firstEdit; i < edits.size(); i++) {
+                Edit edit = edits.get(i);
+                if (edit.start >= code) { // Not the constant pool
+                    delta += edit.replacement.length - (edit.end - edit.start);
+                }
             }
-        } else if (a instanceof AttributeUnparsed) {
-            AttributeUnparsed a0 = (AttributeUnparsed) a;
-            out.writeInt(a0.info.length);
-            out.write(a0.info);
-        } else {
-            throw new UnsupportedOperationException("Unknown attribute type: " + a.getClass().getName());
+            edits.add(new Edit(code + 2, code + 6, u4Bytes(u4(b, code + 2) + delta)));
         }
-    }   
-
-    static class Attribute {
-        short attributeNameIndex;
-    }
-
-    static class AttributeCode extends Attribute {
-        short maxStack;
-        short maxLocals;
-        byte[] code;
-        ExceptionTableEntry[] exceptionTable;
-        Attribute[] attributes;
 
-        static class ExceptionTableEntry {
-            short startPc;
-            short endPc;
-            short handlerPc;
-            short catchType;
-        }
-    }
-
-    static class AttributeLineNumberTable extends Attribute {
-        LineNumberTableEntry[] lineNumberTable;
-    }
-
-    static class AttributeUnparsed extends Attribute {
-        byte[] info;
-    }
-
-    static Method readMethod(DataInputStream in, Constant[] cp) throws IOException {
-        Method result = new Method();
-        result.accessFlags = in.readShort();
-        result.nameIndex = in.readShort();
-        result.descriptorIndex = in.readShort();
-        result.attributes = new Attribute[in.readShort()];
-        for (int i = 0; i < result.attributes.length; i++) {
-            result.attributes[i] = readAttribute(in, cp, AttributeType.METHOD);
-        }
-        return result;
-    }
-
-    static void writeMethod(DataOutputStream out, Method m) throws IOException {
-        out.writeShort(m.accessFlags);
-        out.writeShort(m.nameIndex);
-        out.writeShort(m.descriptorIndex);
-        out.writeShort(m.attributes.length);
-        for (int i = 0; i < m.attributes.length; i++) {
-            writeAttribute(out, m.attributes[i]);
+        /**
+         * Remaps the line numbers of all LineNumberTables of a Code attribute.
+         *
+         * @param code The offset of the Code attribute
+         */
+        void remapLineNumberTables(int code, Map<Integer, Integer> remap, String file, String method) {
+            int p = code + 14;
+            p += 2 + u4(b, code + 10);
+            p += 8 * u2(b, p - 2);
+            int attributesCount = u2(b, p);
+            p += 2;
+            for (int i = 0; i < attributesCount; i++) {
+                int end = p + 6 + u4(b, p + 2);
+                if (utf8Equals(u2(b, p), LINE_NUMBER_TABLE_UTF8)) {
+                    int entries = u2(b, p + 6);
+                    byte[] lnt = null;
+                    for (int j = 0; j < entries; j++) {
+                        int offset = p + 8 + j * 4;
+                        short lineNumber = (short) u2(b, offset + 2);
+                        Integer rmp = remap.get((int) lineNumber);
+                        if (rmp != null) {
+                            if (REMAP_DEBUG) Logger.info("Remapping {} {} in {} {}", lineNumber, rmp, file, method);
+                            if (lnt == null) lnt = java.util.Arrays.copyOfRange(b, p + 8, p + 8 + entries * 4);
+                            putU2(lnt, j * 4 + 2, rmp);
+                        } else {
+                            if (REMAP_DEBUG) Logger.info("Missing remap {} in {} {}", lineNumber, file, method);
+                        }
+                    }
+                    if (lnt != null) {
+                        edits.add(new Edit(p + 8, p + 8 + entries * 4, lnt));
+                    }
+                }
+                p = end;
+            }
         }
-    }
-
-    static class Method {
-        short accessFlags;
-        short nameIndex;
-        short descriptorIndex;
-        Attribute[] attributes;
-    }
 
-    static Field readField(DataInputStream in, Constant[] cp) throws IOException {
-        Field result = new Field();
-        result.accessFlags = in.readShort();
-        result.nameIndex = in.readShort();
-        result.descriptorIndex = in.readShort();
-        result.attributes = new Attribute[in.readShort()];
-        for (int i = 0; i < result.attributes.length; i++) {
-            result.attributes[i] = readAttribute(in, cp, AttributeType.OTHER);
+        static byte[] lineNumberTable(int attributeNameIndex, List<LineNumberTableEntry> lineNumbers) {
+            byte[] r = new byte[8 + lineNumbers.size() * 4];
+            putU2(r, 0, attributeNameIndex);
+            putU4(r, 2, 2 + lineNumbers.size() * 4); // attribute_length
+            putU2(r, 6, lineNumbers.size());
+            for (int i = 0; i < lineNumbers.size(); i++) {
+                putU2(r, 8 + i * 4, lineNumbers.get(i).startPc);
+                putU2(r, 10 + i * 4, lineNumbers.get(i).lineNumber);
+            }
+            return r;
         }
-        return result;
-    }
 
-    static void writeField(DataOutputStream out, Field f) throws IOException {
-        out.writeShort(f.accessFlags);
-        out.writeShort(f.nameIndex);
-        out.writeShort(f.descriptorIndex);
-        out.writeShort(f.attributes.length);
-        for (int i = 0; i < f.attributes.length; i++) {
-            writeAttribute(out, f.attributes[i]);
+        byte[] apply() {
+            if (edits.isEmpty()) return b;
+            edits.sort((x, y) -> x.start != y.start ? Integer.compare(x.start, y.start) : Integer.compare(x.end, y.end));
+            int size = b.length;
+            for (Edit edit : edits) {
+                size += edit.replacement.length - (edit.end - edit.start);
+            }
+            byte[] r = new byte[size];
+            int from = 0;
+            int to = 0;
+            for (Edit edit : edits) {
+                System.arraycopy(b, from, r, to, edit.start - from);
+                to += edit.start - from;
+                System.arraycopy(edit.replacement, 0, r, to, edit.replacement.length);
+                to += edit.replacement.length;
+                from = edit.end;
+            }
+            System.arraycopy(b, from, r, to, b.length - from);
+            return r;
         }
     }
 
-    static class Field {
-        short accessFlags;
-        short nameIndex;
-        short descriptorIndex;
-        Attribute[] attributes;
-    }
+    static class Edit {
+        final int start;
+        final int end;
+        final byte[] replacement;
 
-    static Constant readConstant(DataInputStream in) throws IOException {
-        byte tag = in.readByte();
-        Constant result;
-        switch (tag) {
-        case 7:
-            ConstantClass result2;
-            result = result2 = new ConstantClass();
-            result2.nameIndex = in.readShort();
-            break;
-        case 9:
-        case 10:
-        case 11:
-            ConstantRef result3;
-            result = result3 = new ConstantRef();
-            result3.classIndex = in.readShort();
-            result3.nameAndTypeIndex = in.readShort();
-            break;
-        case 8:
-            ConstantString result4;
-            result = result4 = new ConstantString();
-            result4.stringIndex = in.readShort();
-            break;
-        case 3:
-        case 4:
-            ConstantU4 result5;
-            result = result5 = new ConstantU4();
-            result5.bytes = in.readInt();
-            break;
-        case 5:
-        case 6:
-            ConstantU8 result6;
-            result = result6 = new ConstantU8();
-            result6.bytes = in.readLong();
-            break;
-        case 12:
-            ConstantNameAndType result7;
-            result = result7 = new ConstantNameAndType();
-            result7.nameIndex = in.readShort();
-            result7.descriptorIndex = in.readShort();
-            break;
-        case 1:
-            ConstantUtf8 result8;
-            result = result8 = new ConstantUtf8();
-            result8.data = in.readUTF();
-            break;
-        case 15:
-            ConstantMethodHandle result9;
-            result = result9 = new ConstantMethodHandle();
-            result9.referenceKind = in.readByte();
-            result9.referenceIndex = in.readShort();
-            break;
-        case 16:
-            ConstantMethodType result10;
-            result = result10 = new ConstantMethodType();
-            result10.descriptorIndex = in.readShort();
-            break;
-        case 18:
-            ConstantInvokeDynamic result11;
-            result = result11 = new ConstantInvokeDynamic();
-            result11.bootstrapMethodAttrIndex = in.readShort();
-            result11.nameAndTypeIndex = in.readShort();
-            break;
-        default:
-            throw new UnsupportedOperationException("" + tag);
+        Edit(int start, int end, byte[] replacement) {
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
         }
-        result.tag = tag;
-        return result;
     }
 
-    static void writeConstant(DataOutputStream out, Constant c) throws IOException {
-        out.writeByte(c.tag);
-        switch (c.tag) {
-        case 7:
-            out.writeShort(((ConstantClass)c).nameIndex);
-            break;
-        case 9:
-        case 10:
-        case 11:
-            out.writeShort(((ConstantRef)c).classIndex);
-            out.writeShort(((ConstantRef)c).nameAndTypeIndex);
-            break;
-        case 8:
-            out.writeShort(((ConstantString)c).stringIndex);
-            break;
-        case 3:
-        case 4:
-            out.writeInt(((ConstantU4)c).bytes);
-            break;
-        case 5:
-        case 6:
-            out.writeLong(((ConstantU8)c).bytes);
-            break;
-        case 12:
-            out.writeShort(((ConstantNameAndType)c).nameIndex);
-            out.writeShort(((ConstantNameAndType)c).descriptorIndex);
-            break;
-        case 1:
-            out.writeUTF(((ConstantUtf8)c).data);
-            break;
-        case 15:
-            out.writeByte(((ConstantMethodHandle)c).referenceKind);
-            out.writeShort(((ConstantMethodHandle)c).referenceIndex);
-            break;
-        case 16:
-            out.writeShort(((ConstantMethodType)c).descriptorIndex);
-            break;
-        case 18:
-            out.writeShort(((ConstantInvokeDynamic)c).bootstrapMethodAttrIndex);
-            out.writeShort(((ConstantInvokeDynamic)c).nameAndTypeIndex);
-            break;
-        default:
-            throw new UnsupportedOperationException("" + c.tag);
+    static int skipAttributes(byte[] b, int p) {
+        int attributesCount = u2(b, p);
+        p += 2;
+        for (int i = 0; i < attributesCount; i++) {
+            p += 6 + u4(b, p + 2);
         }
+        return p;
     }
 
-    static class Constant {
-        byte tag;
-    }
-
-    static class ConstantClass extends Constant {
-        short nameIndex;
-    }
-
-    static class ConstantRef extends Constant { // Field, Method and InterfaceMethod ref
-        short classIndex;
-        short nameAndTypeIndex;
-    }
-
-    static class ConstantString extends Constant {
-        short stringIndex;
+    static int u2(byte[] b, int p) {
+        return ((b[p] & 0xFF) << 8) | (b[p + 1] & 0xFF);
     }
 
-    static class ConstantU4 extends Constant { // int + float
-        int bytes;
+    static int u4(byte[] b, int p) {
+        return (u2(b, p) << 16) | u2(b, p + 2);
     }
 
-    static class ConstantU8 extends Constant { // long + double
-        long bytes;
+    static void putU2(byte[] b, int p, int v) {
+        b[p] = (byte) (v >>> 8);
+        b[p + 1] = (byte) v;
     }
 
-    static class ConstantNameAndType extends Constant {
-        short nameIndex;
-        short descriptorIndex;
+    static void putU4(byte[] b, int p, int v) {
+        putU2(b, p, v >>> 16);
+        putU2(b, p + 2, v);
     }
 
-    static class ConstantUtf8 extends Constant {
-        String data;
-
-        @Override
-        @NotNull
-        public String toString() {
-            return Objects.toString(data);
-        }
-    }
-
-    static class ConstantMethodHandle extends Constant {
-        byte referenceKind;
-        short referenceIndex;
-    }
-
-    static class ConstantMethodType extends Constant {
-        short descriptorIndex;
+    static byte[] u2Bytes(int v) {
+        byte[] r = new byte[2];
+        putU2(r, 0, v);
+        return r;
     }
 
-    static class ConstantInvokeDynamic extends Constant {
-        short bootstrapMethodAttrIndex;
-        short nameAndTypeIndex;
+    static byte[] u4Bytes(int v) {
+        byte[] r = new byte[4];
+        putU4(r, 0, v);
+        return r;
     }
 }
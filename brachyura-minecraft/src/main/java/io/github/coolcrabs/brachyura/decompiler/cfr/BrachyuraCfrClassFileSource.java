@@ -127,6 +127,13 @@ class BrachyuraCfrClassFileSource implements ClassFileSource, Closeable {
         return path;
     }
 
+    /**
+     * @return Whether a class file is present, without reading it or warning about its absence
+     */
+    boolean hasClass(String path) {
+        return allClasses.containsKey(path);
+    }
+
     @Override
     public Pair<byte[], String> getClassFileContent(String path) throws IOException {
         if ("byte.class".equals(path)) {
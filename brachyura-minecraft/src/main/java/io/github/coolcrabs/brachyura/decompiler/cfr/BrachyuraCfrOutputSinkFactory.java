@@ -37,8 +37,13 @@ class BrachyuraCfrOutputSinkFactory implements OutputSinkFactory, Closeable {
     private final DecompileLineNumberTable decompileLineNumberTable;
     private final LineNumberMappingSink lineNumberMappingSink;
     private final @Nullable DecompiledSink decompiledSink;
+    private final @Nullable ProgressSink progressSink;
 
     public BrachyuraCfrOutputSinkFactory(@Nullable Path outputJar, DecompileLineNumberTable mapping, boolean replace) {
+        this(outputJar, mapping, replace, null);
+    }
+
+    public BrachyuraCfrOutputSinkFactory(@Nullable Path outputJar, DecompileLineNumberTable mapping, boolean replace, @Nullable DecompileTimings timings) {
         if (outputJar != null) {
             PathUtil.deleteIfExists(outputJar);
             fileSystem = FileSystemUtil.newJarFileSystem(outputJar);
@@ -49,6 +54,15 @@ class BrachyuraCfrOutputSinkFactory implements OutputSinkFactory, Closeable {
         }
         decompileLineNumberTable = mapping;
         lineNumberMappingSink = new LineNumberMappingSink(replace);
+        progressSink = timings == null ? null : new ProgressSink(timings);
+    }
+
+    /**
+     * @return The sources jar, or null if sources are not written
+     */
+    @Nullable
+    FileSystem getSourcesFileSystem() {
+        return fileSystem;
     }
 
     @Override
@@ -63,6 +77,9 @@ class BrachyuraCfrOutputSinkFactory implements OutputSinkFactory, Closeable {
         if (sinkType == SinkType.EXCEPTION) {
             result.add(SinkClass.EXCEPTION_MESSAGE);
         }
+        if (progressSink != null && sinkType == SinkType.PROGRESS) {
+            result.add(SinkClass.STRING);
+        }
         return result;
     }
 
@@ -78,6 +95,9 @@ class BrachyuraCfrOutputSinkFactory implements OutputSinkFactory, Closeable {
         if (sinkClass == SinkClass.EXCEPTION_MESSAGE) {
             return (Sink<T>) ExceptionMessageSink.INSTANCE;
         }
+        if (progressSink != null && sinkType == SinkType.PROGRESS && sinkClass == SinkClass.STRING) {
+            return (Sink<T>) progressSink;
+        }
         return ignored -> {};
     }
 
@@ -91,6 +111,23 @@ class BrachyuraCfrOutputSinkFactory implements OutputSinkFactory, Closeable {
         }
     }
 
+    private static class ProgressSink implements Sink<String> {
+        private static final String ANALYSING_TYPE = "Analysing type ";
+
+        final DecompileTimings timings;
+        ProgressSink(DecompileTimings timings) {
+            this.timings = timings;
+        }
+
+        @Override
+        public void write(String sinkable) {
+            // CFR reports the start of every class it decompiles on the thread decompiling it
+            if (sinkable.startsWith(ANALYSING_TYPE)) {
+                timings.started(sinkable.substring(ANALYSING_TYPE.length()));
+            }
+        }
+    }
+
     private static class DecompiledSink implements Sink<SinkReturns.Decompiled> {
         final FileSystem fileSystem;
         DecompiledSink(FileSystem fileSystem) {
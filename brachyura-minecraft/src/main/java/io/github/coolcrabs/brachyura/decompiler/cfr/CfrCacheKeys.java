@@ -0,0 +1,303 @@
+package io.github.coolcrabs.brachyura.decompiler.cfr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import io.github.coolcrabs.brachyura.decompiler.DecompileCache;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+import net.fabricmc.mappingio.tree.MappingTree;
+import net.fabricmc.mappingio.tree.MappingTree.ClassMapping;
+import net.fabricmc.mappingio.tree.MappingTree.FieldMapping;
+import net.fabricmc.mappingio.tree.MappingTree.MethodMapping;
+
+/**
+ * Computes the {@link DecompileCache} keys of top level classes. A key covers everything CFR looks at when decompiling
+ * the class along with its inner classes: their class files, the javadoc the {@link MappingTreeJavadocProvider} hands
+ * out for them, and the signatures of all classes they reference, including the supertypes of those.
+ *
+ * <p>CFR's output for a class also depends on the other classes of its batch, see {@link CfrDecompiler#batch(List)}, so
+ * the keys that are used combine the keys of a whole batch, see {@link #inBatch(List, Map)}.
+ *
+ * <p>The names in the class files are already mapped, so a mapping update only changes the keys of the classes that
+ * use a renamed class or member, or whose javadoc changed.
+ */
+final class CfrCacheKeys {
+    /**
+     * Changed whenever a change to the decompiler or to the computation of the keys changes the output for the same key.
+     */
+    private static final int VERSION = 2;
+
+    private static final Pattern REFERENCE = Pattern.compile("L([^;<]+)[;<]");
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int READER_FLAGS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private final BrachyuraCfrClassFileSource classFileSource;
+    @Nullable
+    private final MappingTree tree;
+    private final int namespace;
+    private final Map<String, byte[]> signatureHashes = new ConcurrentHashMap<>();
+
+    CfrCacheKeys(BrachyuraCfrClassFileSource classFileSource, @Nullable MappingTree tree, int namespace) {
+        this.classFileSource = classFileSource;
+        this.tree = tree;
+        this.namespace = namespace;
+    }
+
+    /**
+     * @param classes The class files of a top level class and its inner classes, see {@link CfrDecompiler#topLevel(String)}
+     * @return The key, or null if a class file can not be read
+     */
+    @Nullable
+    String get(@NotNull List<String> classes) {
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        MessageDigestUtil.update(md, VERSION);
+        List<String> sorted = new ArrayList<>(classes);
+        sorted.sort(null);
+        Set<String> own = new TreeSet<>();
+        Set<String> referenced = new TreeSet<>();
+        for (String className : sorted) {
+            byte[] bytes = getBytes(className);
+            if (bytes == null) {
+                return null;
+            }
+            own.add(className.substring(0, className.length() - ".class".length()));
+            update(md, className);
+            MessageDigestUtil.update(md, bytes.length);
+            md.update(bytes);
+            ClassReader reader = new ClassReader(bytes);
+            collectReferences(reader, referenced);
+            if (tree != null) {
+                updateJavadoc(md, reader);
+            }
+        }
+        referenced.removeAll(own);
+        for (String reference : referenced) {
+            update(md, reference);
+            md.update(getSignatureHash(reference));
+        }
+        return MessageDigestUtil.toHexHash(md.digest());
+    }
+
+    /**
+     * @param topLevelClasses The top level classes of a batch
+     * @param keys The keys of top level classes from {@link #get(List)}
+     * @return The keys of the top level classes of the batch, or no keys if a class of the batch does not have one
+     */
+    static Map<String, String> inBatch(List<String> topLevelClasses, Map<String, String> keys) {
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        MessageDigestUtil.update(md, VERSION);
+        for (String topLevel : topLevelClasses) {
+            String key = keys.get(topLevel);
+            if (key == null) {
+                return Collections.emptyMap();
+            }
+            update(md, topLevel);
+            update(md, key);
+        }
+        byte[] batchHash = md.digest();
+        Map<String, String> result = new HashMap<>();
+        for (String topLevel : topLevelClasses) {
+            MessageDigest classMd = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+            classMd.update(batchHash);
+            update(classMd, topLevel);
+            result.put(topLevel, MessageDigestUtil.toHexHash(classMd.digest()));
+        }
+        return result;
+    }
+
+    private void updateJavadoc(MessageDigest md, ClassReader reader) {
+        ClassMapping classMapping = tree.getClass(reader.getClassName(), namespace);
+        if (classMapping == null) {
+            update(md, null);
+            return;
+        }
+        update(md, classMapping.getComment());
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                FieldMapping fieldMapping = classMapping.getField(name, descriptor, namespace);
+                update(md, fieldMapping == null ? null : fieldMapping.getComment());
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                MethodMapping methodMapping = classMapping.getMethod(name, descriptor, namespace);
+                update(md, methodMapping == null ? null : methodMapping.getComment());
+                return null;
+            }
+        }, READER_FLAGS);
+    }
+
+    /**
+     * Collects the classes referenced by the constant pool of a class file, including the ones that only appear in
+     * descriptors, and by the signatures of its members.
+     */
+    private static void collectReferences(ClassReader reader, Set<String> out) {
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) {
+                continue; // Second half of a long or double
+            }
+            switch (reader.readByte(offset - 1)) {
+            case CONSTANT_CLASS:
+                String name = reader.readUTF8(offset, buffer);
+                if (name.startsWith("[")) {
+                    addReferences(name, out);
+                } else {
+                    out.add(name);
+                }
+                break;
+            case CONSTANT_NAME_AND_TYPE:
+                addReferences(reader.readUTF8(offset + 2, buffer), out);
+                break;
+            case CONSTANT_METHOD_TYPE:
+                addReferences(reader.readUTF8(offset, buffer), out);
+                break;
+            default:
+                break;
+            }
+        }
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                addReferences(signature, out);
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                addReferences(descriptor, out);
+                addReferences(signature, out);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                addReferences(descriptor, out);
+                addReferences(signature, out);
+                return null;
+            }
+        }, READER_FLAGS);
+    }
+
+    private static void addReferences(@Nullable String descriptorOrSignature, Set<String> out) {
+        if (descriptorOrSignature != null) {
+            Matcher matcher = REFERENCE.matcher(descriptorOrSignature);
+            while (matcher.find()) {
+                out.add(matcher.group(1));
+            }
+        }
+    }
+
+    /**
+     * Hashes everything about a class that the decompiled output of classes using it can depend on: its declaration,
+     * the declarations of its members and the same for its supertypes.
+     */
+    private byte[] getSignatureHash(String className) {
+        byte[] hash = signatureHashes.get(className);
+        if (hash != null) {
+            return hash;
+        }
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        byte[] bytes = classFileSource.hasClass(className + ".class") ? getBytes(className + ".class") : null;
+        if (bytes == null) {
+            update(md, null);
+        } else {
+            List<String> supertypes = new ArrayList<>();
+            new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    MessageDigestUtil.update(md, access);
+                    update(md, signature);
+                    if (superName != null) {
+                        supertypes.add(superName);
+                    }
+                    if (interfaces != null) {
+                        for (String i : interfaces) {
+                            supertypes.add(i);
+                        }
+                    }
+                }
+
+                @Override
+                public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                    update(md, name);
+                    update(md, outerName);
+                    update(md, innerName);
+                    MessageDigestUtil.update(md, access);
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                    MessageDigestUtil.update(md, access);
+                    update(md, name);
+                    update(md, descriptor);
+                    update(md, signature);
+                    // Constants are inlined
+                    update(md, value == null ? null : value.getClass().getName() + ':' + value);
+                    return null;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    MessageDigestUtil.update(md, access);
+                    update(md, name);
+                    update(md, descriptor);
+                    update(md, signature);
+                    return null;
+                }
+            }, READER_FLAGS);
+            for (String supertype : supertypes) {
+                update(md, supertype);
+                md.update(getSignatureHash(supertype));
+            }
+        }
+        hash = md.digest();
+        signatureHashes.put(className, hash);
+        return hash;
+    }
+
+    @Nullable
+    private byte[] getBytes(String className) {
+        try {
+            return classFileSource.getClassFileContent(className).getFirst();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hashes a string such that the strings before and after it, or a missing string, can not be mistaken for it.
+     */
+    private static void update(MessageDigest md, @Nullable String string) {
+        if (string == null) {
+            MessageDigestUtil.update(md, -1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            MessageDigestUtil.update(md, bytes.length);
+            md.update(bytes);
+        }
+    }
+}
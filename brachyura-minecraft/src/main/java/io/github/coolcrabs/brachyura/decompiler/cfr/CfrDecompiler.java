@@ -1,34 +1,53 @@
 package io.github.coolcrabs.brachyura.decompiler.cfr;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.benf.cfr.reader.api.CfrDriver;
 import org.benf.cfr.reader.util.CfrVersionInfo;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.tinylog.Logger;
 
 import io.github.coolcrabs.brachyura.decompiler.BrachyuraDecompiler;
+import io.github.coolcrabs.brachyura.decompiler.DecompileCache;
 import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.ClassLineMap;
+import io.github.coolcrabs.brachyura.decompiler.DecompilePriority;
+import io.github.coolcrabs.brachyura.decompiler.LazySources;
 import io.github.coolcrabs.brachyura.decompiler.LineNumberTableReplacer;
 import io.github.coolcrabs.brachyura.util.Util;
 import net.fabricmc.mappingio.tree.MappingTree;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
 public class CfrDecompiler extends BrachyuraDecompiler {
-    private static final Map<String, String> CFR_OPTIONS = new HashMap<>();
+    static final Map<String, String> CFR_OPTIONS = new HashMap<>();
     private static final String VERSION;
 
     static {
         CFR_OPTIONS.put("trackbytecodeloc", "true");
+        // Classes of a batch share their parsed referenced classes, see BATCH_SIZE
+        CFR_OPTIONS.put("shareclassstate", "true");
         try {
             VERSION = (String) CfrVersionInfo.class.getField("VERSION").get(null); // Java moment
         } catch (Exception t) {
@@ -36,6 +55,35 @@ public class CfrDecompiler extends BrachyuraDecompiler {
         }
     }
 
+    /**
+     * The average amount of top level classes, along with their inner classes, that are decompiled together, see
+     * {@link #batch(List)}. CFR parses every class a batch references only once, but keeps them, including the analysed
+     * classes of the batch, in memory until the batch is done. The parsed classes are tied to the state of the batch
+     * and modified by the analysis, so they can not be shared between threads.
+     */
+    private static final int BATCH_SIZE = 32;
+
+    /**
+     * The most top level classes in a batch, for runs of names that happen to not end a batch.
+     */
+    private static final int MAX_BATCH_SIZE = BATCH_SIZE * 4;
+
+    /**
+     * The cost of a method relative to a byte of the class file, see {@link #estimateCost(BrachyuraCfrClassFileSource, String)}.
+     * Methods are what CFR spends its time on, and small methods cost more per byte than big ones.
+     */
+    private static final int METHOD_COST = 64;
+
+    /**
+     * The {@link DecompileCache} of all decompilations, next to their result directories.
+     */
+    private static final String CACHE_FOLDER = "cfr-cache";
+
+    /**
+     * The {@link DecompileTimings} of all decompilations, next to their result directories.
+     */
+    private static final String TIMINGS_FILE = "cfr-timings.txt";
+
     private final int threadCount;
     private final boolean replaceLineNumbers;
     
@@ -63,13 +111,20 @@ public class CfrDecompiler extends BrachyuraDecompiler {
 
     @Override
     protected void decompileAndLinemap(@NotNull Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace) {
+        decompileAndLinemap(jar, classpath, resultDir, tree, namespace, DecompilePriority.NONE, null);
+    }
+
+    @Override
+    protected void decompileAndLinemap(@NotNull Path jar, List<Path> classpath, Path resultDir, @Nullable MappingTree tree, int namespace, @NotNull DecompilePriority priority, @Nullable LazySources lazySources) {
         DecompileResult r = getDecompileResult(jar, resultDir);
+        // Shared by all decompilations with this decompiler, as class names rarely change between versions and mappings
+        DecompileTimings timings = DecompileTimings.load(resultDir.toAbsolutePath().getParent().resolve(TIMINGS_FILE));
         try {
             ArrayList<String> classes = new ArrayList<>();
             DecompileLineNumberTable lineNumbers = new DecompileLineNumberTable();
             try (
                 BrachyuraCfrClassFileSource cfrClassFileSource = new BrachyuraCfrClassFileSource(jar, classpath, classes);
-                BrachyuraCfrOutputSinkFactory cfrOutputSinkFactory = new BrachyuraCfrOutputSinkFactory(r.sourcesJar, lineNumbers, replaceLineNumbers);
+                BrachyuraCfrOutputSinkFactory cfrOutputSinkFactory = new BrachyuraCfrOutputSinkFactory(r.sourcesJar, lineNumbers, replaceLineNumbers, timings);
             ) {
                 CfrDriver.Builder cfrDriver = new CfrDriver.Builder();
                 cfrDriver.withOptions(CFR_OPTIONS);
@@ -82,20 +137,83 @@ public class CfrDecompiler extends BrachyuraDecompiler {
                     cfrDriver.withJavadocProvider(new MappingTreeJavadocProvider(tree, namespace));
                 }
                 CfrDriver cfrDriver2 = cfrDriver.build();
-                // Split decompilation into multiple threads
-                ExecutorService executor = Executors.newFixedThreadPool(threadCount);
-                for (String className : classes) {
-                    executor.execute(() -> {
+                Map<String, List<String>> groups = group(classes);
+                List<Batch> allBatches = batch(classes);
+                Map<String, String> topLevelKeys = new ConcurrentHashMap<>();
+                CfrCacheKeys cfrCacheKeys = new CfrCacheKeys(cfrClassFileSource, tree, namespace);
+                groups.entrySet().parallelStream().forEach(group -> {
+                    String key = cfrCacheKeys.get(group.getValue());
+                    if (key != null) {
+                        topLevelKeys.put(group.getKey(), key);
+                    }
+                });
+                Map<String, String> cacheKeys = new HashMap<>();
+                for (Batch batch : allBatches) {
+                    cacheKeys.putAll(CfrCacheKeys.inBatch(batch.topLevelClasses, topLevelKeys));
+                }
+                // Shared by all decompilations with this decompiler, so that only changed classes are decompiled again
+                DecompileCache cache = new DecompileCache(resultDir.toAbsolutePath().getParent().resolve(CACHE_FOLDER));
+                FileSystem sources = cfrOutputSinkFactory.getSourcesFileSystem();
+                Set<String> cached = sources == null ? Collections.emptySet() : restoreCached(cache, cacheKeys, allBatches, sources, lineNumbers, lazySources);
+                List<Batch> batches = new ArrayList<>();
+                List<Batch> laterBatches = new ArrayList<>();
+                int toDecompile = 0;
+                for (Batch batch : allBatches) {
+                    if (!cached.contains(batch.topLevelClasses.get(0))) {
+                        if (batch.topLevelClasses.stream().anyMatch(priority::isPriority)) {
+                            batches.add(batch);
+                        } else {
+                            laterBatches.add(batch);
+                        }
+                        toDecompile += batch.classes.size();
+                    }
+                }
+                if (!cached.isEmpty()) {
+                    Logger.info("(CFR) Reusing {} of {} classes from the decompile cache", classes.size() - toDecompile, classes.size());
+                }
+                long totalCost = estimateCosts(cfrClassFileSource, batches, timings) + estimateCosts(cfrClassFileSource, laterBatches, timings);
+                // Only the order depends on the costs, the batches themselves must not change the output
+                Comparator<Batch> mostExpensiveFirst = (a, b) -> Long.compare(b.cost, a.cost);
+                batches.sort(mostExpensiveFirst);
+                laterBatches.sort(mostExpensiveFirst);
+                int firstBatches = batches.size();
+                batches.addAll(laterBatches);
+                LazySourcesFiller lazySourcesFiller = lazySources == null || sources == null ? null : new LazySourcesFiller(lazySources, sources, firstBatches);
+                Set<String> failed = ConcurrentHashMap.newKeySet();
+                Progress progress = new Progress(toDecompile, totalCost);
+                // Split decompilation into multiple threads, starting with the most expensive batches
+                // Tasks submitted from outside of the pool are taken in submission order
+                ForkJoinPool pool = new ForkJoinPool(threadCount, p -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    t.setName("CFR Decompiler " + t.getPoolIndex());
+                    return t;
+                }, null, true);
+                for (int i = 0; i < batches.size(); i++) {
+                    Batch batch = batches.get(i);
+                    boolean first = i < firstBatches;
+                    pool.execute(() -> {
                         try {
-                            cfrDriver2.analyse(Collections.singletonList(className));
+                            cfrDriver2.analyse(batch.classes);
                         } catch (Exception e) {
-                            Logger.error("Exception Decompiling " + className);
+                            Logger.error("Exception Decompiling " + batch.classes);
                             Logger.error(e);
+                            failed.addAll(batch.topLevelClasses);
+                        } finally {
+                            timings.finished();
+                            progress.done(batch);
+                            if (lazySourcesFiller != null) {
+                                lazySourcesFiller.done(batch, first);
+                            }
                         }
                     });
                 }
-                executor.shutdown();
-                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                timings.save();
+                if (sources != null) {
+                    storeDecompiled(cache, cacheKeys, groups, cached, failed, sources, lineNumbers);
+                    cache.prune();
+                }
                 Logger.info("(CFR) Linemapping {}", jar.getFileName());
                 LineNumberTableReplacer.replaceLineNumbers(jar, r.jar, lineNumbers);
             }
@@ -104,6 +222,288 @@ public class CfrDecompiler extends BrachyuraDecompiler {
         }
     }
 
+    /**
+     * Groups class files by their top level class, see {@link #topLevel(String)}.
+     */
+    private static Map<String, List<String>> group(List<String> classes) {
+        Map<String, List<String>> groups = new HashMap<>();
+        for (String className : classes) {
+            groups.computeIfAbsent(topLevel(className), k -> new ArrayList<>()).add(className);
+        }
+        return groups;
+    }
+
+    /**
+     * Writes the cached sources and line maps of the batches whose inputs did not change. A batch is only restored if
+     * all of its top level classes are cached, otherwise it is decompiled again as a whole.
+     *
+     * @return The top level classes that were restored from the cache
+     */
+    private static Set<String> restoreCached(DecompileCache cache, Map<String, String> cacheKeys, List<Batch> batches, FileSystem sources, DecompileLineNumberTable lineNumbers, @Nullable LazySources lazySources) {
+        Set<String> cached = ConcurrentHashMap.newKeySet();
+        batches.parallelStream().forEach(batch -> {
+            List<DecompileCache.Entry> entries = new ArrayList<>();
+            for (String topLevel : batch.topLevelClasses) {
+                String key = cacheKeys.get(topLevel);
+                DecompileCache.Entry entry = key == null ? null : cache.get(key);
+                if (entry == null) {
+                    return;
+                }
+                entries.add(entry);
+            }
+            for (DecompileCache.Entry entry : entries) {
+                try {
+                    for (Map.Entry<String, String> source : entry.sources.entrySet()) {
+                        Path path = sources.getPath(source.getKey());
+                        Files.createDirectories(path.getParent());
+                        byte[] bytes = source.getValue().getBytes(StandardCharsets.UTF_8);
+                        Files.write(path, bytes);
+                        if (lazySources != null) {
+                            lazySources.add(source.getKey(), bytes);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw Util.sneak(e);
+                }
+                lineNumbers.classes.putAll(entry.lineMaps);
+            }
+            cached.addAll(batch.topLevelClasses);
+        });
+        if (lazySources != null && !cached.isEmpty()) {
+            lazySources.flush();
+        }
+        return cached;
+    }
+
+    /**
+     * Caches the sources and line maps of the top level classes that were decompiled without exceptions.
+     */
+    private static void storeDecompiled(DecompileCache cache, Map<String, String> cacheKeys, Map<String, List<String>> groups, Set<String> cached, Set<String> failed, FileSystem sources, DecompileLineNumberTable lineNumbers) {
+        groups.entrySet().parallelStream().forEach(group -> {
+            String key = cacheKeys.get(group.getKey());
+            if (key == null || cached.contains(group.getKey()) || failed.contains(group.getKey())) {
+                return;
+            }
+            byte[] bytes = readSource(sources, group.getKey());
+            if (bytes == null) {
+                return;
+            }
+            Map<String, String> source = new HashMap<>();
+            source.put(sourcePath(group.getKey()), new String(bytes, StandardCharsets.UTF_8));
+            Map<String, ClassLineMap> lineMaps = new HashMap<>();
+            for (String className : group.getValue()) {
+                String internalName = className.substring(0, className.length() - ".class".length());
+                ClassLineMap lineMap = lineNumbers.classes.get(internalName);
+                if (lineMap != null) {
+                    lineMaps.put(internalName, lineMap);
+                }
+            }
+            cache.put(key, new DecompileCache.Entry(source, lineMaps));
+        });
+    }
+
+    /**
+     * @param topLevelClass A top level class, see {@link #topLevel(String)}
+     * @return The path of its source in the sources jar, which includes its inner classes
+     */
+    private static String sourcePath(String topLevelClass) {
+        return "/" + topLevelClass + ".java";
+    }
+
+    /**
+     * @return The decompiled source of a top level class, or null if none was written
+     */
+    @Nullable
+    private static byte[] readSource(FileSystem sources, String topLevelClass) {
+        Path path = sources.getPath(sourcePath(topLevelClass));
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * Adds the sources of batches to {@link LazySources} as they are done. Flushes once the batches of the
+     * {@link DecompilePriority} are done, and every {@link #FLUSH_INTERVAL} nanoseconds after that.
+     */
+    private static final class LazySourcesFiller {
+        private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+        final LazySources lazySources;
+        final FileSystem sources;
+        final AtomicInteger firstBatches;
+        final AtomicLong nextFlush = new AtomicLong(System.nanoTime() + FLUSH_INTERVAL);
+
+        LazySourcesFiller(LazySources lazySources, FileSystem sources, int firstBatches) {
+            this.lazySources = lazySources;
+            this.sources = sources;
+            this.firstBatches = new AtomicInteger(firstBatches);
+        }
+
+        void done(Batch batch, boolean first) {
+            for (String topLevel : batch.topLevelClasses) {
+                byte[] source = readSource(sources, topLevel);
+                if (source != null) {
+                    lazySources.add(sourcePath(topLevel), source);
+                }
+            }
+            long now = System.nanoTime();
+            long next = nextFlush.get();
+            if ((first && firstBatches.decrementAndGet() == 0) || (now - next >= 0 && nextFlush.compareAndSet(next, now + FLUSH_INTERVAL))) {
+                lazySources.flush();
+            }
+        }
+    }
+
+    /**
+     * Estimates how expensive decompiling each batch is, in arbitrary units, and stores it in {@link Batch#cost}.
+     * Classes that were decompiled before are estimated from how long they took then, the others from the size and
+     * method count of their class files.
+     *
+     * @return The total cost of the batches
+     */
+    private static long estimateCosts(BrachyuraCfrClassFileSource cfrClassFileSource, List<Batch> batches, DecompileTimings timings) {
+        Map<String, Long> costs = new ConcurrentHashMap<>();
+        batches.parallelStream().flatMap(batch -> batch.classes.stream()).forEach(className -> costs.merge(topLevel(className), estimateCost(cfrClassFileSource, className), Long::sum));
+        // Convert the recorded timings to the units of the estimates
+        long recordedNanos = 0;
+        long recordedEstimate = 0;
+        for (Map.Entry<String, Long> entry : costs.entrySet()) {
+            Long nanos = timings.getRecorded(entry.getKey());
+            if (nanos != null) {
+                recordedNanos += nanos;
+                recordedEstimate += entry.getValue();
+            }
+        }
+        if (recordedNanos > 0 && recordedEstimate > 0) {
+            double unitsPerNano = (double) recordedEstimate / recordedNanos;
+            for (Map.Entry<String, Long> entry : costs.entrySet()) {
+                Long nanos = timings.getRecorded(entry.getKey());
+                if (nanos != null) {
+                    entry.setValue(Math.max(1, (long) (nanos * unitsPerNano)));
+                }
+            }
+        }
+        long total = 0;
+        for (Batch batch : batches) {
+            for (String topLevel : batch.topLevelClasses) {
+                batch.cost += costs.getOrDefault(topLevel, 0L);
+            }
+            total += batch.cost;
+        }
+        return total;
+    }
+
+    private static long estimateCost(BrachyuraCfrClassFileSource cfrClassFileSource, String className) {
+        byte[] bytes;
+        try {
+            bytes = cfrClassFileSource.getClassFileContent(className).getFirst();
+        } catch (IOException e) {
+            return 1;
+        }
+        if (bytes == null) {
+            return 1;
+        }
+        int[] methods = new int[1];
+        try {
+            new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    methods[0]++;
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        } catch (RuntimeException e) {
+            // CFR will complain about it
+        }
+        return bytes.length + (long) methods[0] * METHOD_COST;
+    }
+
+    /**
+     * Splits classes into batches of top level classes that are next to each other by name, so that classes of the same
+     * package end up in the same batch where possible, as they tend to reference each other. Inner classes are put into
+     * the batch of their outer class, where CFR decompiles them as part of the outer class and skips them otherwise.
+     *
+     * <p>CFR avoids the names of all classes it has seen during a batch for local variables, so the output for a class
+     * can depend on the rest of its batch. The batches therefore only depend on the names of the classes: a batch ends
+     * before a top level class whose name hashes to a multiple of {@link #BATCH_SIZE}, or once it holds
+     * {@link #MAX_BATCH_SIZE} top level classes. Adding or removing a class only changes its own batch, so that the
+     * rest of the batches can still be restored from the {@link DecompileCache}.
+     */
+    static List<Batch> batch(List<String> classes) {
+        List<String> sorted = new ArrayList<>(classes);
+        Collections.sort(sorted);
+        List<Batch> batches = new ArrayList<>();
+        Batch batch = new Batch();
+        String topLevel = null;
+        for (String className : sorted) {
+            String outer = topLevel(className);
+            if (!outer.equals(topLevel)) {
+                topLevel = outer;
+                if (!batch.topLevelClasses.isEmpty() && (batch.topLevelClasses.size() == MAX_BATCH_SIZE || ((outer.hashCode() * 0x9E3779B9) >>> 16) % BATCH_SIZE == 0)) {
+                    batches.add(batch);
+                    batch = new Batch();
+                }
+                batch.topLevelClasses.add(outer);
+            }
+            batch.classes.add(className);
+        }
+        if (!batch.classes.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * @param className The path of a class file in the jar, such as {@code a/b/C$D.class}
+     * @return The top level class the class file belongs to, such as {@code a/b/C}
+     */
+    static String topLevel(String className) {
+        int dollar = className.indexOf('$');
+        return dollar == -1 ? className.substring(0, className.length() - ".class".length()) : className.substring(0, dollar);
+    }
+
+    static final class Batch {
+        final List<String> classes = new ArrayList<>();
+        final List<String> topLevelClasses = new ArrayList<>();
+        long cost;
+    }
+
+    /**
+     * Logs how far the decompilation got every {@link #PROGRESS_INTERVAL} nanoseconds.
+     */
+    private static final class Progress {
+        private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+        final int totalClasses;
+        final long totalCost;
+        final long start = System.nanoTime();
+        final AtomicInteger doneClasses = new AtomicInteger();
+        final AtomicLong doneCost = new AtomicLong();
+        final AtomicLong nextLog = new AtomicLong(start + PROGRESS_INTERVAL);
+
+        Progress(int totalClasses, long totalCost) {
+            this.totalClasses = totalClasses;
+            this.totalCost = totalCost;
+        }
+
+        void done(Batch batch) {
+            int classes = doneClasses.addAndGet(batch.classes.size());
+            long cost = doneCost.addAndGet(batch.cost);
+            long now = System.nanoTime();
+            long next = nextLog.get();
+            if (now - next >= 0 && classes < totalClasses && nextLog.compareAndSet(next, now + PROGRESS_INTERVAL)) {
+                long elapsed = now - start;
+                long remaining = cost <= 0 ? 0 : (long) (elapsed * ((double) (totalCost - cost) / cost));
+                Logger.info("(CFR) Decompiled {}/{} classes, {}% done, about {}s left", classes, totalClasses, cost * 100 / Math.max(1, totalCost), TimeUnit.NANOSECONDS.toSeconds(remaining));
+            }
+        }
+    }
+
     @Override
     public String getName() {
         return "BrachyuraCFR" + (replaceLineNumbers ? "-replace" : "-remap");
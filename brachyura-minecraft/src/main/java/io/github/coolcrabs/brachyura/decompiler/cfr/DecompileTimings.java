@@ -0,0 +1,142 @@
+package io.github.coolcrabs.brachyura.decompiler.cfr;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+
+/**
+ * How long CFR took to decompile each top level class, including its inner classes, when it was last decompiled.
+ * {@link CfrDecompiler} uses them to start with the classes that take the longest, so that they do not hold up the end
+ * of the decompilation. Classes that were never decompiled before are estimated from their size.
+ *
+ * <p>The timings are stored as lines of {@code <class> <nanoseconds>}, with classes in internal form such as
+ * {@code net/minecraft/client/render/WorldRenderer}.
+ */
+final class DecompileTimings {
+    @NotNull
+    private final Path file;
+
+    /**
+     * The timings of earlier decompilations.
+     */
+    private final Map<String, Long> recorded = new ConcurrentHashMap<>();
+
+    /**
+     * The timings of this decompilation.
+     */
+    private final Map<String, Long> measured = new ConcurrentHashMap<>();
+
+    /**
+     * The class each thread is decompiling and since when, see {@link #started(String)}.
+     */
+    private final ThreadLocal<Current> current = new ThreadLocal<>();
+
+    private DecompileTimings(@NotNull Path file) {
+        this.file = file;
+    }
+
+    @NotNull
+    static DecompileTimings load(@NotNull Path file) {
+        DecompileTimings timings = new DecompileTimings(file);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                int space = line.lastIndexOf(' ');
+                if (space == -1) {
+                    continue;
+                }
+                try {
+                    timings.recorded.put(line.substring(0, space), Long.parseLong(line.substring(space + 1)));
+                } catch (NumberFormatException e) {
+                    // Ignore the damaged line
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // First decompilation
+        } catch (IOException e) {
+            Logger.warn("Unable to read decompile timings {}", file.toAbsolutePath());
+            Logger.warn(e);
+            timings.recorded.clear();
+        }
+        return timings;
+    }
+
+    /**
+     * @param topLevelClass The class, in internal form, see {@link CfrDecompiler#topLevel(String)}
+     * @return The time it took to decompile the class the last time in nanoseconds, or null if it was not decompiled before
+     */
+    @Nullable
+    Long getRecorded(@NotNull String topLevelClass) {
+        return recorded.get(topLevelClass);
+    }
+
+    /**
+     * Called when the current thread starts decompiling a class, which means it is done with the class it decompiled before.
+     *
+     * @param cfrTypeName The class as named by CFR, such as {@code net.minecraft.client.render.WorldRenderer}
+     */
+    void started(@NotNull String cfrTypeName) {
+        long now = System.nanoTime();
+        Current previous = current.get();
+        if (previous != null) {
+            measured.merge(previous.topLevelClass, now - previous.start, Long::sum);
+        }
+        // Keyed the same way as the batches, which group classes with a $ in their name by what comes before it
+        current.set(new Current(CfrDecompiler.topLevel(cfrTypeName.replace('.', '/') + ".class"), now));
+    }
+
+    /**
+     * Called when the current thread is done decompiling classes for now.
+     */
+    void finished() {
+        Current previous = current.get();
+        if (previous != null) {
+            measured.merge(previous.topLevelClass, System.nanoTime() - previous.start, Long::sum);
+            current.remove();
+        }
+    }
+
+    /**
+     * Writes the timings measured by this instance, along with the earlier timings of the classes that were not decompiled
+     * this time.
+     */
+    void save() {
+        Map<String, Long> all = new TreeMap<>(recorded);
+        all.putAll(measured);
+        try (AtomicFile atomicFile = new AtomicFile(file)) {
+            try (Writer writer = Files.newBufferedWriter(atomicFile.tempPath, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : all.entrySet()) {
+                    writer.write(entry.getKey() + ' ' + entry.getValue() + '\n');
+                }
+            }
+            atomicFile.commit();
+        } catch (IOException e) {
+            // Only makes the next decompilation a bit slower
+            Logger.warn("Unable to write decompile timings {}", file.toAbsolutePath());
+            Logger.warn(e);
+        }
+    }
+
+    private static final class Current {
+        @NotNull
+        final String topLevelClass;
+        final long start;
+
+        Current(@NotNull String topLevelClass, long start) {
+            this.topLevelClass = topLevelClass;
+            this.start = start;
+        }
+    }
+}
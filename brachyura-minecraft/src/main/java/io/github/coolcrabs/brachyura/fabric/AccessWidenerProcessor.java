@@ -6,6 +6,10 @@ import java.io.InputStream;
 import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -17,12 +21,26 @@ import io.github.coolcrabs.accesswidener.AccessWidenerClassVisitor;
 import io.github.coolcrabs.brachyura.processing.HashableProcessor;
 import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 
-public class AccessWidenerProcessor implements HashableProcessor {
+public class AccessWidenerProcessor implements HashableProcessor, SelectiveProcessor {
     final AccessWidener aw;
+    final Set<String> files = new HashSet<>();
 
     public AccessWidenerProcessor(AccessWidener aw) {
         this.aw = aw;
+        for (String cls : aw.clsMap.keySet()) {
+            files.add(cls + ".class");
+            while (cls.contains("$")) {
+                cls = cls.substring(0, cls.lastIndexOf("$"));
+                files.add(cls + ".class");
+            }
+        }
+    }
+
+    @Override
+    public boolean accepts(@NotNull String path) {
+        return files.contains(path);
     }
 
     @Override
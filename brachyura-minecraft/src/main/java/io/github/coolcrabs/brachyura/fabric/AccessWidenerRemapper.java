@@ -10,6 +10,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
+import org.jetbrains.annotations.NotNull;
+
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -19,11 +21,11 @@ import io.github.coolcrabs.accesswidener.AccessWidenerWriter;
 import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
-import io.github.coolcrabs.brachyura.processing.Processor;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 import io.github.coolcrabs.brachyura.util.ByteArrayOutputStreamEx;
 import net.fabricmc.mappingio.tree.MappingTree;
 
-public class AccessWidenerRemapper implements Processor {
+public class AccessWidenerRemapper implements SelectiveProcessor {
     final MappingTree mappings;
     final int namespace;
     final AccessWidenerCollector awCollector;
@@ -63,6 +65,12 @@ public class AccessWidenerRemapper implements Processor {
         }
     }
 
+    @Override
+    public boolean accepts(@NotNull String path) {
+        // Access wideners and the mod jsons pointing to them can be named anything, but they are never classes
+        return !path.endsWith(".class");
+    }
+
     @Override
     public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
         HashMap<ProcessingId, ProcessingEntry> entries = new HashMap<>();
@@ -27,6 +27,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -47,6 +48,8 @@ import net.fabricmc.tinyremapper.TinyRemapper;
 
 import io.github.coolcrabs.accesswidener.AccessWidener;
 import io.github.coolcrabs.brachyura.decompiler.BrachyuraDecompiler;
+import io.github.coolcrabs.brachyura.decompiler.BrachyuraDecompiler.LazyDecompileResult;
+import io.github.coolcrabs.brachyura.decompiler.DecompilePriority;
 import io.github.coolcrabs.brachyura.dependency.Dependency;
 import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
 import io.github.coolcrabs.brachyura.dependency.NativesJarDependency;
@@ -66,13 +69,15 @@ import io.github.coolcrabs.brachyura.maven.MavenResolver;
 import io.github.coolcrabs.brachyura.minecraft.Minecraft;
 import io.github.coolcrabs.brachyura.minecraft.VersionMeta;
 import io.github.coolcrabs.brachyura.mixin.BrachyuraMixinCompileExtensions;
+import io.github.coolcrabs.brachyura.processing.EntryLocalProcessor;
 import io.github.coolcrabs.brachyura.processing.HashableProcessor;
+import io.github.coolcrabs.brachyura.processing.ParallelProcessorChain;
 import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
 import io.github.coolcrabs.brachyura.processing.ProcessingSource;
-import io.github.coolcrabs.brachyura.processing.Processor;
 import io.github.coolcrabs.brachyura.processing.ProcessorChain;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 import io.github.coolcrabs.brachyura.processing.sinks.AtomicZipProcessingSink;
 import io.github.coolcrabs.brachyura.processing.sinks.ZipProcessingSink;
 import io.github.coolcrabs.brachyura.processing.sources.ProcessingSponge;
@@ -129,6 +134,26 @@ public abstract class FabricContext {
         return null;
     }
 
+    /**
+     * Whether minecraft is decompiled in the background, so that IDE projects can be generated without waiting for it.
+     * Until it is done, the dependencies contain the named jar, which is not linemapped, and sources that only hold the
+     * classes decompiled so far, starting with {@link #decompilePriority()}. Generating the IDE project again once it is
+     * done switches to the linemapped jar and complete sources.
+     *
+     * <p>Only the daemon returns before the decompilation is done. Otherwise brachyura waits for it before exiting,
+     * though the IDE project can be opened in the meantime.
+     */
+    public boolean decompileLazily() {
+        return false;
+    }
+
+    /**
+     * The classes to decompile first when {@link #decompileLazily() decompiling lazily}.
+     */
+    public DecompilePriority decompilePriority() {
+        return DecompilePriority.NONE;
+    }
+
     public MappingTree createMojmap() {
         return createMojmap(intermediary.get(), versionMeta.get());
     }
@@ -189,7 +214,7 @@ public abstract class FabricContext {
         return r;
     }
 
-    public static class FmjJijApplier implements Processor {
+    public static class FmjJijApplier implements EntryLocalProcessor, SelectiveProcessor {
         final List<Path> jij;
 
         public FmjJijApplier(List<Path> jij) {
@@ -197,41 +222,50 @@ public abstract class FabricContext {
         }
 
         @Override
-        public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
-            for (ProcessingEntry e : inputs) {
-                if (!jij.isEmpty() && "fabric.mod.json".equals(e.id.path)) {
-                    Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
-                    JsonObject fabricModJson;
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
-                        fabricModJson = gson.fromJson(reader, JsonObject.class);
-                    }
-                    JsonArray jars = new JsonArray();
-                    fabricModJson.add("jars", jars);
-                    List<String> used = new ArrayList<>();
-                    for (Path jar : jij) {
-                        String path = "META-INF/jars/" + jar.getFileName();
-                        int a = 0;
-                        while (used.contains(path)) {
-                            path = "META-INF/jars/" + a + jar.getFileName();
-                            a++;
-                        }
-                        JsonObject o = new JsonObject();
-                        o.addProperty("file", path);
-                        jars.add(o);
-                        used.add(path);
-                        sink.sink(() -> PathUtil.inputStream(jar), new ProcessingId(path, e.id.source));
+        public boolean accepts(@NotNull String path) {
+            return !jij.isEmpty() && "fabric.mod.json".equals(path);
+        }
+
+        @Override
+        public void processEntry(ProcessingEntry e, ProcessingSink sink) throws IOException {
+            if (!jij.isEmpty() && "fabric.mod.json".equals(e.id.path)) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
+                JsonObject fabricModJson;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
+                    fabricModJson = gson.fromJson(reader, JsonObject.class);
+                }
+                JsonArray jars = new JsonArray();
+                fabricModJson.add("jars", jars);
+                List<String> used = new ArrayList<>();
+                for (Path jar : jij) {
+                    String path = "META-INF/jars/" + jar.getFileName();
+                    int a = 0;
+                    while (used.contains(path)) {
+                        path = "META-INF/jars/" + a + jar.getFileName();
+                        a++;
                     }
-                    sink.sink(() -> GsonUtil.toIs(fabricModJson, gson), e.id);
-                } else {
-                    sink.sink(e.in, e.id);
+                    JsonObject o = new JsonObject();
+                    o.addProperty("file", path);
+                    jars.add(o);
+                    used.add(path);
+                    sink.sink(() -> PathUtil.inputStream(jar), new ProcessingId(path, e.id.source));
                 }
+                sink.sink(() -> GsonUtil.toIs(fabricModJson, gson), e.id);
+            } else {
+                sink.sink(e.in, e.id);
             }
         }
     }
 
-    public enum FMJRefmapApplier implements Processor {
+    public enum FMJRefmapApplier implements SelectiveProcessor {
         INSTANCE;
 
+        @Override
+        public boolean accepts(@NotNull String path) {
+            // fabric.mod.json and the mixin configs
+            return path.endsWith(".json");
+        }
+
         @Override
         public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
             HashMap<String, ProcessingEntry> entries = new HashMap<>();
@@ -352,7 +386,7 @@ public abstract class FabricContext {
     }
 
     public ProcessorChain modRemapChainOverrideOnlyIfYouOverrideRemappedModsRootPathAndLogicVersion(TrWrapper trw, List<Path> cp, Map<ProcessingSource, MavenId> c) {
-        return new ProcessorChain(
+        return new ParallelProcessorChain(
             new RemapperProcessor(trw, cp),
             new MetaInfFixer(trw),
             JijRemover.INSTANCE,
@@ -427,7 +461,7 @@ public abstract class FabricContext {
                             if (fileName == null) {
                                 throw new NullPointerException("fileName is null.");
                             }
-                            ZipProcessingSink si = new ZipProcessingSink(a.tempPath.resolve(fileName));
+                            ZipProcessingSink si = new ZipProcessingSink(a.tempPath.resolve(fileName), Runtime.getRuntime().availableProcessors(), intermediateJarCompressionLevel());
                             toClose.add(si);
                             ZipProcessingSource s = new ZipProcessingSource(ri.source.jarDependency.jar);
                             toClose.add(s);
@@ -487,35 +521,43 @@ public abstract class FabricContext {
         }
     }
 
-    public enum JijRemover implements Processor {
+    public enum JijRemover implements EntryLocalProcessor, SelectiveProcessor {
         INSTANCE;
 
         @Override
-        public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
-            for (ProcessingEntry e : inputs) {
-                if ("fabric.mod.json".equals(e.id.path)) {
-                    Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
-                    JsonObject fabricModJson;
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
-                        fabricModJson = gson.fromJson(reader, JsonObject.class);
-                    }
-                    fabricModJson.remove("jars");
-                    sink.sink(() -> GsonUtil.toIs(fabricModJson, gson), e.id);
-                } else {
-                    sink.sink(e.in, e.id);
+        public boolean accepts(@NotNull String path) {
+            return "fabric.mod.json".equals(path);
+        }
+
+        @Override
+        public void processEntry(ProcessingEntry e, ProcessingSink sink) throws IOException {
+            if ("fabric.mod.json".equals(e.id.path)) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
+                JsonObject fabricModJson;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
+                    fabricModJson = gson.fromJson(reader, JsonObject.class);
                 }
+                fabricModJson.remove("jars");
+                sink.sink(() -> GsonUtil.toIs(fabricModJson, gson), e.id);
+            } else {
+                sink.sink(e.in, e.id);
             }
         }
     }
 
     // https://github.com/FabricMC/fabric-loom/blob/dev/0.11/src/main/java/net/fabricmc/loom/build/nesting/IncludedJarFactory.java
-    public static class FmjGenerator implements Processor {
+    public static class FmjGenerator implements SelectiveProcessor {
         final Map<ProcessingSource, MavenId> map;
 
         public FmjGenerator(Map<ProcessingSource, MavenId> map) {
             this.map = map;
         }
 
+        @Override
+        public boolean accepts(@NotNull String path) {
+            return "fabric.mod.json".equals(path);
+        }
+
         @Override
         public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
             HashSet<ProcessingSource> fmj = new HashSet<>();
@@ -706,7 +748,7 @@ public abstract class FabricContext {
         if (!Files.isRegularFile(result)) {
             try (
                 ZipProcessingSource s = new ZipProcessingSource(remappedNamedJar.get().jar);
-                AtomicZipProcessingSink a = new AtomicZipProcessingSink(result);
+                AtomicZipProcessingSink a = new AtomicZipProcessingSink(result, Runtime.getRuntime().availableProcessors(), intermediateJarCompressionLevel());
             ) {
                 new ProcessorChain(hps).apply(a, s);
                 a.commit();
@@ -736,8 +778,19 @@ public abstract class FabricContext {
         // This will lead to missing classes if ran on an older jdk and MC uses newer jdk
         // Adding the JVM version to the directory avoids this issue if you rerun with a newer jdk
         Path resultDir = fabricCache().resolve("decompiled").resolve(decompiler.getName() + "-" + decompiler.getVersion()).resolve(versionMeta.get().version + TinyRemapperHelper.getFileVersionTag() + "named-" + named.mappingHash + "-J" + JvmUtil.CURRENT_JAVA_VERSION);
+        MavenId id = new MavenId("decompiled", decompiler.getName() + "-" + decompiler.getVersion(), versionMeta.get().version);
+        if (decompileLazily()) {
+            LazyDecompileResult lazy = decompiler.getDecompiledLazily(named.jar, decompClasspath(), resultDir, mappings.get(), mappings.get().getNamespaceId(Namespaces.NAMED), decompilePriority());
+            // Don't keep the unfinished result once it is done so that the linemapped jar and complete sources are used
+            // Invalidating from the decompiler thread waits for the lazy to store this value before clearing it
+            lazy.completion.whenComplete((result, t) -> decompiledJar.invalidate());
+            if (lazy.completion.isDone() && !lazy.completion.isCompletedExceptionally()) {
+                return lazy.completion.join().toJavaJarDep(id);
+            }
+            return lazy.toJavaJarDep(id);
+        }
         return decompiler.getDecompiled(named.jar, decompClasspath(), resultDir, mappings.get(), Namespaces.NAMED)
-                .toJavaJarDep(new MavenId("decompiled", decompiler.getName() + "-" + decompiler.getVersion(), versionMeta.get().version));
+                .toJavaJarDep(id);
     }
 
     public void remapJar(MappingTree mappings, String src, String dst, @NotNull Path inputJar, Path outputJar, List<Path> classpath) {
@@ -754,7 +807,7 @@ public abstract class FabricContext {
         }
         try (
             ZipProcessingSource source = new ZipProcessingSource(inputJar);
-            ZipProcessingSink sink = new ZipProcessingSink(outputJar);
+            ZipProcessingSink sink = new ZipProcessingSink(outputJar, Runtime.getRuntime().availableProcessors(), intermediateJarCompressionLevel());
             TrWrapper trw = new TrWrapper(remapperBuilder);
         ) {
             new ProcessorChain(new RemapperProcessor(trw, classpath)).apply(sink, source);
@@ -799,6 +852,14 @@ public abstract class FabricContext {
         return PathUtil.cachePath().resolve("fabric");
     }
 
+    /**
+     * The {@link Deflater} level of the jars which are only ever read back locally: the intermediary and named
+     * jars and the remapped mods. Stored by default, as these are written on every cache miss and read often.
+     */
+    public int intermediateJarCompressionLevel() {
+        return Deflater.NO_COMPRESSION;
+    }
+
     @NotNull
     public Path getLocalBrachyuraPath() {
         return PathUtil.resolveAndCreateDir(getContextRoot(), ".brachyura");
@@ -8,12 +8,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilation;
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilationOptions;
@@ -28,6 +28,7 @@ import io.github.coolcrabs.brachyura.processing.ProcessingSource;
 import io.github.coolcrabs.brachyura.processing.sources.ProcessingSponge;
 import io.github.coolcrabs.brachyura.project.TaskBuilder;
 import io.github.coolcrabs.brachyura.project.java.BuildModule;
+import io.github.coolcrabs.brachyura.project.java.BuildModuleScheduler;
 import io.github.coolcrabs.brachyura.util.AtomicFile;
 import io.github.coolcrabs.brachyura.util.JvmUtil;
 import io.github.coolcrabs.brachyura.util.Lazy;
@@ -48,10 +49,6 @@ public abstract class FabricModule extends BuildModule {
     public abstract Path[] getSrcDirs();
     public abstract Path[] getResourceDirs();
 
-    protected List<BuildModule> getModuleDependencies() {
-        return Collections.emptyList();
-    }
-
     protected FabricModule(FabricContext context) {
         this.context = context;
     }
@@ -94,8 +91,11 @@ public abstract class FabricModule extends BuildModule {
                 )
                 .addClasspath(context.getCompileDependencies())
                 .addSourceDir(getSrcDirs())
-                .addOptions(getExtraCompileOptions());
-            for (BuildModule m : getModuleDependencies()) {
+                .addOptions(getExtraCompileOptions())
+                .setOutputCache(getCompilationOutputCache());
+            List<BuildModule> moduleDependencies = getModuleDependencies();
+            BuildModuleScheduler.compile(moduleDependencies);
+            for (BuildModule m : moduleDependencies) {
                 compilation0.addClasspath(m.compilationOutput.get());
             }
             JavaCompilationResult compilation = compilation0.compile();
@@ -115,6 +115,15 @@ public abstract class FabricModule extends BuildModule {
         }
     }
 
+    /**
+     * @return Where the {@link JavaCompilation#setOutputCache(Path) outputs of recent compilations} are kept,
+     * including refmaps and mixin mappings, or null to not keep them
+     */
+    @Nullable
+    protected Path getCompilationOutputCache() {
+        return getLocalBrachyuraPath().resolve("compilation-cache").resolve(getModuleName());
+    }
+
     @SuppressWarnings("null")
     @Override
     @NotNull
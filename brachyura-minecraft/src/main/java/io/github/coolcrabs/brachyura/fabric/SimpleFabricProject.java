@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -23,6 +24,7 @@ import io.github.coolcrabs.accesswidener.AccessWidener;
 import io.github.coolcrabs.accesswidener.AccessWidenerReader;
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilationOptions;
 import io.github.coolcrabs.brachyura.decompiler.BrachyuraDecompiler;
+import io.github.coolcrabs.brachyura.decompiler.DecompilePriority;
 import io.github.coolcrabs.brachyura.decompiler.cfr.CfrDecompiler;
 import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
 import io.github.coolcrabs.brachyura.dependency.MavenDependency;
@@ -61,6 +63,31 @@ public abstract class SimpleFabricProject extends BaseJavaProject {
         return new SimpleFabricModule(context.get());
     }
 
+    @Override
+    public void invalidate() {
+        // Nothing is built on the access widener before the context exists, creating it just to compare would set up minecraft
+        boolean contextComputed = context.isComputed();
+        String oldAw = contextComputed ? hashAw(context.get().aw.get().orElse(null)) : null;
+        invalidateModJson();
+        module.invalidate();
+        if (contextComputed && !Objects.equals(oldAw, hashAw(createAw()))) {
+            // The named jar and everything built on it depend on the access widener
+            context.invalidate();
+        }
+    }
+
+    /**
+     * Drops the parsed mod metadata, see {@link #invalidate()}
+     */
+    protected void invalidateModJson() {
+        fmjParseThingy.invalidate();
+    }
+
+    @Nullable
+    static String hashAw(@Nullable AccessWidener aw) {
+        return aw == null ? null : AccessWidenerHasher.hash256(aw::accept);
+    }
+
     public abstract VersionMeta createMcVersion();
     public abstract MappingTree createMappings();
     public abstract FabricLoader getLoader();
@@ -74,6 +101,13 @@ public abstract class SimpleFabricProject extends BaseJavaProject {
         return new CfrDecompiler();
     }
 
+    /**
+     * See {@link FabricContext#decompileLazily()}. The classes imported by the sources of the mod are decompiled first.
+     */
+    public boolean decompileLazily() {
+        return false;
+    }
+
     public Path[] getSrcDirs() {
         return new Path[]{getProjectDir().resolve("src").resolve("main").resolve("java")};
     }
@@ -201,6 +235,16 @@ public abstract class SimpleFabricProject extends BaseJavaProject {
             return SimpleFabricProject.this.decompiler();
         }
 
+        @Override
+        public boolean decompileLazily() {
+            return SimpleFabricProject.this.decompileLazily();
+        }
+
+        @Override
+        public DecompilePriority decompilePriority() {
+            return DecompilePriority.fromSources(getSrcDirs());
+        }
+
         @Override
         public Path getContextRoot() {
             return getProjectDir();
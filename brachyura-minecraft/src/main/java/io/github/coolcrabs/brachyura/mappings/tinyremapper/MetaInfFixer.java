@@ -6,20 +6,22 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
+import org.jetbrains.annotations.NotNull;
+
+import io.github.coolcrabs.brachyura.processing.EntryLocalProcessor;
 import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
-import io.github.coolcrabs.brachyura.processing.Processor;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 import io.github.coolcrabs.brachyura.util.ByteArrayOutputStreamEx;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 // https://github.com/FabricMC/tiny-remapper/blob/master/src/main/java/net/fabricmc/tinyremapper/MetaInfFixer.java
 // Rewritten since tr's is heavily nio tied atm
-public class MetaInfFixer implements Processor {
+public class MetaInfFixer implements EntryLocalProcessor, SelectiveProcessor {
     final TinyRemapper remapper;
 
     public MetaInfFixer(TrWrapper remapper) {
@@ -27,37 +29,40 @@ public class MetaInfFixer implements Processor {
     }
 
     @Override
-    public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
-        for (ProcessingEntry e : inputs) {
-            if (e.id.path.startsWith("META-INF/")) {
-                int si = e.id.path.lastIndexOf('/');
-                String fn = si == -1 ? e.id.path : e.id.path.substring(si + 1);
-                if (e.id.path.equals("META-INF/MANIFEST.MF")) {
-                    Manifest m;
-                    try (InputStream i = e.in.get()) {
-                        m = new Manifest(i);
-                    }
-                    fixManifest(m, remapper);
-                    ByteArrayOutputStreamEx ex = new ByteArrayOutputStreamEx();
-                    m.write(ex);
-                    sink.sink(ex::toIs, e.id);
-                } else if (e.id.path.startsWith("META-INF/services/")) {
-                    ByteArrayOutputStreamEx ex = new ByteArrayOutputStreamEx();
-                    try (
-                        BufferedReader r = new BufferedReader(new InputStreamReader(e.in.get()));
-                        Writer w = new OutputStreamWriter(ex);
-                    ) {
-                        fixServiceDecl(r, w, remapper);
-                    }
-                    sink.sink(ex::toIs, e.id);
-                } else if (fn.endsWith(".SF") || fn.endsWith(".DSA") || fn.endsWith(".RSA") || fn.startsWith("SIG-")) {
-                    // Strip (noop)
-                } else {
-                    sink.sink(e.in, e.id);
+    public boolean accepts(@NotNull String path) {
+        return path.startsWith("META-INF/");
+    }
+
+    @Override
+    public void processEntry(ProcessingEntry e, ProcessingSink sink) throws IOException {
+        if (e.id.path.startsWith("META-INF/")) {
+            int si = e.id.path.lastIndexOf('/');
+            String fn = si == -1 ? e.id.path : e.id.path.substring(si + 1);
+            if (e.id.path.equals("META-INF/MANIFEST.MF")) {
+                Manifest m;
+                try (InputStream i = e.in.get()) {
+                    m = new Manifest(i);
+                }
+                fixManifest(m, remapper);
+                ByteArrayOutputStreamEx ex = new ByteArrayOutputStreamEx();
+                m.write(ex);
+                sink.sink(ex::toIs, e.id);
+            } else if (e.id.path.startsWith("META-INF/services/")) {
+                ByteArrayOutputStreamEx ex = new ByteArrayOutputStreamEx();
+                try (
+                    BufferedReader r = new BufferedReader(new InputStreamReader(e.in.get()));
+                    Writer w = new OutputStreamWriter(ex);
+                ) {
+                    fixServiceDecl(r, w, remapper);
                 }
+                sink.sink(ex::toIs, e.id);
+            } else if (fn.endsWith(".SF") || fn.endsWith(".DSA") || fn.endsWith(".RSA") || fn.startsWith("SIG-")) {
+                // Strip (noop)
             } else {
                 sink.sink(e.in, e.id);
             }
+        } else {
+            sink.sink(e.in, e.id);
         }
     }
 
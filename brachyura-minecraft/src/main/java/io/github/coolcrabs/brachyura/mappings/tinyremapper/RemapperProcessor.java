@@ -36,13 +36,13 @@ import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
 import io.github.coolcrabs.brachyura.processing.ProcessingSource;
-import io.github.coolcrabs.brachyura.processing.Processor;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 import io.github.coolcrabs.brachyura.util.StreamUtil;
 import net.fabricmc.tinyremapper.InputTag;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
 //TODO update when tr finally doesn't require paths for sources
-public class RemapperProcessor implements Processor {
+public class RemapperProcessor implements SelectiveProcessor {
     final TinyRemapper remapper;
     final List<Path> classpath;
 
@@ -51,6 +51,11 @@ public class RemapperProcessor implements Processor {
         this.classpath = classpath;
     }
 
+    @Override
+    public boolean accepts(@NotNull String path) {
+        return path.endsWith(".class");
+    }
+
     @Override
     public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
         BruhFileSystemProvider bruh = new BruhFileSystemProvider();
@@ -80,7 +85,7 @@ public class RemapperProcessor implements Processor {
         }
     }
 
-    class BruhFileSystemProvider extends FileSystemProvider {
+    static class BruhFileSystemProvider extends FileSystemProvider {
         BruhFileSystem child = new BruhFileSystem();
 
         class BruhFileSystem extends FileSystem {
@@ -16,7 +16,10 @@ import org.jetbrains.annotations.Nullable;
 import net.fabricmc.tinyremapper.InputTag;
 import net.fabricmc.tinyremapper.TinyRemapper;
 
-import io.github.coolcrabs.brachyura.util.FileSystemUtil;
+import io.github.coolcrabs.brachyura.mappings.tinyremapper.RemapperProcessor.BruhFileSystemProvider;
+import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
+import io.github.coolcrabs.brachyura.processing.ProcessingSource;
+import io.github.coolcrabs.brachyura.processing.sources.ZipProcessingSource;
 
 public class TinyRemapperHelper {
     private TinyRemapperHelper() { }
@@ -33,11 +36,25 @@ public class TinyRemapperHelper {
     }
 
     public static void readJar(TinyRemapper tr, @NotNull Path jar, JarType type) throws IOException {
-        try (FileSystem fileSystem = FileSystemUtil.newJarFileSystem(jar)) {
-            readFileSystem(tr, fileSystem, type, null);
+        try (ZipProcessingSource source = new ZipProcessingSource(jar)) {
+            readSource(tr, source, type, null);
         }
     }
 
+    /**
+     * Reads the classes of a source without extracting them; the source must stay open until this returns.
+     */
+    public static void readSource(TinyRemapper tr, ProcessingSource source, JarType type, @Nullable InputTag tag) {
+        BruhFileSystemProvider bruh = new BruhFileSystemProvider();
+        List<Path> inputs = new ArrayList<>();
+        source.getInputs((in, id) -> {
+            if (id.path.endsWith(".class")) {
+                inputs.add(bruh.child.createPath(new ProcessingEntry(in, id)));
+            }
+        });
+        read(tr, inputs, type, tag);
+    }
+
     public static void readFileSystem(TinyRemapper tr, FileSystem input, JarType type) throws IOException {
         readFileSystem(tr, input, type, null);
     }
@@ -61,6 +78,10 @@ public class TinyRemapperHelper {
                 return FileVisitResult.CONTINUE;
             }
         });
+        read(tr, inputs, type, tag);
+    }
+
+    static void read(TinyRemapper tr, List<Path> inputs, JarType type, @Nullable InputTag tag) {
         if (type == JarType.CLASSPATH) {
             if (tag != null) throw new UnsupportedOperationException();
             tr.readClassPath(inputs.toArray(new Path[inputs.size()]));
@@ -33,12 +33,14 @@ import io.github.coolcrabs.brachyura.mappings.tinyremapper.MetaInfFixer;
 import io.github.coolcrabs.brachyura.mappings.tinyremapper.RemapperProcessor;
 import io.github.coolcrabs.brachyura.mappings.tinyremapper.TrWrapper;
 import io.github.coolcrabs.brachyura.maven.MavenId;
+import io.github.coolcrabs.brachyura.processing.EntryLocalProcessor;
+import io.github.coolcrabs.brachyura.processing.ParallelProcessorChain;
 import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
 import io.github.coolcrabs.brachyura.processing.ProcessingSource;
-import io.github.coolcrabs.brachyura.processing.Processor;
 import io.github.coolcrabs.brachyura.processing.ProcessorChain;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 import io.github.coolcrabs.brachyura.processing.sinks.AtomicZipProcessingSink;
 import io.github.coolcrabs.brachyura.processing.sources.ZipProcessingSource;
 import io.github.coolcrabs.brachyura.util.GsonUtil;
@@ -92,7 +94,7 @@ public abstract class QuiltContext extends FabricContext {
 
     @Override
     public ProcessorChain modRemapChainOverrideOnlyIfYouOverrideRemappedModsRootPathAndLogicVersion(TrWrapper trw, List<Path> cp, Map<ProcessingSource, MavenId> c) {
-        return new ProcessorChain(
+        return new ParallelProcessorChain(
             new RemapperProcessor(trw, cp),
             new MetaInfFixer(trw),
             JijRemover.INSTANCE,
@@ -101,30 +103,33 @@ public abstract class QuiltContext extends FabricContext {
         );
     }
 
-    public enum JijRemover implements Processor {
+    public enum JijRemover implements EntryLocalProcessor, SelectiveProcessor {
         INSTANCE;
 
         @Override
-        public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
-            for (ProcessingEntry e : inputs) {
-                boolean fmj = e.id.path.equals("fabric.mod.json");
-                boolean qmj = e.id.path.equals("quilt.mod.json");
-                if (fmj || qmj) {
-                    Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
-                    JsonObject modJson;
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
-                        modJson = gson.fromJson(reader, JsonObject.class);
-                    }
-                    if (fmj) {
-                        modJson.remove("jars");
-                    }
-                    if (qmj) {
-                        modJson.getAsJsonObject("quilt_loader").remove("jars");
-                    }
-                    sink.sink(() -> GsonUtil.toIs(modJson, gson), e.id);
-                } else {
-                    sink.sink(e.in, e.id);
+        public boolean accepts(@NotNull String path) {
+            return path.equals("fabric.mod.json") || path.equals("quilt.mod.json");
+        }
+
+        @Override
+        public void processEntry(ProcessingEntry e, ProcessingSink sink) throws IOException {
+            boolean fmj = e.id.path.equals("fabric.mod.json");
+            boolean qmj = e.id.path.equals("quilt.mod.json");
+            if (fmj || qmj) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
+                JsonObject modJson;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
+                    modJson = gson.fromJson(reader, JsonObject.class);
+                }
+                if (fmj) {
+                    modJson.remove("jars");
+                }
+                if (qmj) {
+                    modJson.getAsJsonObject("quilt_loader").remove("jars");
                 }
+                sink.sink(() -> GsonUtil.toIs(modJson, gson), e.id);
+            } else {
+                sink.sink(e.in, e.id);
             }
         }
     }
@@ -165,9 +170,15 @@ public abstract class QuiltContext extends FabricContext {
         }
     }
 
-    public enum QmjRefmapApplier implements Processor {
+    public enum QmjRefmapApplier implements SelectiveProcessor {
         INSTANCE;
 
+        @Override
+        public boolean accepts(@NotNull String path) {
+            // quilt.mod.json and the mixin configs
+            return path.endsWith(".json");
+        }
+
         @Override
         public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
             HashMap<String, ProcessingEntry> entries = new HashMap<>();
@@ -214,7 +225,7 @@ public abstract class QuiltContext extends FabricContext {
         }
     }
 
-    public static class QmjJijApplier implements Processor {
+    public static class QmjJijApplier implements EntryLocalProcessor, SelectiveProcessor {
         final List<Path> jij;
 
         public QmjJijApplier(List<Path> jij) {
@@ -222,32 +233,35 @@ public abstract class QuiltContext extends FabricContext {
         }
 
         @Override
-        public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
-            for (ProcessingEntry e : inputs) {
-                if (!jij.isEmpty() && "quilt.mod.json".equals(e.id.path)) {
-                    Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
-                    JsonObject quiltModJson;
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
-                        quiltModJson = gson.fromJson(reader, JsonObject.class);
-                    }
-                    JsonArray jars = new JsonArray();
-                    quiltModJson.getAsJsonObject("quilt_loader").add("jars", jars);
-                    List<String> used = new ArrayList<>();
-                    for (Path jar : jij) {
-                        String path = "META-INF/jars/" + jar.getFileName();
-                        int a = 0;
-                        while (used.contains(path)) {
-                            path = "META-INF/jars/" + a + jar.getFileName();
-                            a++;
-                        }
-                        jars.add(path);
-                        used.add(path);
-                        sink.sink(() -> PathUtil.inputStream(jar), new ProcessingId(path, e.id.source));
+        public boolean accepts(@NotNull String path) {
+            return !jij.isEmpty() && "quilt.mod.json".equals(path);
+        }
+
+        @Override
+        public void processEntry(ProcessingEntry e, ProcessingSink sink) throws IOException {
+            if (!jij.isEmpty() && "quilt.mod.json".equals(e.id.path)) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().setLenient().create();
+                JsonObject quiltModJson;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(e.in.get(), StandardCharsets.UTF_8))) {
+                    quiltModJson = gson.fromJson(reader, JsonObject.class);
+                }
+                JsonArray jars = new JsonArray();
+                quiltModJson.getAsJsonObject("quilt_loader").add("jars", jars);
+                List<String> used = new ArrayList<>();
+                for (Path jar : jij) {
+                    String path = "META-INF/jars/" + jar.getFileName();
+                    int a = 0;
+                    while (used.contains(path)) {
+                        path = "META-INF/jars/" + a + jar.getFileName();
+                        a++;
                     }
-                    sink.sink(() -> GsonUtil.toIs(quiltModJson, gson), e.id);
-                } else {
-                    sink.sink(e.in, e.id);
+                    jars.add(path);
+                    used.add(path);
+                    sink.sink(() -> PathUtil.inputStream(jar), new ProcessingId(path, e.id.source));
                 }
+                sink.sink(() -> GsonUtil.toIs(quiltModJson, gson), e.id);
+            } else {
+                sink.sink(e.in, e.id);
             }
         }
     }
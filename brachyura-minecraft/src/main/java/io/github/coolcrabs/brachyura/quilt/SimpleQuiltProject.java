@@ -82,6 +82,12 @@ public abstract class SimpleQuiltProject extends SimpleFabricProject {
         throw new UnknownJsonException("Unable to find aw named:" + aw);
     }
 
+    @Override
+    protected void invalidateModJson() {
+        super.invalidateModJson();
+        qmjParseThingy.invalidate();
+    }
+
     @NotNull
     private Lazy<String[]> qmjParseThingy = new Lazy<>(() -> {
         try {
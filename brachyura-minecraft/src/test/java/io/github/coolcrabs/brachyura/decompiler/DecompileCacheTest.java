@@ -0,0 +1,66 @@
+package io.github.coolcrabs.brachyura.decompiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.ClassLineMap;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodId;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodLineMap;
+
+class DecompileCacheTest {
+    @Test
+    void roundTrip(@TempDir Path tmp) {
+        DecompileCache cache = new DecompileCache(tmp);
+        assertNull(cache.get("abcdef"));
+        Map<MethodId, MethodLineMap> methods = new HashMap<>();
+        methods.put(new MethodId("a", "()V"), new MethodLineMap(Arrays.asList(new LineNumberTableEntry(0, 12), new LineNumberTableEntry(4, 13))));
+        methods.put(new MethodId("b", "(I)I"), new MethodLineMap(Collections.singletonMap(7, 20)));
+        Map<String, ClassLineMap> lineMaps = new HashMap<>();
+        lineMaps.put("a/C", new ClassLineMap(methods));
+        lineMaps.put("a/C$D", new ClassLineMap(new int[] {1, 2, 3, 4}));
+        cache.put("abcdef", new DecompileCache.Entry(Collections.singletonMap("/a/C.java", "class C { /* é */ }"), lineMaps));
+
+        DecompileCache.Entry entry = cache.get("abcdef");
+        assertNotNull(entry);
+        assertEquals(Collections.singletonMap("/a/C.java", "class C { /* é */ }"), entry.sources);
+        MethodLineMap a = entry.lineMaps.get("a/C").methods.get(new MethodId("a", "()V"));
+        assertEquals(2, a.replace.size());
+        assertEquals(4, a.replace.get(1).startPc);
+        assertEquals(13, a.replace.get(1).lineNumber);
+        assertEquals(Collections.singletonMap(7, 20), entry.lineMaps.get("a/C").methods.get(new MethodId("b", "(I)I")).remap);
+        ClassLineMap inner = entry.lineMaps.get("a/C$D");
+        assertEquals(2, inner.stupid.size());
+        assertEquals(Integer.valueOf(4), inner.stupid.get(3));
+        assertNull(cache.get("abcdeg"));
+    }
+
+    @Test
+    void prune(@TempDir Path tmp) throws Exception {
+        DecompileCache cache = new DecompileCache(tmp, 2);
+        DecompileCache.Entry entry = new DecompileCache.Entry(Collections.singletonMap("/a/C.java", "class C { }"), Collections.emptyMap());
+        cache.put("aa01", entry);
+        cache.put("bb02", entry);
+        cache.put("cc03", entry);
+        Files.setLastModifiedTime(tmp.resolve("aa/aa01"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(tmp.resolve("bb/bb02"), FileTime.fromMillis(2000));
+        Files.setLastModifiedTime(tmp.resolve("cc/cc03"), FileTime.fromMillis(3000));
+        // Used recently
+        assertNotNull(cache.get("aa01"));
+        cache.prune();
+        assertNotNull(cache.get("aa01"));
+        assertNull(cache.get("bb02"));
+        assertNotNull(cache.get("cc03"));
+    }
+}
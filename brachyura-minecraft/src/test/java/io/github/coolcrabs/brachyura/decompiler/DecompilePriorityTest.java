@@ -0,0 +1,40 @@
+package io.github.coolcrabs.brachyura.decompiler;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DecompilePriorityTest {
+    @Test
+    void fromImports(@TempDir Path tmp) throws Exception {
+        Path source = tmp.resolve("src/com/example/ExampleMod.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, (
+            "package com.example;\n" +
+            "\n" +
+            "import net.minecraft.client.MinecraftClient;\n" +
+            "import net.minecraft.util.math.Direction.Axis;\n" +
+            "import static net.minecraft.block.Blocks.STONE;\n" +
+            "import net.minecraft.item.*;\n" +
+            "\n" +
+            "public class ExampleMod {\n" +
+            "    // import net.minecraft.Ignored;\n" +
+            "}\n"
+        ).getBytes(StandardCharsets.UTF_8));
+        DecompilePriority priority = DecompilePriority.fromSources(tmp.resolve("src"), tmp.resolve("missing"));
+        assertTrue(priority.isPriority("net/minecraft/client/MinecraftClient"));
+        assertTrue(priority.isPriority("net/minecraft/util/math/Direction"));
+        assertTrue(priority.isPriority("net/minecraft/block/Blocks"));
+        assertTrue(priority.isPriority("net/minecraft/item/Items"));
+        assertFalse(priority.isPriority("net/minecraft/item/group/ItemGroup"));
+        assertFalse(priority.isPriority("net/minecraft/Ignored"));
+        assertFalse(priority.isPriority("net/minecraft/client/MinecraftClient$1"));
+        assertFalse(DecompilePriority.NONE.isPriority("net/minecraft/client/MinecraftClient"));
+    }
+}
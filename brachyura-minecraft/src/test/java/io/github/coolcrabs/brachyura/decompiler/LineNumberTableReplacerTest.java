@@ -1,41 +1,104 @@
 package io.github.coolcrabs.brachyura.decompiler;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
-import io.github.coolcrabs.brachyura.decompiler.LineNumberTableReplacer.ClassFile;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.ClassLineMap;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodId;
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable.MethodLineMap;
 import io.github.coolcrabs.brachyura.util.StreamUtil;
 
 class LineNumberTableReplacerTest {
     final double a = 5;
 
     @Test
-    void readSelf() throws Exception {
-        try (DataInputStream in = new DataInputStream(this.getClass().getClassLoader().getResourceAsStream("io/github/coolcrabs/brachyura/decompiler/LineNumberTableReplacerTest.class"))) {
-            LineNumberTableReplacer.readClassFile(in);
+    void unchangedSelf() throws Exception {
+        byte[] self = self();
+        assertSame(self, LineNumberTableReplacer.replaceLineNumbers(self, new ClassLineMap(new HashMap<>()), "self"));
+    }
+
+    @Test
+    void remapSelf() throws Exception {
+        byte[] self = self();
+        Map<String, List<Integer>> expected = lineNumbers(self);
+        List<Integer> lines = expected.get("remapSelf()V");
+        int[] stupid = new int[lines.size() * 2];
+        for (int i = 0; i < lines.size(); i++) {
+            stupid[i * 2] = lines.get(i);
+            stupid[i * 2 + 1] = lines.get(i) + 1000;
+        }
+        for (List<Integer> methodLines : expected.values()) {
+            methodLines.replaceAll(line -> lines.contains(line) ? line + 1000 : line);
         }
+        byte[] actual = LineNumberTableReplacer.replaceLineNumbers(self, new ClassLineMap(stupid), "self");
+        assertEquals(self.length, actual.length);
+        assertEquals(expected, lineNumbers(actual));
+    }
+
+    @Test
+    void replaceSelf() throws Exception {
+        byte[] self = self();
+        Map<String, List<Integer>> expected = lineNumbers(self);
+        expected.put("replaceSelf()V", Arrays.asList(3, 1, 2));
+        byte[] actual = LineNumberTableReplacer.replaceLineNumbers(self, replaceMap("replaceSelf"), "self");
+        assertEquals(expected, lineNumbers(actual));
     }
 
     @Test
-    void roundTripSelf() throws Exception {
-        byte[] expected;
-        try (DataInputStream in = new DataInputStream(this.getClass().getClassLoader().getResourceAsStream("io/github/coolcrabs/brachyura/decompiler/LineNumberTableReplacerTest.class"))) {
-            expected = StreamUtil.readFullyAsBytes(in);
+    void replaceWithoutDebugInfo() throws Exception {
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(self()).accept(writer, ClassReader.SKIP_DEBUG);
+        byte[] stripped = writer.toByteArray();
+        Map<String, List<Integer>> expected = lineNumbers(stripped);
+        expected.put("replaceSelf()V", Arrays.asList(3, 1, 2));
+        byte[] actual = LineNumberTableReplacer.replaceLineNumbers(stripped, replaceMap("replaceSelf"), "self");
+        assertEquals(expected, lineNumbers(actual));
+    }
+
+    static ClassLineMap replaceMap(String method) {
+        Map<MethodId, MethodLineMap> methods = new HashMap<>();
+        methods.put(new MethodId(method, "()V"), new MethodLineMap(Arrays.asList(new LineNumberTableEntry(0, 3), new LineNumberTableEntry(1, 1), new LineNumberTableEntry(4, 2))));
+        return new ClassLineMap(methods);
+    }
+
+    byte[] self() throws Exception {
+        try (InputStream in = this.getClass().getClassLoader().getResourceAsStream("io/github/coolcrabs/brachyura/decompiler/LineNumberTableReplacerTest.class")) {
+            return StreamUtil.readFullyAsBytes(in);
         }
-        try (DataInputStream in = new DataInputStream(this.getClass().getClassLoader().getResourceAsStream("io/github/coolcrabs/brachyura/decompiler/LineNumberTableReplacerTest.class"))) {
-            ClassFile classFile = LineNumberTableReplacer.readClassFile(in);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            DataOutputStream out0 = new DataOutputStream(out);
-            LineNumberTableReplacer.writeClassFile(out0, classFile);
-            byte[] actual = out.toByteArray();
-            for (int i = 0; i < expected.length; i++) {
-                assertEquals(expected[i], actual[i], "Byte " + i);
+    }
+
+    static Map<String, List<Integer>> lineNumbers(byte[] clazz) {
+        Map<String, List<Integer>> r = new HashMap<>();
+        new ClassReader(clazz).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                List<Integer> lines = new ArrayList<>();
+                r.put(name + descriptor, lines);
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        lines.add(line);
+                    }
+                };
             }
-        }
+        }, 0);
+        r.values().removeIf(Collections.emptyList()::equals);
+        return r;
     }
 }
@@ -0,0 +1,147 @@
+package io.github.coolcrabs.brachyura.decompiler.cfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.benf.cfr.reader.api.CfrDriver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.coolcrabs.brachyura.decompiler.DecompileLineNumberTable;
+import io.github.coolcrabs.brachyura.util.FileSystemUtil;
+
+class CfrDecompilerTest {
+    @Test
+    void batchKeepsInnerClassesWithOuter() {
+        List<String> classes = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            classes.add("a/C" + i + ".class");
+            classes.add("a/C" + i + "$Inner.class");
+            classes.add("a/C" + i + "$1.class");
+        }
+        classes.add("b/D.class");
+        List<CfrDecompiler.Batch> batches = CfrDecompiler.batch(classes);
+        assertTrue(batches.size() > 1);
+        List<String> all = new ArrayList<>();
+        for (CfrDecompiler.Batch batch : batches) {
+            assertTrue(batch.topLevelClasses.size() <= 128);
+            for (String className : batch.classes) {
+                assertTrue(batch.topLevelClasses.contains(CfrDecompiler.topLevel(className)), className);
+            }
+            all.addAll(batch.classes);
+        }
+        List<String> sorted = new ArrayList<>(classes);
+        Collections.sort(sorted);
+        assertEquals(sorted, all);
+    }
+
+    @Test
+    void batchOnlyChangesAroundRemovedClass() {
+        List<String> classes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            classes.add("a/C" + i + ".class");
+        }
+        List<List<String>> before = topLevels(CfrDecompiler.batch(classes));
+        classes.remove("a/C500.class");
+        List<List<String>> after = topLevels(CfrDecompiler.batch(classes));
+        List<List<String>> changed = new ArrayList<>(before);
+        changed.removeAll(after);
+        // The batch of the removed class, and the one before it if the removed class started a batch
+        assertTrue(changed.size() <= 2, changed.toString());
+        for (List<String> batch : changed) {
+            assertTrue(batch.contains("a/C500") || before.get(before.indexOf(batch) + 1).get(0).equals("a/C500"));
+        }
+        assertFalse(after.stream().anyMatch(batch -> batch.contains("a/C500")));
+    }
+
+    static List<List<String>> topLevels(List<CfrDecompiler.Batch> batches) {
+        List<List<String>> r = new ArrayList<>();
+        for (CfrDecompiler.Batch batch : batches) {
+            r.add(batch.topLevelClasses);
+        }
+        return r;
+    }
+
+    @Test
+    void batchedOutputMatchesPerClass(@TempDir Path tmp) throws Exception {
+        Path jar = tmp.resolve("decompiler.jar");
+        Path classes = Paths.get(CfrDecompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (FileSystem fs = FileSystemUtil.newJarFileSystem(jar)) {
+            if (Files.isDirectory(classes)) {
+                copyDecompilerPackage(classes, fs);
+            } else {
+                try (FileSystem classesFs = FileSystemUtil.newJarFileSystem(classes)) {
+                    copyDecompilerPackage(classesFs.getPath("/"), fs);
+                }
+            }
+        }
+        Map<String, String> batched = decompile(jar, tmp.resolve("batched-sources.jar"), false);
+        Map<String, String> perClass = decompile(jar, tmp.resolve("per-class-sources.jar"), true);
+        assertTrue(batched.size() > 10);
+        assertEquals(perClass, batched);
+    }
+
+    static void copyDecompilerPackage(Path root, FileSystem out) throws Exception {
+        Path pkg = root.resolve("io/github/coolcrabs/brachyura/decompiler");
+        try (Stream<Path> files = Files.walk(pkg)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.toString().endsWith(".class")) {
+                    Path target = out.getPath("/" + root.relativize(file).toString().replace('\\', '/'));
+                    Files.createDirectories(target.getParent());
+                    Files.copy(file, target);
+                }
+            }
+        }
+    }
+
+    static Map<String, String> decompile(Path jar, Path sourcesJar, boolean perClass) throws Exception {
+        List<String> classes = new ArrayList<>();
+        Map<String, String> result = new HashMap<>();
+        try (
+            BrachyuraCfrClassFileSource classFileSource = new BrachyuraCfrClassFileSource(jar, Collections.emptyList(), classes);
+            BrachyuraCfrOutputSinkFactory sinkFactory = new BrachyuraCfrOutputSinkFactory(sourcesJar, new DecompileLineNumberTable(), false);
+        ) {
+            CfrDriver driver = new CfrDriver.Builder()
+                .withOptions(CfrDecompiler.CFR_OPTIONS)
+                .withClassFileSource(classFileSource)
+                .withOutputSink(sinkFactory)
+                .build();
+            for (CfrDecompiler.Batch batch : CfrDecompiler.batch(classes)) {
+                if (perClass) {
+                    for (String topLevel : batch.topLevelClasses) {
+                        List<String> group = new ArrayList<>();
+                        for (String className : batch.classes) {
+                            if (CfrDecompiler.topLevel(className).equals(topLevel)) {
+                                group.add(className);
+                            }
+                        }
+                        driver.analyse(group);
+                    }
+                } else {
+                    driver.analyse(batch.classes);
+                }
+            }
+            Path root = sinkFactory.getSourcesFileSystem().getPath("/");
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (Files.isRegularFile(file)) {
+                        result.put(file.toString(), new String(Files.readAllBytes(file), "UTF-8"));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
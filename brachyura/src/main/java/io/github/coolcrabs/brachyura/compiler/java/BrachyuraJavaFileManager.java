@@ -2,6 +2,7 @@ package io.github.coolcrabs.brachyura.compiler.java;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -20,6 +21,8 @@ import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 import javax.tools.JavaFileObject.Kind;
 
+import org.jetbrains.annotations.Nullable;
+
 import io.github.coolcrabs.brachyura.memurl.MemoryUrlProvider;
 import io.github.coolcrabs.brachyura.util.Util;
 
@@ -102,6 +105,18 @@ class BrachyuraJavaFileManager extends ForwardingJavaFileManager<StandardJavaFil
         return output.computeIfAbsent(uri, u -> new OutputFile(uri, Kind.OTHER, sibling));
     }
 
+    /**
+     * Adds an output that was produced by an earlier compilation
+     */
+    void addOutput(Location location, String path, Kind kind, byte[] bytes, @Nullable FileObject sibling) throws IOException {
+        URI uri = uri(location, path);
+        OutputFile file = new OutputFile(uri, kind, sibling);
+        try (OutputStream out = file.openOutputStream()) {
+            out.write(bytes);
+        }
+        output.put(uri, file);
+    }
+
     @Override
     public boolean isSameFile(FileObject a, FileObject b) {
         if (a instanceof OutputFile || b instanceof OutputFile) {
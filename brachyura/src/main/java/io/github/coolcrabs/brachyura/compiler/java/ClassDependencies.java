@@ -0,0 +1,126 @@
+package io.github.coolcrabs.brachyura.compiler.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Extracts the classes a class file refers to from its constant pool.
+ * This over-approximates (any descriptor-like string counts), which is fine for finding dependents.
+ * Compile time constants are inlined by javac and leave no trace in the constant pool of their users,
+ * so classes declaring them are flagged.
+ */
+final class ClassDependencies {
+    private ClassDependencies() { }
+
+    /**
+     * @param out Receives the internal names of referenced classes
+     * @return Whether the class declares a field with a ConstantValue attribute
+     */
+    static boolean read(byte[] bytes, int length, Set<String> out) {
+        ByteBuffer b = ByteBuffer.wrap(bytes, 0, length);
+        if (b.getInt() != 0xCAFEBABE) throw new IllegalArgumentException("Not a class file");
+        b.getShort(); // Minor
+        b.getShort(); // Major
+        int count = b.getShort() & 0xFFFF;
+        String[] utf8 = new String[count];
+        int[] classes = new int[count];
+        int classCount = 0;
+        for (int i = 1; i < count; i++) {
+            int tag = b.get();
+            switch (tag) {
+                case 1: // Utf8
+                    int len = b.getShort() & 0xFFFF;
+                    utf8[i] = new String(bytes, b.position(), len, StandardCharsets.UTF_8); // Close enough to modified utf8 for names
+                    b.position(b.position() + len);
+                    break;
+                case 7: // Class
+                    classes[classCount++] = b.getShort() & 0xFFFF;
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    b.getShort();
+                    break;
+                case 15: // MethodHandle
+                    b.get();
+                    b.getShort();
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    b.getInt();
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    b.getLong();
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+        for (int i = 0; i < classCount; i++) {
+            String name = utf8[classes[i]];
+            if (name.startsWith("[")) {
+                descriptors(name, out);
+            } else {
+                out.add(name);
+            }
+        }
+        for (String s : utf8) {
+            if (s != null) descriptors(s, out);
+        }
+        b.getShort(); // Access
+        b.getShort(); // This
+        b.getShort(); // Super
+        int interfaces = b.getShort() & 0xFFFF;
+        b.position(b.position() + interfaces * 2);
+        int fields = b.getShort() & 0xFFFF;
+        boolean constants = false;
+        for (int i = 0; i < fields; i++) {
+            b.getShort(); // Access
+            b.getShort(); // Name
+            b.getShort(); // Descriptor
+            int attributes = b.getShort() & 0xFFFF;
+            for (int j = 0; j < attributes; j++) {
+                if ("ConstantValue".equals(utf8[b.getShort() & 0xFFFF])) constants = true;
+                int len = b.getInt();
+                b.position(b.position() + len);
+            }
+        }
+        return constants;
+    }
+
+    /**
+     * Collects class names from descriptors and signatures, i.e. everything of the shape {@code L<name>;} or
+     * {@code L<name><}.
+     */
+    static void descriptors(String s, Set<String> out) {
+        int i = s.indexOf('L');
+        while (i >= 0 && i < s.length()) {
+            int end = i + 1;
+            while (end < s.length()) {
+                char c = s.charAt(end);
+                if (c == ';' || c == '<') break;
+                if (c == '(' || c == ')' || c == '[' || c == ' ' || c == '.') {
+                    end = -1;
+                    break;
+                }
+                end++;
+            }
+            if (end > i + 1 && end < s.length()) {
+                out.add(s.substring(i + 1, end));
+                i = s.indexOf('L', end);
+            } else {
+                i = s.indexOf('L', i + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.coolcrabs.brachyura.compiler.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+import io.github.coolcrabs.brachyura.util.Util;
+
+/**
+ * Keeps the complete outputs of compilations (classes, generated sources and annotation processor resources)
+ * in a directory, one file per hash of everything that went into the compilation.
+ * A hit recreates the file manager without running javac.
+ */
+class CompilationOutputCache {
+    static final int VERSION = 1;
+    static final String EXTENSION = ".bin";
+
+    final Path dir;
+    final int maxEntries;
+
+    CompilationOutputCache(Path dir, int maxEntries) {
+        this.dir = dir;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param fingerprint Hash of the options, classpath, source path and compiler
+     */
+    static String key(String fingerprint, List<Path> sources) {
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        MessageDigestUtil.update(md, VERSION);
+        MessageDigestUtil.update(md, fingerprint);
+        MessageDigestUtil.update(md, sources.size());
+        for (Path source : sources) {
+            MessageDigestUtil.update(md, source.toAbsolutePath().normalize().toString());
+            md.update(IncrementalCompilation.hash(source));
+        }
+        return MessageDigestUtil.toHexHash(md.digest());
+    }
+
+    @Nullable
+    BrachyuraJavaFileManager load(String key) {
+        Path file = dir.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(PathUtil.inputStream(file)))) {
+            if (in.readInt() != VERSION) return null;
+            BrachyuraJavaFileManager fileManager = new BrachyuraJavaFileManager();
+            fileManager.close();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String location = in.readUTF();
+                String path = in.readUTF();
+                String sibling = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                JavaFileObject siblingObject = sibling.isEmpty() ? null : new SimpleJavaFileObject(new URI(sibling), Kind.SOURCE) { };
+                fileManager.addOutput(IncrementalCompilation.location(location), path, path.endsWith(".class") ? Kind.CLASS : Kind.OTHER, bytes, siblingObject);
+            }
+            // Marks the entry as recently used for pruning
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            Logger.info("Using cached compilation output {}", key);
+            return fileManager;
+        } catch (Exception e) {
+            Logger.warn("Unable to read cached compilation output {}", file);
+            Logger.warn(e);
+            return null;
+        }
+    }
+
+    void store(String key, BrachyuraJavaFileManager fileManager) {
+        try {
+            try (AtomicFile f = new AtomicFile(dir.resolve(key + EXTENSION))) {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(PathUtil.outputStream(f.tempPath)))) {
+                    out.writeInt(VERSION);
+                    ArrayList<Map.Entry<URI, OutputFile>> outputs = new ArrayList<>();
+                    for (Map.Entry<URI, OutputFile> e : fileManager.output.entrySet()) {
+                        if (e.getValue().exists) outputs.add(e);
+                    }
+                    out.writeInt(outputs.size());
+                    for (Map.Entry<URI, OutputFile> e : outputs) {
+                        OutputFile file = e.getValue();
+                        out.writeUTF(IncrementalCompilation.locationName(e.getKey()));
+                        out.writeUTF(e.getKey().getPath().substring(1));
+                        out.writeUTF(file.sibling == null ? "" : file.sibling.toUri().toString());
+                        out.writeInt(file.bytes.size());
+                        out.write(file.bytes.buf(), 0, file.bytes.size());
+                    }
+                }
+                f.commit();
+            }
+            prune();
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * Deletes all but the {@link #maxEntries} most recently used entries
+     */
+    void prune() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(dir)) {
+            entries = files.filter(p -> p.getFileName().toString().endsWith(EXTENSION)).collect(Collectors.toList());
+        }
+        if (entries.size() <= maxEntries) return;
+        entries.sort(Comparator.comparing((Path p) -> {
+            try {
+                return Files.getLastModifiedTime(p);
+            } catch (IOException e) {
+                throw Util.sneak(e);
+            }
+        }).reversed());
+        for (Path p : entries.subList(maxEntries, entries.size())) {
+            PathUtil.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package io.github.coolcrabs.brachyura.compiler.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import javax.tools.FileObject;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.processing.ProcessingId;
+import io.github.coolcrabs.brachyura.processing.ProcessingSink;
+import io.github.coolcrabs.brachyura.processing.ProcessingSource;
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+import io.github.coolcrabs.brachyura.util.StreamUtil;
+import io.github.coolcrabs.brachyura.util.Util;
+import io.github.coolcrabs.brachyura.zip.ZipArchive;
+
+/**
+ * Recompiles only the sources that changed since the last compilation and the sources depending on them,
+ * as found in the constant pools of their classes. The outputs of all other sources are taken from the state file.
+ *
+ * <p>Falls back to a full compilation if the state is missing or was recorded with different options, classpath or
+ * compiler, or if a changed source declared compile time constants. Outputs without a source file (those of
+ * annotation processors) can't be attributed to sources, so no state is kept for compilations producing them.
+ */
+class IncrementalCompilation {
+    static final int VERSION = 2;
+
+    final Path stateFile;
+    final String fingerprint;
+    final List<Path> sources;
+    final BiFunction<List<Path>, @Nullable ProcessingSource, BrachyuraJavaFileManager> compiler;
+
+    IncrementalCompilation(Path stateFile, String fingerprint, List<Path> sources, BiFunction<List<Path>, @Nullable ProcessingSource, BrachyuraJavaFileManager> compiler) {
+        this.stateFile = stateFile;
+        this.fingerprint = fingerprint;
+        this.sources = sources;
+        this.compiler = compiler;
+    }
+
+    static final class Output {
+        final String location;
+        final String path;
+        final byte[] bytes;
+
+        Output(String location, String path, byte[] bytes) {
+            this.location = location;
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+
+    static final class SourceRecord {
+        final byte[] hash;
+        final boolean constants;
+        final HashSet<String> dependencies;
+        final List<Output> outputs;
+
+        SourceRecord(byte[] hash, boolean constants, HashSet<String> dependencies, List<Output> outputs) {
+            this.hash = hash;
+            this.constants = constants;
+            this.dependencies = dependencies;
+            this.outputs = outputs;
+        }
+
+        void classes(HashSet<String> out) {
+            for (Output o : outputs) {
+                if (o.path.endsWith(".class")) out.add(o.path.substring(0, o.path.length() - 6));
+            }
+        }
+    }
+
+    JavaCompilationResult compile() {
+        LinkedHashMap<Path, byte[]> hashes = new LinkedHashMap<>();
+        for (Path source : sources) {
+            hashes.put(source.toAbsolutePath().normalize(), hash(source));
+        }
+        Map<Path, SourceRecord> previous = load();
+        if (previous == null) {
+            return finish(compiler.apply(sources, null), hashes, new HashMap<>());
+        }
+        List<Path> recompile = new ArrayList<>();
+        HashSet<String> dirtyClasses = new HashSet<>();
+        for (Map.Entry<Path, byte[]> e : hashes.entrySet()) {
+            SourceRecord r = previous.get(e.getKey());
+            if (r == null || !Arrays.equals(r.hash, e.getValue())) {
+                recompile.add(e.getKey());
+                if (r != null) {
+                    if (r.constants) return full("constants in " + e.getKey() + " changed", hashes);
+                    r.classes(dirtyClasses);
+                }
+            }
+        }
+        for (Map.Entry<Path, SourceRecord> e : previous.entrySet()) {
+            if (!hashes.containsKey(e.getKey())) {
+                if (e.getValue().constants) return full("constants in " + e.getKey() + " removed", hashes);
+                e.getValue().classes(dirtyClasses);
+            }
+        }
+        // Everything depending on a dirty class, transitively
+        HashSet<Path> recompiled = new HashSet<>(recompile);
+        boolean changed = !dirtyClasses.isEmpty();
+        while (changed) {
+            changed = false;
+            for (Path source : hashes.keySet()) {
+                if (recompiled.contains(source)) continue;
+                SourceRecord r = previous.get(source);
+                for (String dep : r.dependencies) {
+                    if (dirtyClasses.contains(dep)) {
+                        recompile.add(source);
+                        recompiled.add(source);
+                        r.classes(dirtyClasses);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        HashMap<Path, SourceRecord> reused = new HashMap<>();
+        for (Path source : hashes.keySet()) {
+            if (!recompiled.contains(source)) reused.put(source, previous.get(source));
+        }
+        Logger.info("Incremental compilation: recompiling {} of {} sources", recompile.size(), hashes.size());
+        BrachyuraJavaFileManager fileManager;
+        if (recompile.isEmpty()) {
+            fileManager = new BrachyuraJavaFileManager();
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                throw Util.sneak(e);
+            }
+        } else {
+            fileManager = compiler.apply(recompile, new ProcessingSource() {
+                @Override
+                public void getInputs(ProcessingSink sink) {
+                    for (SourceRecord r : reused.values()) {
+                        for (Output o : r.outputs) {
+                            if (o.location.equals(StandardLocation.CLASS_OUTPUT.getName())) {
+                                sink.sink(() -> new ByteArrayInputStream(o.bytes), new ProcessingId(o.path, this));
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        return finish(fileManager, hashes, reused);
+    }
+
+    JavaCompilationResult full(String reason, Map<Path, byte[]> hashes) {
+        Logger.info("Incremental compilation: recompiling everything as {}", reason);
+        return finish(compiler.apply(sources, null), hashes, new HashMap<>());
+    }
+
+    /**
+     * Adds the reused outputs to the file manager and records the new state
+     */
+    JavaCompilationResult finish(BrachyuraJavaFileManager fileManager, Map<Path, byte[]> hashes, Map<Path, SourceRecord> reused) {
+        try {
+            LinkedHashMap<Path, List<Output>> outputs = new LinkedHashMap<>();
+            boolean attributable = true;
+            for (Map.Entry<URI, OutputFile> e : fileManager.output.entrySet()) {
+                OutputFile file = e.getValue();
+                if (!file.exists) continue;
+                Path source = sourceOf(file.sibling);
+                if (source == null || !hashes.containsKey(source)) {
+                    attributable = false;
+                    continue;
+                }
+                outputs.computeIfAbsent(source, k -> new ArrayList<>()).add(new Output(locationName(e.getKey()), e.getKey().getPath().substring(1), Arrays.copyOf(file.bytes.buf(), file.bytes.size())));
+            }
+            for (Map.Entry<Path, SourceRecord> e : reused.entrySet()) {
+                JavaFileObject sibling = new SimpleJavaFileObject(e.getKey().toUri(), Kind.SOURCE) { };
+                for (Output o : e.getValue().outputs) {
+                    fileManager.addOutput(location(o.location), o.path, o.path.endsWith(".class") ? Kind.CLASS : Kind.OTHER, o.bytes, sibling);
+                }
+            }
+            if (!attributable) {
+                Logger.info("Incremental compilation: outputs without a source file, not keeping state");
+                PathUtil.deleteIfExists(stateFile);
+            } else {
+                LinkedHashMap<Path, SourceRecord> state = new LinkedHashMap<>();
+                for (Map.Entry<Path, byte[]> e : hashes.entrySet()) {
+                    SourceRecord r = reused.get(e.getKey());
+                    if (r == null) r = record(e.getValue(), outputs.getOrDefault(e.getKey(), new ArrayList<>()));
+                    state.put(e.getKey(), r);
+                }
+                save(state);
+            }
+            return new JavaCompilationResult(fileManager);
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    static SourceRecord record(byte[] hash, List<Output> outputs) {
+        HashSet<String> dependencies = new HashSet<>();
+        boolean constants = false;
+        for (Output o : outputs) {
+            if (o.path.endsWith(".class")) {
+                constants |= ClassDependencies.read(o.bytes, o.bytes.length, dependencies);
+            }
+        }
+        dependencies.removeIf(s -> s.startsWith("java/"));
+        return new SourceRecord(hash, constants, dependencies, outputs);
+    }
+
+    @Nullable
+    static Path sourceOf(@Nullable FileObject sibling) {
+        if (sibling == null) return null;
+        URI uri = sibling.toUri();
+        if (!"file".equals(uri.getScheme())) return null;
+        return Paths.get(uri).toAbsolutePath().normalize();
+    }
+
+    static String locationName(URI uri) {
+        for (StandardLocation l : StandardLocation.values()) {
+            if (l.getName().replaceAll("[^a-zA-Z0-9]", ".").equals(uri.getHost())) return l.getName();
+        }
+        return uri.getHost();
+    }
+
+    static Location location(String name) {
+        return StandardLocation.locationFor(name);
+    }
+
+    static byte[] hash(Path file) {
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        try (InputStream in = PathUtil.inputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+        return md.digest();
+    }
+
+    @Nullable
+    Map<Path, SourceRecord> load() {
+        if (!Files.isRegularFile(stateFile)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(PathUtil.inputStream(stateFile)))) {
+            if (in.readInt() != VERSION || !in.readUTF().equals(fingerprint)) {
+                Logger.info("Incremental compilation: configuration changed, recompiling everything");
+                return null;
+            }
+            int count = in.readInt();
+            HashMap<Path, SourceRecord> r = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Path source = Paths.get(in.readUTF());
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                boolean constants = in.readBoolean();
+                int depCount = in.readInt();
+                HashSet<String> deps = new HashSet<>(depCount * 2);
+                for (int j = 0; j < depCount; j++) deps.add(in.readUTF());
+                int outCount = in.readInt();
+                ArrayList<Output> outputs = new ArrayList<>(outCount);
+                for (int j = 0; j < outCount; j++) {
+                    String location = in.readUTF();
+                    String path = in.readUTF();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    outputs.add(new Output(location, path, bytes));
+                }
+                r.put(source, new SourceRecord(hash, constants, deps, outputs));
+            }
+            return r;
+        } catch (Exception e) {
+            Logger.warn("Unable to read incremental compilation state {}, recompiling everything", stateFile);
+            Logger.warn(e);
+            return null;
+        }
+    }
+
+    void save(Map<Path, SourceRecord> state) {
+        try (AtomicFile f = new AtomicFile(stateFile)) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(PathUtil.outputStream(f.tempPath)))) {
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeInt(state.size());
+                for (Map.Entry<Path, SourceRecord> e : state.entrySet()) {
+                    SourceRecord r = e.getValue();
+                    out.writeUTF(e.getKey().toString());
+                    out.writeByte(r.hash.length);
+                    out.write(r.hash);
+                    out.writeBoolean(r.constants);
+                    out.writeInt(r.dependencies.size());
+                    for (String dep : r.dependencies) out.writeUTF(dep);
+                    out.writeInt(r.outputs.size());
+                    for (Output o : r.outputs) {
+                        out.writeUTF(o.location);
+                        out.writeUTF(o.path);
+                        out.writeInt(o.bytes.length);
+                        out.write(o.bytes);
+                    }
+                }
+            }
+            f.commit();
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * Hashes the contents of a jar by the names, CRC-32s and sizes of its entries, which only needs its central
+     * directory rather than inflating every entry. Files that are not zips are hashed as a whole.
+     */
+    static void updateJar(MessageDigest md, Path jar) {
+        try (ZipArchive archive = new ZipArchive(jar)) {
+            for (ZipArchive.Entry entry : archive.getEntries()) {
+                MessageDigestUtil.update(md, entry.name);
+                MessageDigestUtil.update(md, entry.crc);
+                MessageDigestUtil.update(md, entry.size);
+            }
+        } catch (Exception e) {
+            md.update(hash(jar));
+        }
+    }
+
+    /**
+     * Hashes everything besides the sources that the outputs depend on
+     */
+    static String fingerprint(JavaCompiler compiler, List<String> options, List<Path> classpath, List<ProcessingSource> classpathSources, List<Path> sourcePath) {
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        MessageDigestUtil.update(md, VERSION);
+        MessageDigestUtil.update(md, compiler.getClass().getName());
+        MessageDigestUtil.update(md, System.getProperty("java.vendor"));
+        MessageDigestUtil.update(md, System.getProperty("java.version"));
+        for (String option : options) {
+            MessageDigestUtil.update(md, option);
+        }
+        try {
+            for (Path p : classpath) {
+                MessageDigestUtil.update(md, p.toString());
+                if (Files.isDirectory(p)) {
+                    try (Stream<Path> files = Files.walk(p)) {
+                        for (Path f : (Iterable<Path>) files.sorted()::iterator) {
+                            MessageDigestUtil.update(md, f.toString());
+                            if (Files.isRegularFile(f)) {
+                                md.update(hash(f));
+                            }
+                        }
+                    }
+                } else if (Files.exists(p)) {
+                    updateJar(md, p);
+                }
+            }
+            for (ProcessingSource source : classpathSources) {
+                source.getInputs((in, id) -> {
+                    MessageDigestUtil.update(md, id.path);
+                    try (InputStream is = in.get()) {
+                        md.update(StreamUtil.readFullyAsBytes(is));
+                    } catch (IOException e) {
+                        throw Util.sneak(e);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+        for (Path p : sourcePath) {
+            MessageDigestUtil.update(md, p.toString());
+            md.update(hash(p));
+        }
+        return MessageDigestUtil.toHexHash(md.digest());
+    }
+}
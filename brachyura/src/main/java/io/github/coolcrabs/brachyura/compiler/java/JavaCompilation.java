@@ -19,6 +19,7 @@ import javax.tools.ToolProvider;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import org.tinylog.Logger;
 
@@ -27,12 +28,18 @@ import io.github.coolcrabs.brachyura.util.LoggerWriter;
 import io.github.coolcrabs.brachyura.util.Util;
 
 public class JavaCompilation {
+    static final int OUTPUT_CACHE_ENTRIES = 4;
+
     private ArrayList<String> options = new ArrayList<>();
     private ArrayList<Path> sourceFiles = new ArrayList<>();
     private ArrayList<Path> sourcePath = new ArrayList<>();
     private ArrayList<Path> classpath = new ArrayList<>();
     private ArrayList<ProcessingSource> classpathSources = new ArrayList<>();
     private JavaCompiler compiler = ToolProvider.getSystemJavaCompiler(); // Note: JvmUtil#compileArgs would need to be changed too if this were to change
+    @Nullable
+    private Path incrementalState;
+    @Nullable
+    private Path outputCache;
 
     @NotNull
     @Contract(mutates = "this", pure = false, value = "_ -> this")
@@ -130,7 +137,31 @@ public class JavaCompilation {
         return this;
     }
 
-    ArrayList<File> toJavaIOFileArray(ArrayList<Path> p) {
+    /**
+     * Enables incremental compilation: only sources that changed since the last compilation with the same state file,
+     * and the sources depending on them, are passed to javac. The outputs of the other sources are reused.
+     *
+     * @param stateFile Where to keep the hashes, outputs and dependencies of the sources between compilations,
+     * or null to always compile everything
+     */
+    public JavaCompilation setIncremental(@Nullable Path stateFile) {
+        this.incrementalState = stateFile;
+        return this;
+    }
+
+    /**
+     * Enables the output cache: the outputs of the last few compilations are kept in the directory by a hash of the
+     * sources, options, classpath and compiler, and a compilation with the same inputs returns them without running
+     * javac. Annotation processors are found on the classpath or in the options, so they are part of the hash.
+     *
+     * @param cacheDir The directory to keep the outputs in, or null to not cache them
+     */
+    public JavaCompilation setOutputCache(@Nullable Path cacheDir) {
+        this.outputCache = cacheDir;
+        return this;
+    }
+
+    ArrayList<File> toJavaIOFileArray(List<Path> p) {
         ArrayList<File> r = new ArrayList<>(p.size());
         for (int i = 0; i < p.size(); i++) {
             r.add(p.get(i).toFile());
@@ -140,6 +171,29 @@ public class JavaCompilation {
 
     @NotNull
     public JavaCompilationResult compile() throws CompilationFailedException {
+        if (incrementalState == null && outputCache == null) {
+            return new JavaCompilationResult(compile(sourceFiles, null));
+        }
+        String fingerprint = IncrementalCompilation.fingerprint(compiler, options, classpath, classpathSources, sourcePath);
+        CompilationOutputCache cache = null;
+        String key = null;
+        if (outputCache != null) {
+            cache = new CompilationOutputCache(outputCache, OUTPUT_CACHE_ENTRIES);
+            key = CompilationOutputCache.key(fingerprint, sourceFiles);
+            BrachyuraJavaFileManager cached = cache.load(key);
+            if (cached != null) return new JavaCompilationResult(cached);
+        }
+        JavaCompilationResult result;
+        if (incrementalState != null) {
+            result = new IncrementalCompilation(incrementalState, fingerprint, sourceFiles, this::compile).compile();
+        } else {
+            result = new JavaCompilationResult(compile(sourceFiles, null));
+        }
+        if (cache != null) cache.store(key, result.fileManager);
+        return result;
+    }
+
+    BrachyuraJavaFileManager compile(List<Path> sources, @Nullable ProcessingSource extraClasspath) throws CompilationFailedException {
         try {
             try (BrachyuraJavaFileManager fileManager = new BrachyuraJavaFileManager()) {
                 boolean success;
@@ -148,12 +202,15 @@ public class JavaCompilation {
                 for (ProcessingSource s : classpathSources) {
                     fileManager.extraCp.add(s);
                 }
+                if (extraClasspath != null) {
+                    fileManager.extraCp.add(extraClasspath);
+                }
                 try (LoggerWriter w = new LoggerWriter()) {
-                    CompilationTask compilationTask = compiler.getTask(w, fileManager, BrachyuraDiagnosticListener.INSTANCE, options, null, fileManager.getJavaFileObjectsFromFiles(toJavaIOFileArray(sourceFiles)));
+                    CompilationTask compilationTask = compiler.getTask(w, fileManager, BrachyuraDiagnosticListener.INSTANCE, options, null, fileManager.getJavaFileObjectsFromFiles(toJavaIOFileArray(sources)));
                     success = compilationTask.call();
                 }
                 if (success) {
-                    return new JavaCompilationResult(fileManager);
+                    return fileManager;
                 }
                 throw new CompilationFailedException();
             }
@@ -1,20 +1,41 @@
 package io.github.coolcrabs.brachyura.maven;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import io.github.coolcrabs.brachyura.exception.ChecksumViolationException;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
 import io.github.coolcrabs.brachyura.util.NetUtil;
+import io.github.coolcrabs.brachyura.util.PathUtil;
 
 public final class HttpMavenRepository extends MavenRepository {
 
+    /**
+     * The maximum amount of concurrent requests to a single host, shared by all repositories on that host.
+     */
+    public static final int MAX_CONNECTIONS_PER_HOST = 4;
+    private static final ConcurrentHashMap<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+
+    private static final MavenTransport DEFAULT_TRANSPORT = new UrlConnectionTransport();
+
     private final String repoUrl;
     private boolean checksums = true;
+    @NotNull
+    private MavenTransport transport = DEFAULT_TRANSPORT;
 
     public HttpMavenRepository(@NotNull String repoUrl) {
         if (repoUrl.codePointBefore(repoUrl.length()) != '/') {
@@ -27,40 +48,152 @@ public final class HttpMavenRepository extends MavenRepository {
         return this.checksums;
     }
 
+    /**
+     * Sets the transport used to talk to the server, {@link UrlConnectionTransport} by default.
+     *
+     * @param transport The transport to use from now on
+     * @return Always the current instance of the class, for chaining
+     */
+    @NotNull
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    public HttpMavenRepository setTransport(@NotNull MavenTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Fetches a file.
+     *
+     * @param toDisk True to stream the file into a temporary file while hashing it, false to keep it in memory
+     * @return The file, the passed cached file if it was not modified or null if it could not be obtained
+     */
     @Nullable
-    private ResolvedFile resolve0(String location) {
-        try (InputStream in = NetUtil.inputStream(NetUtil.url(location))) {
-            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-            byte[] cache = new byte[4096];
-            for (int read = in.read(cache); read != -1; read = in.read(cache)) {
-                byteOut.write(cache, 0, read);
+    private ResolvedFile resolve0(String location, boolean toDisk, @Nullable ResolvedFile cached, @Nullable String etag, long lastModified) {
+        URL url = NetUtil.url(location);
+        Semaphore permits = HOST_PERMITS.computeIfAbsent(url.getHost(), host -> new Semaphore(MAX_CONNECTIONS_PER_HOST));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try (MavenTransport.Response response = transport.get(url, etag, lastModified)) {
+            if (response.status == MavenTransport.Response.NOT_MODIFIED && cached != null) {
+                return cached;
+            }
+            InputStream in = response.body;
+            if (response.status != MavenTransport.Response.OK || in == null) {
+                return null;
+            }
+            ResolvedFile resolved;
+            if (toDisk) {
+                resolved = download(in);
+            } else {
+                ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+                byte[] cache = new byte[16384];
+                for (int read = in.read(cache); read != -1; read = in.read(cache)) {
+                    byteOut.write(cache, 0, read);
+                }
+                resolved = new ResolvedFile(this, byteOut.toByteArray());
             }
-            return new ResolvedFile(this, byteOut.toByteArray());
+            resolved.setEtag(response.etag);
+            return resolved;
         } catch (Exception e) {
             return null;
+        } finally {
+            permits.release();
         }
     }
 
+    /**
+     * Copies a response into a temporary file, hashing it on the way so that it does not need to be read again for the checksum check.
+     */
+    @NotNull
+    private ResolvedFile download(@NotNull InputStream in) throws IOException {
+        Path temp = Files.createTempFile("brachyura-", ".download");
+        MessageDigest sha1 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1);
+        MessageDigest sha256 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        try (DigestInputStream digestIn = new DigestInputStream(new DigestInputStream(in, sha1), sha256)) {
+            Files.copy(digestIn, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return ResolvedFile.download(this, temp, MessageDigestUtil.toHexHash(sha1.digest()), MessageDigestUtil.toHexHash(sha256.digest()));
+    }
+
     @Override
     @Nullable
     public ResolvedFile resolve(@NotNull String folder, @NotNull String file) {
-        StringBuilder locationBuilder = new StringBuilder(this.repoUrl.length() + folder.length() + file.length() + 6);
+        return resolve(folder, file, false, null, null, -1);
+    }
+
+    @Override
+    @Nullable
+    ResolvedFile resolveToDisk(@NotNull String folder, @NotNull String file) {
+        return resolve(folder, file, true, null, null, -1);
+    }
+
+    @Override
+    public boolean probe(@NotNull String folder, @NotNull String file) {
+        URL url = NetUtil.url(location(folder, file));
+        Semaphore permits = HOST_PERMITS.computeIfAbsent(url.getHost(), host -> new Semaphore(MAX_CONNECTIONS_PER_HOST));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            // Cancelled, the answer no longer matters
+            Thread.currentThread().interrupt();
+            return true;
+        }
+        try {
+            int status = transport.head(url);
+            return status != 404 && status != 410;
+        } catch (IOException e) {
+            // Let resolve find out what is wrong
+            return true;
+        } finally {
+            permits.release();
+        }
+    }
+
+    @NotNull
+    private String location(@NotNull String folder, @NotNull String file) {
+        StringBuilder locationBuilder = new StringBuilder(this.repoUrl.length() + folder.length() + file.length() + 1);
         locationBuilder.append(this.repoUrl).append(folder);
         if (folder.codePointBefore(folder.length()) != '/' && file.codePointAt(0) != '/') {
             locationBuilder.append('/');
         }
-        locationBuilder.append(file);
-        String originalFileLocation = locationBuilder.toString();
-        ResolvedFile original = resolve0(originalFileLocation);
-        if (original != null && checksums) {
-            locationBuilder.append(".sha1");
-            ResolvedFile checksumFile = resolve0(locationBuilder.toString());
+        return locationBuilder.append(file).toString();
+    }
+
+    @Override
+    @Nullable
+    public ResolvedFile revalidate(@NotNull String folder, @NotNull String file, @NotNull ResolvedFile cached, @Nullable String etag, long lastModified) {
+        return resolve(folder, file, false, cached, etag, lastModified);
+    }
+
+    @Override
+    @Nullable
+    ResolvedFile revalidateToDisk(@NotNull String folder, @NotNull String file, @NotNull ResolvedFile cached, @Nullable String etag, long lastModified) {
+        return resolve(folder, file, true, cached, etag, lastModified);
+    }
+
+    /**
+     * @param toDisk True to download the file to a temporary file, which only the {@link MavenResolver} moves into its cache
+     */
+    @Nullable
+    private ResolvedFile resolve(@NotNull String folder, @NotNull String file, boolean toDisk, @Nullable ResolvedFile cached, @Nullable String etag, long lastModified) {
+        String originalFileLocation = location(folder, file);
+        ResolvedFile original = resolve0(originalFileLocation, toDisk, cached, etag, lastModified);
+        if (original != null && original != cached && checksums) {
+            ResolvedFile checksumFile = resolve0(originalFileLocation + ".sha1", false, null, null, -1);
             String dataChecksum = original.getSHA1MessageDigest();
-            if (checksumFile == null) {
-                throw new ChecksumViolationException(dataChecksum, null, originalFileLocation);
-            }
-            String actualChecksum = new String(checksumFile.getData(), StandardCharsets.UTF_8).trim().split(" ")[0];
-            if (!actualChecksum.equalsIgnoreCase(dataChecksum)) {
+            String actualChecksum = checksumFile == null ? null : new String(checksumFile.getData(), StandardCharsets.UTF_8).trim().split(" ")[0];
+            if (actualChecksum == null || !actualChecksum.equalsIgnoreCase(dataChecksum)) {
+                Path downloadPath = original.getCachePath();
+                if (original.isTemporary() && downloadPath != null) {
+                    PathUtil.deleteIfExists(downloadPath);
+                }
                 throw new ChecksumViolationException(dataChecksum, actualChecksum, originalFileLocation);
             }
         }
@@ -82,4 +215,9 @@ public final class HttpMavenRepository extends MavenRepository {
         this.checksums = value;
         return this;
     }
+
+    @Override
+    public String toString() {
+        return this.repoUrl;
+    }
 }
@@ -3,16 +3,17 @@ package io.github.coolcrabs.brachyura.maven;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.security.DigestInputStream;
+import java.security.MessageDigest;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.tinylog.Logger;
 
+import io.github.coolcrabs.brachyura.maven.publish.PublicationChecksums;
 import io.github.coolcrabs.brachyura.maven.publish.PublicationId;
 import io.github.coolcrabs.brachyura.maven.publish.PublishRepository;
 import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
@@ -58,20 +59,14 @@ public class LocalMavenRepository extends MavenRepository implements PublishRepo
         Path target = root.resolve(id.toPath());
         Files.createDirectories(target.getParent());
         Logger.info("Publishing " + id.toString() + " to " + target.toAbsolutePath().toString());
-        try (DigestInputStream digestInSha256 = new DigestInputStream(source, MessageDigestUtil.messageDigest("SHA-256"))) {
-            try (DigestInputStream digestInMd5 = new DigestInputStream(digestInSha256,  MessageDigestUtil.messageDigest("MD5"))) {
-                try (DigestInputStream digestInSha1 = new DigestInputStream(digestInMd5,  MessageDigestUtil.messageDigest("SHA-1"))) {
-                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
-                    
-                    byte[] checksum = MessageDigestUtil.toHexHash(digestInMd5.getMessageDigest().digest()).getBytes(StandardCharsets.UTF_8);
-                    Files.write(target.resolveSibling(target.getFileName() + ".sha1"), checksum);
-                }
-                byte[] checksum = MessageDigestUtil.toHexHash(digestInMd5.getMessageDigest().digest()).getBytes(StandardCharsets.UTF_8);
-                Files.write(target.resolveSibling(target.getFileName() + ".md5"), checksum);
-            }
-            byte[] checksum = MessageDigestUtil.toHexHash(digestInSha256.getMessageDigest().digest()).getBytes(StandardCharsets.UTF_8);
-            Files.write(target.resolveSibling(target.getFileName() + ".sha256"), checksum);
+        MessageDigest md5 = MessageDigestUtil.messageDigest("MD5");
+        MessageDigest sha1 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1);
+        MessageDigest sha256 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        try (InputStream in = new DigestInputStream(new DigestInputStream(new DigestInputStream(source, md5), sha1), sha256)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
         }
+        writeChecksums(target, new PublicationChecksums(MessageDigestUtil.toHexHash(md5.digest()),
+                MessageDigestUtil.toHexHash(sha1.digest()), MessageDigestUtil.toHexHash(sha256.digest())));
     }
 
     @Override
@@ -79,6 +74,31 @@ public class LocalMavenRepository extends MavenRepository implements PublishRepo
         publish(id, PathUtil.inputStream(source));
     }
 
+    @Override
+    public void publish(@NotNull PublicationId id, byte @NotNull [] source, @NotNull PublicationChecksums checksums) throws IOException {
+        Path target = root.resolve(id.toPath());
+        Files.createDirectories(target.getParent());
+        Logger.info("Publishing " + id.toString() + " to " + target.toAbsolutePath().toString());
+        Files.write(target, source);
+        writeChecksums(target, checksums);
+    }
+
+    @Override
+    public void publish(@NotNull PublicationId id, @NotNull Path source, @NotNull PublicationChecksums checksums) throws IOException {
+        Path target = root.resolve(id.toPath());
+        Files.createDirectories(target.getParent());
+        Logger.info("Publishing " + id.toString() + " to " + target.toAbsolutePath().toString());
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        writeChecksums(target, checksums);
+    }
+
+    private static void writeChecksums(@NotNull Path target, @NotNull PublicationChecksums checksums) throws IOException {
+        byte[][] hashes = checksums.getHexHashes();
+        for (int i = 0; i < hashes.length; i++) {
+            Files.write(target.resolveSibling(target.getFileName() + "." + PublicationChecksums.EXTENSIONS[i]), hashes[i]);
+        }
+    }
+
     @Override
     @Nullable
     public ResolvedFile resolve(@NotNull String folder, @NotNull String file) {
@@ -88,4 +108,14 @@ public class LocalMavenRepository extends MavenRepository implements PublishRepo
         }
         return new ResolvedFile(this, resolvedFile);
     }
+
+    @Override
+    public boolean probe(@NotNull String folder, @NotNull String file) {
+        return Files.exists(root.resolve(folder).resolve(file));
+    }
+
+    @Override
+    public String toString() {
+        return this.root.toUri().toString();
+    }
 }
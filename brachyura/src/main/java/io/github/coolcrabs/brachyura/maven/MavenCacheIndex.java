@@ -0,0 +1,165 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+
+/**
+ * A persistent record of which files of a {@link MavenResolver} cache folder exist and which could not be found
+ * in any repository, so that a warm cache can be used without probing the file system for every file.
+ *
+ * <p>The index is an append-only text file in the cache folder with one entry per line, later lines taking precedence:
+ * <ul>
+ * <li>{@code +<path>}: the file is present in the cache</li>
+ * <li>{@code -<millis> <path>}: no repository had the file at the given time</li>
+ * <li>{@code x<path>}: nothing is known about the file anymore</li>
+ * </ul>
+ * Paths are relative to the cache folder. Appending keeps concurrent processes that share a cache folder from
+ * overwriting each other's entries, the file is compacted when it is loaded and mostly consists of overwritten entries.
+ *
+ * <p>The index is only a cache of the folder: deleting it is always safe, and files listed as present are checked to
+ * still exist once per resolver, so files may also be deleted from the cache folder by hand.
+ */
+final class MavenCacheIndex {
+    static final String FILE_NAME = ".brachyura-index";
+
+    /**
+     * The value of {@link #entries} for files that are present.
+     */
+    static final long PRESENT = -1;
+
+    @NotNull
+    private final Path indexFile;
+
+    /**
+     * {@link #PRESENT} or the time at which the file was found to be missing, in milliseconds since the epoch.
+     */
+    private final Map<String, Long> entries = new ConcurrentHashMap<>();
+
+    private MavenCacheIndex(@NotNull Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    @NotNull
+    static MavenCacheIndex load(@NotNull Path cacheFolder) {
+        MavenCacheIndex index = new MavenCacheIndex(cacheFolder.resolve(FILE_NAME));
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(index.indexFile, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines++;
+                index.apply(line);
+            }
+        } catch (NoSuchFileException e) {
+            return index;
+        } catch (IOException e) {
+            Logger.warn("Unable to read maven cache index {}, ignoring it", index.indexFile.toAbsolutePath());
+            Logger.warn(e);
+            index.entries.clear();
+            return index;
+        }
+        if (lines > 2 * index.entries.size() + 1000) {
+            index.compact();
+        }
+        return index;
+    }
+
+    private void apply(@NotNull String line) {
+        if (line.length() < 2) {
+            return; // Probably cut off by a crash
+        }
+        switch (line.charAt(0)) {
+        case '+':
+            entries.put(line.substring(1), PRESENT);
+            break;
+        case '-':
+            int space = line.indexOf(' ');
+            if (space == -1) {
+                return;
+            }
+            try {
+                entries.put(line.substring(space + 1), Long.parseLong(line.substring(1, space)));
+            } catch (NumberFormatException e) {
+                // Ignore the damaged line
+            }
+            break;
+        case 'x':
+            entries.remove(line.substring(1));
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void compact() {
+        try (AtomicFile atomicFile = new AtomicFile(indexFile)) {
+            try (Writer writer = Files.newBufferedWriter(atomicFile.tempPath, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                    writer.write(toLine(entry.getKey(), entry.getValue()));
+                }
+            }
+            atomicFile.commit();
+        } catch (IOException e) {
+            Logger.warn("Unable to compact maven cache index {}", indexFile.toAbsolutePath());
+            Logger.warn(e);
+        }
+    }
+
+    @NotNull
+    private static String toLine(@NotNull String path, long value) {
+        if (value == PRESENT) {
+            return '+' + path + '\n';
+        }
+        return "-" + value + ' ' + path + '\n';
+    }
+
+    /**
+     * @param path The path relative to the cache folder
+     * @return {@link #PRESENT}, the time at which the file was found to be missing or null if nothing is known about the file
+     */
+    @Nullable
+    Long get(@NotNull String path) {
+        return entries.get(path);
+    }
+
+    void present(@NotNull String path) {
+        Long previous = entries.put(path, PRESENT);
+        if (previous == null || previous != PRESENT) {
+            append(toLine(path, PRESENT));
+        }
+    }
+
+    void missing(@NotNull String path, long time) {
+        entries.put(path, time);
+        append(toLine(path, time));
+    }
+
+    void remove(@NotNull String path) {
+        if (entries.remove(path) != null) {
+            append('x' + path + '\n');
+        }
+    }
+
+    private void append(@NotNull String line) {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Files.write(indexFile, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The index only speeds things up, the cache itself is intact
+            Logger.warn("Unable to update maven cache index {}", indexFile.toAbsolutePath());
+            Logger.warn(e);
+        }
+    }
+}
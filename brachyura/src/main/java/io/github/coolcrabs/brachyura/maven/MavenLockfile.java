@@ -0,0 +1,242 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+
+/**
+ * The fully resolved dependency graphs of the roots passed to {@link MavenResolver#getTransitiveDependencies(MavenId)},
+ * stored so that later resolutions of the same root do not need to read any pom and yield the same artifacts on every machine.
+ *
+ * <p>The file is json, with one entry per root and resolver settings:
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "roots": {
+ *     "org.example:root:1.0": {
+ *       "settings": "test=false;provided=false;blacklist=",
+ *       "artifacts": [
+ *         { "id": "org.example:a:1.0", "scope": "compile", "sha1": "...", "repository": "https://..." }
+ *       ]
+ *     }
+ *   }
+ * }
+ * </pre>
+ */
+final class MavenLockfile {
+    private static final int VERSION = 1;
+
+    @NotNull
+    private final Path file;
+
+    private final Map<String, Root> roots = new TreeMap<>();
+
+    private MavenLockfile(@NotNull Path file) {
+        this.file = file;
+    }
+
+    @NotNull
+    static MavenLockfile load(@NotNull Path file) {
+        MavenLockfile lockfile = new MavenLockfile(file);
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            lockfile.read(new JsonReader(reader));
+        } catch (NoSuchFileException e) {
+            // Created on the first resolution
+        } catch (IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+            Logger.warn("Unable to read lockfile {}, resolving from scratch", file.toAbsolutePath());
+            Logger.warn(e);
+            lockfile.roots.clear();
+        }
+        return lockfile;
+    }
+
+    private void read(@NotNull JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("version")) {
+                int version = reader.nextInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported lockfile version " + version);
+                }
+            } else if (name.equals("roots")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String root = reader.nextName();
+                    roots.put(root, readRoot(reader));
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    @NotNull
+    private static Root readRoot(@NotNull JsonReader reader) throws IOException {
+        String settings = "";
+        List<Artifact> artifacts = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("settings")) {
+                settings = reader.nextString();
+            } else if (name.equals("artifacts")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    artifacts.add(readArtifact(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Root(settings, artifacts);
+    }
+
+    @NotNull
+    private static Artifact readArtifact(@NotNull JsonReader reader) throws IOException {
+        String id = null;
+        String scope = "compile";
+        String sha1 = null;
+        String repository = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+            case "id":
+                id = reader.nextString();
+                break;
+            case "scope":
+                scope = reader.nextString();
+                break;
+            case "sha1":
+                sha1 = reader.nextString();
+                break;
+            case "repository":
+                repository = reader.nextString();
+                break;
+            default:
+                reader.skipValue();
+                break;
+            }
+        }
+        reader.endObject();
+        if (id == null || sha1 == null) {
+            throw new IOException("Locked artifact without id or sha1");
+        }
+        return new Artifact(new MavenId(id), scope, sha1, repository);
+    }
+
+    /**
+     * @return The locked artifacts of the root, or null if the root was not locked with the same settings
+     */
+    @Nullable
+    synchronized List<Artifact> get(@NotNull MavenId root, @NotNull String settings) {
+        Root locked = roots.get(root.toString());
+        if (locked == null || !locked.settings.equals(settings)) {
+            return null;
+        }
+        return locked.artifacts;
+    }
+
+    /**
+     * Locks the artifacts of a root and writes the lockfile.
+     */
+    synchronized void put(@NotNull MavenId root, @NotNull String settings, @NotNull List<Artifact> artifacts) {
+        List<Artifact> sorted = new ArrayList<>(artifacts);
+        sorted.sort((a, b) -> a.id.toString().compareTo(b.id.toString()));
+        roots.put(root.toString(), new Root(settings, sorted));
+        try (AtomicFile atomicFile = new AtomicFile(file)) {
+            try (JsonWriter writer = new JsonWriter(PathUtil.newBufferedWriter(atomicFile.tempPath))) {
+                writer.setIndent("  ");
+                writer.beginObject();
+                writer.name("version").value(VERSION);
+                writer.name("roots");
+                writer.beginObject();
+                for (Map.Entry<String, Root> entry : roots.entrySet()) {
+                    writer.name(entry.getKey());
+                    writer.beginObject();
+                    writer.name("settings").value(entry.getValue().settings);
+                    writer.name("artifacts");
+                    writer.beginArray();
+                    for (Artifact artifact : entry.getValue().artifacts) {
+                        writer.beginObject();
+                        writer.name("id").value(artifact.id.toString());
+                        writer.name("scope").value(artifact.scope);
+                        writer.name("sha1").value(artifact.sha1);
+                        if (artifact.repository != null) {
+                            writer.name("repository").value(artifact.repository);
+                        }
+                        writer.endObject();
+                    }
+                    writer.endArray();
+                    writer.endObject();
+                }
+                writer.endObject();
+                writer.endObject();
+            }
+            atomicFile.commit();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write lockfile " + file.toAbsolutePath(), e);
+        }
+    }
+
+    private static final class Root {
+        @NotNull
+        final String settings;
+        @NotNull
+        final List<Artifact> artifacts;
+
+        Root(@NotNull String settings, @NotNull List<Artifact> artifacts) {
+            this.settings = settings;
+            this.artifacts = Collections.unmodifiableList(artifacts);
+        }
+    }
+
+    static final class Artifact {
+        @NotNull
+        final MavenId id;
+        /**
+         * The scope of the dependency declaration through which the artifact was first reached.
+         */
+        @NotNull
+        final String scope;
+        /**
+         * The sha1 hash of the jar, as a hexadecimal string.
+         */
+        @NotNull
+        final String sha1;
+        /**
+         * The repository the jar was downloaded from, if known. Only informative.
+         */
+        @Nullable
+        final String repository;
+
+        Artifact(@NotNull MavenId id, @NotNull String scope, @NotNull String sha1, @Nullable String repository) {
+            this.id = id;
+            this.scope = scope;
+            this.sha1 = sha1;
+            this.repository = repository;
+        }
+    }
+}
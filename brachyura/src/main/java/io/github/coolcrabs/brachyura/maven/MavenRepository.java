@@ -7,4 +7,54 @@ public abstract class MavenRepository {
 
     @Nullable
     public abstract ResolvedFile resolve(@NotNull String folder, @NotNull String file);
+
+    /**
+     * Checks whether a file that was resolved earlier is still up to date. This is used for files that
+     * change over time, such as the maven-metadata.xml of snapshot versions.
+     * The default implementation resolves the file again.
+     *
+     * @param folder The folder of the file
+     * @param file The name of the file
+     * @param cached The copy of the file the caller has
+     * @param etag The entity tag the cached copy was served with, or null if unknown
+     * @param lastModified The time in milliseconds since the epoch at which the cached copy was obtained, or -1 if unknown
+     * @return The cached file if it did not change, the new file if it did or null if the repository does not have the file
+     */
+    @Nullable
+    public ResolvedFile revalidate(@NotNull String folder, @NotNull String file, @NotNull ResolvedFile cached, @Nullable String etag, long lastModified) {
+        return resolve(folder, file);
+    }
+
+    /**
+     * Checks whether the repository has a file, ideally without fetching it. This is used to query multiple repositories
+     * at once, see {@link MavenResolver#setParallelProbing(boolean)}. A positive answer does not guarantee that
+     * {@link #resolve(String, String)} succeeds afterwards.
+     * The default implementation always answers true, so that the file is resolved as if probing was disabled.
+     *
+     * @param folder The folder of the file
+     * @param file The name of the file
+     * @return False if the repository does not have the file, true if it might have it
+     */
+    public boolean probe(@NotNull String folder, @NotNull String file) {
+        return true;
+    }
+
+    /**
+     * Resolves a file for the {@link MavenResolver}, which moves it into its cache. Unlike {@link #resolve(String, String)},
+     * the file may be a {@link ResolvedFile#isTemporary() temporary} download that the caller has to move or delete.
+     * The default implementation resolves the file.
+     */
+    @Nullable
+    ResolvedFile resolveToDisk(@NotNull String folder, @NotNull String file) {
+        return resolve(folder, file);
+    }
+
+    /**
+     * Revalidates a file for the {@link MavenResolver}, in the same way as {@link #resolveToDisk(String, String)}.
+     * The default implementation revalidates the file.
+     */
+    @Nullable
+    ResolvedFile revalidateToDisk(@NotNull String folder, @NotNull String file, @NotNull ResolvedFile cached, @Nullable String etag, long lastModified) {
+        return revalidate(folder, file, cached, etag, lastModified);
+    }
 }
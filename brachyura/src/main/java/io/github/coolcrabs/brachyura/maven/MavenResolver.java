@@ -1,38 +1,48 @@
 package io.github.coolcrabs.brachyura.maven;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.tinylog.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
 import io.github.coolcrabs.brachyura.dependency.MavenDependencyScope;
-import io.github.coolcrabs.brachyura.util.IterableNodeList;
+import io.github.coolcrabs.brachyura.exception.ChecksumViolationException;
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.Lazy;
 import io.github.coolcrabs.brachyura.util.PathUtil;
+import io.github.coolcrabs.brachyura.util.ProcessLock;
+import io.github.coolcrabs.brachyura.util.Util;
+import io.github.coolcrabs.brachyura.util.XmlUtil;
 
 /**
  * A small primitive resolver for maven artifacts.
@@ -82,8 +92,98 @@ public class MavenResolver {
     private boolean resolveProvidedDependencies = false;
     private boolean resolveTestDependencies = false;
 
+    /**
+     * The maximum amount of artifacts and poms fetched at once by {@link #getTransitiveDependencies(MavenId)}.
+     */
+    private int downloadThreads = 8;
+
+    /**
+     * Guards each cache file so that concurrent resolutions of the same file within this process only fetch it once.
+     * Keyed by the absolute path of the cache file, as multiple resolvers may share a cache folder. Other processes are
+     * kept out by a {@link ProcessLock} in {@link #LOCK_FOLDER}.
+     */
+    private static final ConcurrentHashMap<String, Object> FILE_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * The folder in the cache folder holding the lock files of cache files that are being fetched, mirroring the cache layout.
+     */
+    private static final String LOCK_FOLDER = ".locks";
+
+    /**
+     * The folder in the cache folder holding the content of jars, named after their SHA-256 hash. The jars in the cache
+     * are hard links to these files, so that jars that are published under multiple coordinates are stored only once.
+     */
+    private static final String BLOB_FOLDER = ".blobs";
+
+    /**
+     * The poms parsed so far, see {@link #getPom(MavenId)}. Absent if the pom could not be obtained.
+     */
+    private final ConcurrentHashMap<MavenId, Lazy<Optional<PomModel>>> poms = new ConcurrentHashMap<>();
+
+    /**
+     * The changing files that were checked for updates by this resolver, see {@link #isChanging(String, String)}.
+     * Each is checked at most once per resolver.
+     */
+    private final Set<String> revalidated = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Which files are present in or missing from the cache folder, so that a warm cache needs no file system probes.
+     */
+    @NotNull
+    private final Lazy<MavenCacheIndex> index;
+
+    /**
+     * The files listed as present by the {@link #index} that were checked to still exist by this resolver,
+     * see {@link #stillPresent(String, Path)}. Each is checked at most once per resolver.
+     */
+    private final Set<String> verified = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether repositories may not be queried, see {@link #setOffline(boolean)}.
+     */
+    private boolean offline = false;
+
+    /**
+     * How long a file that could not be found in any repository is not looked up again, in milliseconds.
+     */
+    private long negativeLookupTtl = Long.MAX_VALUE;
+
+    /**
+     * Whether all repositories are asked for a file at once, see {@link #setParallelProbing(boolean)}.
+     */
+    private boolean parallelProbing = false;
+
+    /**
+     * The group prefixes, such as {@code org/example/}, under which a repository did not have the jar or pom of an
+     * artifact. Used by {@link #fetchProbing(String, String)} to not ask the repository about the group again.
+     * Other files, such as sources jars, are missing from too many repositories to say anything about the group.
+     */
+    private final Map<MavenRepository, Set<String>> missingGroups = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the probes of {@link #fetchProbing(String, String)}. Probes mostly wait for the network, so the amount
+     * of threads is only limited by the repositories themselves.
+     */
+    private static final ExecutorService PROBE_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "Maven repository probe");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * See {@link #setLockfile(Path)}.
+     */
+    @Nullable
+    private Lazy<MavenLockfile> lockfile;
+
+    /**
+     * The repositories the files downloaded by this resolver came from, recorded in the lockfile.
+     */
+    private final Map<Path, String> origins = new ConcurrentHashMap<>();
+
     public MavenResolver(@NotNull Path cacheFolder) {
         this.cacheFolder = cacheFolder;
+        this.index = new Lazy<>(() -> MavenCacheIndex.load(cacheFolder));
     }
 
     /**
@@ -136,7 +236,12 @@ public class MavenResolver {
             nameString = artifact.artifactId + '-' + artifact.version + '-' + classifier + '.' + extension;
         }
         Path cacheFile = cacheFolder.resolve(folder).resolve(nameString);
+        Long known = index.get().get(folder + nameString);
+        if (known != null && (known != MavenCacheIndex.PRESENT || stillPresent(folder + nameString, cacheFile))) {
+            return known == MavenCacheIndex.PRESENT ? cacheFile : null;
+        }
         if (Files.exists(cacheFile)) {
+            index.get().present(folder + nameString);
             return cacheFile;
         }
         return null;
@@ -182,64 +287,413 @@ public class MavenResolver {
 
     @Nullable
     private ResolvedFile resolveFileContents(@NotNull String folder, @NotNull String file) {
+        synchronized (FILE_LOCKS.computeIfAbsent(cacheFolder.resolve(folder).resolve(file).toAbsolutePath().toString(), k -> new Object())) {
+            return resolveFileContents0(folder, file);
+        }
+    }
+
+    @Nullable
+    private ResolvedFile resolveFileContents0(@NotNull String folder, @NotNull String file) {
+        String path = folder + file;
         Path cacheFileParent = cacheFolder.resolve(folder);
         Path cacheFile = cacheFileParent.resolve(file);
-        if (Files.exists(cacheFileParent)) {
-            if (Files.exists(cacheFile)) {
-                return new ResolvedFile(null, cacheFile);
+        Path nolookupFile = cacheFileParent.resolve(file + ".nolookup");
+        MavenCacheIndex index = this.index.get();
+        Long known = index.get(path);
+        if (known != null && known == MavenCacheIndex.PRESENT && !stillPresent(path, cacheFile)) {
+            known = null;
+        }
+        if (known == null) {
+            known = probeCache(path, cacheFile, nolookupFile);
+        }
+        if (known != null) {
+            if (known == MavenCacheIndex.PRESENT) {
+                ResolvedFile cached = new ResolvedFile(null, cacheFile);
+                if (!offline && isChanging(folder, file) && revalidated.add(path)) {
+                    try {
+                        ProcessLock lock = lockCacheFile(folder, file);
+                        try {
+                            return revalidate(folder, file, cached);
+                        } finally {
+                            lock.close();
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unable to lock cache file " + cacheFile.toAbsolutePath(), e);
+                    }
+                }
+                return cached;
             }
-            Path nolookupFile = cacheFileParent.resolve(file + ".nolookup");
-            if (Files.exists(nolookupFile)) {
+            if (offline || System.currentTimeMillis() - known < negativeLookupTtl) {
                 return null;
             }
-            if (Files.exists(cacheFile, LinkOption.NOFOLLOW_LINKS)) {
-                Logger.info("Deleting outdated symlink: " + cacheFile.toAbsolutePath());
+        }
+        if (offline) {
+            return null;
+        }
+        try {
+            ProcessLock lock = lockCacheFile(folder, file);
+            try {
+                if (known == null) {
+                    // Another process may have fetched the file while this one waited for the lock
+                    known = probeCache(path, cacheFile, nolookupFile);
+                    if (known != null && (known == MavenCacheIndex.PRESENT || System.currentTimeMillis() - known < negativeLookupTtl)) {
+                        return known == MavenCacheIndex.PRESENT ? new ResolvedFile(null, cacheFile) : null;
+                    }
+                }
+                if (known != null) {
+                    // Look the file up again
+                    index.remove(path);
+                    Files.deleteIfExists(nolookupFile);
+                }
+                ResolvedFile resolved;
+                if (parallelProbing && repositories.size() > 1) {
+                    resolved = fetchProbing(folder, file);
+                } else {
+                    resolved = null;
+                    for (MavenRepository repo : repositories) {
+                        resolved = fetch(repo, folder, file);
+                        if (resolved != null) {
+                            break;
+                        }
+                    }
+                }
+                if (resolved != null) {
+                    index.present(path);
+                    return resolved;
+                }
                 try {
-                    Files.delete(cacheFile);
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    Files.createDirectories(cacheFileParent);
+                    Files.createFile(nolookupFile);
+                } catch (FileAlreadyExistsException e) {
+                    // Another process came to the same conclusion
                 }
+                index.missing(path, System.currentTimeMillis());
+                return null;
+            } finally {
+                lock.close();
             }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write to cache", e);
+        }
+    }
+
+    /**
+     * Fetches a file from a repository into the cache.
+     *
+     * @return The cached file or null if the repository does not have the file
+     */
+    @Nullable
+    private ResolvedFile fetch(@NotNull MavenRepository repo, @NotNull String folder, @NotNull String file) {
+        ResolvedFile resolved = repo.resolveToDisk(folder, file);
+        if (resolved == null) {
+            return null;
         }
+        revalidated.add(folder + file);
+        resolved = cache(resolved, folder, file);
+        Path cachePath = resolved.getCachePath();
+        if (cachePath != null) {
+            origins.put(cachePath, String.valueOf(repo));
+        }
+        return resolved;
+    }
+
+    /**
+     * Fetches a file from the first repository that has it, asking all repositories whether they have it at once
+     * instead of one after the other. See {@link #setParallelProbing(boolean)}.
+     *
+     * @return The cached file or null if no repository has the file
+     */
+    @Nullable
+    private ResolvedFile fetchProbing(@NotNull String folder, @NotNull String file) {
+        String group = groupPrefix(folder);
+        boolean mainFile = isMainFile(folder, file);
+        List<MavenRepository> probed = new ArrayList<>();
+        List<MavenRepository> skipped = new ArrayList<>();
+        List<Future<Boolean>> probes = new ArrayList<>();
         for (MavenRepository repo : repositories) {
-            ResolvedFile resolved = repo.resolve(folder, file);
-            if (resolved != null) {
-                IOException symlinkEx = null;
-                if (resolved.getCachePath() != null) {
-                    // Create symbol link to the resolved file
-                    try {
-                        Files.createDirectories(cacheFile.getParent());
-                        Files.createSymbolicLink(cacheFile, resolved.getCachePath());
-                        return resolved;
-                    } catch (IOException e) {
-                        // Cannot create symbolic link
-                        symlinkEx = e;
-                    }
-                }
+            if (missingGroups.getOrDefault(repo, Collections.emptySet()).contains(group)) {
+                skipped.add(repo);
+            } else {
+                probed.add(repo);
+                probes.add(PROBE_EXECUTOR.submit(() -> repo.probe(folder, file)));
+            }
+        }
+        try {
+            for (int i = 0; i < probed.size(); i++) {
+                MavenRepository repo = probed.get(i);
+                boolean present;
                 try {
-                    Files.createDirectories(cacheFile.getParent());
-                    Files.write(cacheFile, resolved.getData(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
-                    resolved.setCachePath(cacheFile);
-                } catch (IOException e) {
-                    IllegalStateException toThrow = new IllegalStateException("Unable to write to cache", e);
-                    if (symlinkEx != null) {
-                        toThrow.addSuppressed(symlinkEx);
-                    }
-                    throw toThrow;
+                    present = probes.get(i).get();
+                } catch (ExecutionException e) {
+                    present = true;
                 }
+                ResolvedFile resolved = present ? fetch(repo, folder, file) : null;
+                if (resolved != null) {
+                    return resolved;
+                }
+                if (mainFile) {
+                    missingGroups.computeIfAbsent(repo, r -> ConcurrentHashMap.newKeySet()).add(group);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while looking up " + folder + file, e);
+        } finally {
+            // Repositories with a lower priority than the one that had the file do not need to answer anymore
+            for (Future<Boolean> probe : probes) {
+                probe.cancel(true);
+            }
+        }
+        // The group is only a hint, the skipped repositories might have the file after all
+        for (MavenRepository repo : skipped) {
+            ResolvedFile resolved = fetch(repo, folder, file);
+            if (resolved != null) {
+                missingGroups.get(repo).remove(group);
                 return resolved;
             }
         }
+        return null;
+    }
+
+    /**
+     * @param folder The folder of a file in a maven repository, such as {@code org/example/artifact/1.0/}
+     * @return The folder of the group of the artifact, such as {@code org/example/}
+     */
+    @NotNull
+    private static String groupPrefix(@NotNull String folder) {
+        int end = folder.endsWith("/") ? folder.length() - 1 : folder.length();
+        for (int i = 0; i < 2; i++) {
+            int slash = folder.lastIndexOf('/', end - 1);
+            if (slash == -1) {
+                return folder;
+            }
+            end = slash;
+        }
+        return folder.substring(0, end + 1);
+    }
+
+    /**
+     * @return Whether the file is the jar or pom of the artifact the folder belongs to, such as
+     * {@code artifact-1.0.jar} in {@code org/example/artifact/1.0/}
+     */
+    private static boolean isMainFile(@NotNull String folder, @NotNull String file) {
+        String[] segments = folder.split("/");
+        if (segments.length < 3) {
+            return false;
+        }
+        String base = segments[segments.length - 2] + '-' + segments[segments.length - 1];
+        return file.equals(base + ".jar") || file.equals(base + ".pom");
+    }
+
+    /**
+     * Locks a cache file against other processes, see {@link #FILE_LOCKS} for this process.
+     */
+    @NotNull
+    private ProcessLock lockCacheFile(@NotNull String folder, @NotNull String file) throws IOException {
+        return new ProcessLock(cacheFolder.resolve(LOCK_FOLDER).resolve(folder).resolve(file + ".lock"));
+    }
+
+    /**
+     * Looks at the cache folder for a file that is not in the {@link #index} yet and adds it to the index.
+     *
+     * @return The value the file now has in the index, or null if the file is unknown
+     */
+    @Nullable
+    private Long probeCache(@NotNull String path, @NotNull Path cacheFile, @NotNull Path nolookupFile) {
+        MavenCacheIndex index = this.index.get();
+        if (!Files.exists(cacheFile.getParent())) {
+            return null;
+        }
+        if (Files.exists(cacheFile)) {
+            index.present(path);
+            return MavenCacheIndex.PRESENT;
+        }
         try {
-            Files.createDirectories(cacheFileParent);
-            Path nolookupFile = cacheFileParent.resolve(file + ".nolookup");
-            Files.createFile(nolookupFile);
+            if (Files.exists(nolookupFile)) {
+                long time = Files.getLastModifiedTime(nolookupFile).toMillis();
+                index.missing(path, time);
+                return time;
+            }
         } catch (IOException e) {
-            throw new IllegalStateException("Unable to write to cache", e);
+            // Deleted in the meantime
+            return null;
         }
+        deleteOutdatedSymlink(cacheFile);
         return null;
     }
 
+    /**
+     * Checks that a file the {@link #index} lists as present still exists. Users may delete cache folders to download
+     * their files again, and symlinks into local repositories break when the linked file is deleted. Files that no
+     * longer exist are removed from the index.
+     *
+     * @return Whether the file exists
+     */
+    private boolean stillPresent(@NotNull String path, @NotNull Path cacheFile) {
+        if (!verified.add(path) || Files.exists(cacheFile)) {
+            return true;
+        }
+        index.get().remove(path);
+        deleteOutdatedSymlink(cacheFile);
+        return false;
+    }
+
+    private static void deleteOutdatedSymlink(@NotNull Path cacheFile) {
+        if (Files.exists(cacheFile, LinkOption.NOFOLLOW_LINKS)) {
+            Logger.info("Deleting outdated symlink: " + cacheFile.toAbsolutePath());
+            try {
+                Files.delete(cacheFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Whether a file may change on the remote without its name changing, which is only the case for the
+     * maven-metadata.xml of snapshot versions.
+     */
+    private static boolean isChanging(@NotNull String folder, @NotNull String file) {
+        return file.equals("maven-metadata.xml") && folder.endsWith("-SNAPSHOT/");
+    }
+
+    /**
+     * Asks the repositories whether a cached file changed, using the entity tag and modification time of the cached copy.
+     * The cached copy is kept if no repository has the file anymore.
+     */
+    @NotNull
+    private ResolvedFile revalidate(@NotNull String folder, @NotNull String file, @NotNull ResolvedFile cached) {
+        Path cacheFile = cacheFolder.resolve(folder).resolve(file);
+        if (Files.isSymbolicLink(cacheFile)) {
+            // Points to the file of a local repository, so it is always up to date
+            return cached;
+        }
+        String etag = null;
+        long lastModified = -1;
+        try {
+            Path etagFile = cacheFile.resolveSibling(file + ".etag");
+            if (Files.exists(etagFile)) {
+                etag = new String(Files.readAllBytes(etagFile), StandardCharsets.UTF_8);
+            }
+            lastModified = Files.getLastModifiedTime(cacheFile).toMillis();
+        } catch (IOException e) {
+            Logger.warn("Unable to read cache metadata of " + cacheFile.toAbsolutePath(), e);
+        }
+        for (MavenRepository repo : repositories) {
+            ResolvedFile resolved = repo.revalidateToDisk(folder, file, cached, etag, lastModified);
+            if (resolved == cached) {
+                return cached;
+            } else if (resolved != null) {
+                Logger.info("Updating " + folder + file);
+                return cache(resolved, folder, file);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Stores a file obtained from a repository in the cache folder.
+     *
+     * @return The file, now with its cache path set
+     */
+    @NotNull
+    private ResolvedFile cache(@NotNull ResolvedFile resolved, @NotNull String folder, @NotNull String file) {
+        Path cacheFile = cacheFolder.resolve(folder).resolve(file);
+        IOException symlinkEx = null;
+        if (resolved.getCachePath() != null && !resolved.isTemporary()) {
+            // Create symbol link to the resolved file
+            try {
+                Files.createDirectories(cacheFile.getParent());
+                Files.createSymbolicLink(cacheFile, resolved.getCachePath());
+                return resolved;
+            } catch (FileAlreadyExistsException e) {
+                // Another process was faster
+                return new ResolvedFile(null, cacheFile);
+            } catch (IOException e) {
+                // Cannot create symbolic link
+                symlinkEx = e;
+            }
+        }
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            if (file.endsWith(".jar")) {
+                linkBlob(storeBlob(resolved), cacheFile);
+                resolved.setCachePath(cacheFile);
+                return resolved;
+            }
+            // Written to a temporary file first so that nobody ever sees a partially written file
+            try (AtomicFile atomicFile = new AtomicFile(cacheFile)) {
+                Path downloadPath = resolved.getCachePath();
+                if (resolved.isTemporary() && downloadPath != null) {
+                    // Only copies if the download is on a different file system, in which case it still streams
+                    Files.move(downloadPath, atomicFile.tempPath, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.write(atomicFile.tempPath, resolved.getData());
+                }
+                atomicFile.commit();
+            }
+            if (isChanging(folder, file)) {
+                Path etagFile = cacheFile.resolveSibling(file + ".etag");
+                String etag = resolved.getEtag();
+                if (etag == null) {
+                    Files.deleteIfExists(etagFile);
+                } else {
+                    Files.write(etagFile, etag.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            resolved.setCachePath(cacheFile);
+        } catch (IOException e) {
+            IllegalStateException toThrow = new IllegalStateException("Unable to write to cache", e);
+            if (symlinkEx != null) {
+                toThrow.addSuppressed(symlinkEx);
+            }
+            throw toThrow;
+        }
+        return resolved;
+    }
+
+    /**
+     * Stores the content of a file in the {@link #BLOB_FOLDER}, unless a file with the same content is stored already.
+     *
+     * @return The blob
+     */
+    @NotNull
+    private Path storeBlob(@NotNull ResolvedFile resolved) throws IOException {
+        String sha256 = resolved.getSHA256MessageDigest();
+        Path blob = cacheFolder.resolve(BLOB_FOLDER).resolve(sha256.substring(0, 2)).resolve(sha256);
+        Path downloadPath = resolved.getCachePath();
+        if (Files.exists(blob)) {
+            if (resolved.isTemporary() && downloadPath != null) {
+                Files.deleteIfExists(downloadPath);
+            }
+            return blob;
+        }
+        try (AtomicFile atomicFile = new AtomicFile(blob)) {
+            if (resolved.isTemporary() && downloadPath != null) {
+                Files.move(downloadPath, atomicFile.tempPath, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.write(atomicFile.tempPath, resolved.getData());
+            }
+            atomicFile.commit();
+        }
+        return blob;
+    }
+
+    /**
+     * Places a blob at a location in the cache folder, as a hard link if the file system supports them and as a copy otherwise.
+     */
+    private static void linkBlob(@NotNull Path blob, @NotNull Path cacheFile) throws IOException {
+        try (AtomicFile atomicFile = new AtomicFile(cacheFile)) {
+            Files.delete(atomicFile.tempPath);
+            try {
+                Files.createLink(atomicFile.tempPath, blob);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(blob, atomicFile.tempPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            atomicFile.commit();
+        }
+    }
+
     /**
      * Sets the default scope to use for the constructor of {@link JavaJarDependency}.
      * This scope as of now is used for any {@link JavaJarDependency} created by this instance
@@ -262,199 +716,159 @@ public class MavenResolver {
         return this;
     }
 
-    private void getTransitiveDependencyVersions(@NotNull MavenId artifact, @NotNull Map<VersionlessMavenId, MavenId> versions,
-            Set<VersionlessMavenId> unknownVersions) {
-        VersionlessMavenId verlessMavenId = new VersionlessMavenId(artifact.groupId, artifact.artifactId);
-        if (versions.containsKey(verlessMavenId)) {
-            String currentver = versions.get(verlessMavenId).version;
-            String[] versionOld = currentver.split("\\.");
-            String[] versionNew = artifact.version.split("\\.");
-            int minLen = Math.min(versionOld.length, versionNew.length);
-            for (int i = 0; i < minLen; i++) {
-                String versionPartOld = versionOld[i];
-                String versionPartNew = versionNew[i];
-                if (versionPartOld.length() > versionPartNew.length()) {
-                    return;
-                } else if (versionPartNew.length() == versionPartOld.length()) {
-                    int cmp = versionPartOld.compareTo(versionPartNew);
-                    if (cmp == 0) {
-                        continue;
-                    } else if (cmp < 0) {
-                        // Currently queried one is newer
-                        break;
-                    } else {
-                        // Currently queried one is older
-                        return;
-                    }
-                } else {
+    /**
+     * Whether a newly encountered version of an artifact replaces the version that was selected so far
+     */
+    private static boolean replacesVersion(@NotNull String currentver, @NotNull String newver) {
+        String[] versionOld = currentver.split("\\.");
+        String[] versionNew = newver.split("\\.");
+        int minLen = Math.min(versionOld.length, versionNew.length);
+        for (int i = 0; i < minLen; i++) {
+            String versionPartOld = versionOld[i];
+            String versionPartNew = versionNew[i];
+            if (versionPartOld.length() > versionPartNew.length()) {
+                return false;
+            } else if (versionPartNew.length() == versionPartOld.length()) {
+                int cmp = versionPartOld.compareTo(versionPartNew);
+                if (cmp == 0) {
+                    continue;
+                } else if (cmp < 0) {
+                    // Currently queried one is newer
                     break;
+                } else {
+                    // Currently queried one is older
+                    return false;
                 }
-            }
-            if (versionOld.length > versionNew.length) {
-                return;
-            } else if (versionOld.length == versionNew.length) {
-                return;
+            } else {
+                break;
             }
         }
-        versions.put(verlessMavenId, artifact);
-        unknownVersions.remove(verlessMavenId);
-        try {
-            Document xmlDoc;
-            {
-                ResolvedFile file = resolveArtifact(artifact, "", "pom");
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-                xmlDoc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(file.getData()));
-            }
-            Element project = xmlDoc.getDocumentElement();
-            project.normalize();
-            NodeList dependencies;
-            Map<String, String> placeholders = new HashMap<>();
-            parsePlaceholders(xmlDoc, artifact, placeholders);
-            {
-                Element dependenciesBlock = null;
-                for (Node block : new IterableNodeList(project.getChildNodes())) {
-                    if (!block.hasChildNodes() || !(block instanceof Element)) {
-                        continue;
-                    }
-                    Element blockElem = (Element) block;
-                    if (blockElem.getTagName().equals("dependencies")) {
-                        if (dependenciesBlock != null) {
-                            throw new IllegalStateException("Pom for artifact " + artifact.toString() + " contains multiple "
-                                    + "dependencies blocks.");
-                        }
-                        dependenciesBlock = blockElem;
-                    }
-                }
-                if (dependenciesBlock == null) {
-                    return;
+        return versionOld.length < versionNew.length;
+    }
+
+    /**
+     * Walks the dependency graph level by level. The poms of all artifacts of a level are fetched and parsed
+     * concurrently. Versions are selected nearest first: the versions of an artifact closer to the root are seen
+     * first, and a version found deeper in the graph only takes over if it {@link #replacesVersion(String, String)
+     * replaces} them. As that is not a total order, this can select another version than a depth-first walk would,
+     * for example 1.10 over a 1.9 that is deeper in the graph but reached through an earlier dependency.
+     */
+    private void getTransitiveDependencyVersions(@NotNull MavenId root, @NotNull Map<VersionlessMavenId, MavenId> versions,
+            Set<VersionlessMavenId> unknownVersions, @NotNull Map<MavenId, String> scopes, @NotNull ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+        List<MavenId> level = Collections.singletonList(root);
+        while (!level.isEmpty()) {
+            Map<MavenId, Future<PomModel>> poms = new HashMap<>();
+            for (MavenId artifact : level) {
+                if (!poms.containsKey(artifact) && !artifact.equals(versions.get(new VersionlessMavenId(artifact.groupId, artifact.artifactId)))) {
+                    poms.put(artifact, executor.submit(() -> getPom(artifact)));
                 }
-                dependencies = dependenciesBlock.getChildNodes();
             }
-
-            for (Node depend : new IterableNodeList(dependencies)) {
-                if (!depend.hasChildNodes() || !(depend instanceof Element)) {
+            List<MavenId> nextLevel = new ArrayList<>();
+            for (MavenId artifact : level) {
+                VersionlessMavenId verlessMavenId = new VersionlessMavenId(artifact.groupId, artifact.artifactId);
+                MavenId current = versions.get(verlessMavenId);
+                if (current != null && !replacesVersion(current.version, artifact.version)) {
                     continue;
                 }
-                Element elem = (Element) depend;
-                if (!elem.getTagName().equals("dependency")) {
-                    continue;
+                versions.put(verlessMavenId, artifact);
+                unknownVersions.remove(verlessMavenId);
+                PomModel pom = poms.get(artifact).get();
+                if (pom != null) {
+                    addDependencies(pom, verlessMavenId, versions, unknownVersions, scopes, nextLevel);
                 }
+            }
+            level = nextLevel;
+        }
+    }
 
-                Node scopeElement = elem.getElementsByTagName("scope").item(0);
-                if (scopeElement instanceof Element) {
-                    Element scope = (Element) scopeElement;
-                    if (!resolveTestDependencies && scope.getTextContent().equals("test")) {
-                        continue;
-                    } else if (!resolveProvidedDependencies && scope.getTextContent().equals("provided")) {
-                        continue;
-                    }
+    private void addDependencies(@NotNull PomModel pom, @NotNull VersionlessMavenId verlessMavenId, @NotNull Map<VersionlessMavenId, MavenId> versions,
+            Set<VersionlessMavenId> unknownVersions, @NotNull Map<MavenId, String> scopes, @NotNull List<MavenId> out) {
+        MavenId artifact = pom.id;
+        UnaryOperator<String> placeholders = string -> applyPlaceholders(string, artifact.groupId, artifact.artifactId, artifact.version, pom.properties);
+        for (PomModel.Dependency dependency : pom.dependencies) {
+            String groupId = placeholders.apply(dependency.groupId);
+            String artifactId = placeholders.apply(dependency.artifactId);
+            String version = dependency.version;
+            String scope = dependency.scope;
+            if (version == null || scope == null) {
+                PomModel.Dependency managed = pom.getManagedDependency(groupId, artifactId, placeholders);
+                if (managed != null) {
+                    version = version == null ? managed.version : version;
+                    scope = scope == null ? managed.scope : scope;
                 }
+            }
 
-                String groupId = elem.getElementsByTagName("groupId").item(0).getTextContent();
-                String artifactId = elem.getElementsByTagName("artifactId").item(0).getTextContent();
-                groupId = applyPlaceholders(groupId, artifact.groupId, artifact.artifactId, artifact.version, placeholders);
-                artifactId = applyPlaceholders(artifactId, artifact.groupId, artifact.artifactId, artifact.version, placeholders);
-
-                VersionlessMavenId dependencyVerlessId = new VersionlessMavenId(groupId, artifactId);
-                if (blacklistedArtifacts.contains(dependencyVerlessId)) {
+            if (scope != null) {
+                if (!resolveTestDependencies && scope.equals("test")) {
                     continue;
-                }
-
-                Node versionElement = elem.getElementsByTagName("version").item(0);
-                if (versionElement == null) {
-                    if (!versions.containsKey(verlessMavenId)) {
-                        Logger.info(dependencyVerlessId);
-                        unknownVersions.add(dependencyVerlessId);
-                    }
+                } else if (!resolveProvidedDependencies && scope.equals("provided")) {
                     continue;
                 }
-
-                String version = versionElement.getTextContent();
-                version = applyPlaceholders(version, artifact.groupId, artifact.artifactId, artifact.version, placeholders);
-
-                if (version.charAt(0) == '[') {
-                    // Version range
-                    if (version.endsWith(",)")) {
-                        // No idea how to treat all these scenarios - I'll just do something that works
-                        version = version.substring(1, version.length() - 2);
-                    } else if (version.endsWith(")") && version.contains(", ")) {
-                        int seperator = version.indexOf(", ");
-                        version = version.substring(seperator + 2, version.length() - 1);
-                    }
-                }
-                getTransitiveDependencyVersions(new MavenId(groupId, artifactId, version), versions, unknownVersions);
             }
-        } catch (SAXException | ParserConfigurationException e1) {
-            e1.printStackTrace();
-        } catch (IOException ignored) {}
-    }
 
-    /**
-     * Parse the placeholders based on the properties block of a maven pom.
-     * If a parent artifact is specified in the pom, it will also be used for placeholders.
-     * However the properties block from the child artifact has always precedence over the parent artifact.
-     *
-     * @param xmlDoc The xml document that represents the maven pom
-     * @param artifact The artifact that is current resolved. The pom should come from this artifact.
-     * @param out The map of placeholders. Keys are in the format of "${key}". Values are never overwritten.
-     * @throws IOException In case the pom of the parent module of the artifact cannot be resolved or in case the pom cannot be parsed
-     */
-    @Contract(pure = false, mutates = "param3")
-    private void parsePlaceholders(@NotNull Document xmlDoc, @NotNull MavenId artifact, @NotNull Map<String, String> out) throws IOException {
-        Element project = xmlDoc.getDocumentElement();
-        project.normalize();
-        Element parentArtifactNode = null;
-        for (Node block : new IterableNodeList(project.getChildNodes())) {
-            if (!block.hasChildNodes() || !(block instanceof Element)) {
+            VersionlessMavenId dependencyVerlessId = new VersionlessMavenId(groupId, artifactId);
+            if (blacklistedArtifacts.contains(dependencyVerlessId)) {
                 continue;
             }
-            Element blockElem = (Element) block;
-            if (blockElem.getTagName().equals("properties")) {
-                for (Node property : new IterableNodeList(blockElem.getChildNodes())) {
-                    if (property instanceof Element) {
-                        Element propertyElement = (Element) property;
-                        out.putIfAbsent("${" + propertyElement.getTagName() + "}", propertyElement.getTextContent());
-                    }
+
+            if (version == null) {
+                if (!versions.containsKey(verlessMavenId)) {
+                    Logger.info(dependencyVerlessId);
+                    unknownVersions.add(dependencyVerlessId);
                 }
-            } else if (blockElem.getTagName().equals("parent")) {
-                parentArtifactNode = blockElem;
+                continue;
             }
-        }
-        if (parentArtifactNode == null) {
-            return;
-        }
-        NodeList groupId = parentArtifactNode.getElementsByTagName("groupId");
-        NodeList artifactId = parentArtifactNode.getElementsByTagName("artifactId");
-        NodeList version = parentArtifactNode.getElementsByTagName("version");
 
-        if (groupId.getLength() != 1) {
-            throw new IllegalStateException("Pom of artifact " + artifact + " does not specify the groupId of it's parent correctly.");
-        }
-        if (artifactId.getLength() != 1) {
-            throw new IllegalStateException("Pom of artifact " + artifact + " does not specify the artifactId of it's parent correctly.");
-        }
-        if (version.getLength() != 1) {
-            throw new IllegalStateException("Pom of artifact " + artifact + " does not specify the version of it's parent correctly.");
+            version = placeholders.apply(version);
+
+            if (version.charAt(0) == '[') {
+                // Version range
+                if (version.endsWith(",)")) {
+                    // No idea how to treat all these scenarios - I'll just do something that works
+                    version = version.substring(1, version.length() - 2);
+                } else if (version.endsWith(")") && version.contains(", ")) {
+                    int seperator = version.indexOf(", ");
+                    version = version.substring(seperator + 2, version.length() - 1);
+                }
+            }
+            MavenId dependencyId = new MavenId(groupId, artifactId, version);
+            scopes.putIfAbsent(dependencyId, scope == null ? "compile" : scope);
+            out.add(dependencyId);
         }
+    }
 
-        @SuppressWarnings("null")
-        MavenId parentMavenId = new MavenId(groupId.item(0).getTextContent(), artifactId.item(0).getTextContent(), version.item(0).getTextContent());
+    /**
+     * Obtains the parsed pom of an artifact, including the properties inherited from its parents.
+     * Poms are parsed only once per resolver, no matter how many artifacts depend on or inherit from them.
+     *
+     * @param artifact The artifact whose pom should be obtained
+     * @return The pom, or null if it or one of its parents could not be resolved or parsed
+     */
+    @Nullable
+    PomModel getPom(@NotNull MavenId artifact) {
+        return poms.computeIfAbsent(artifact, id -> new Lazy<>(() -> Optional.ofNullable(loadPom(id)))).get().orElse(null);
+    }
 
-        Document parentDocument;
+    @Nullable
+    private PomModel loadPom(@NotNull MavenId artifact) {
+        PomModel pom;
         try {
-            ResolvedFile file = resolveArtifact(parentMavenId, "", "pom");
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            parentDocument = factory.newDocumentBuilder().parse(new ByteArrayInputStream(file.getData()));
-            if (parentDocument == null) {
-                throw new NullPointerException("parentDocument is null");
+            pom = PomModel.parse(artifact, resolveArtifact(artifact, "", "pom").getData());
+        } catch (IOException e) {
+            if (e.getCause() != null) {
+                Logger.warn(e);
             }
-            parsePlaceholders(parentDocument, parentMavenId, out);
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException("Cannot parse maven pom of artifact " + parentMavenId + ", which is the parent module of "
-                    + artifact, e);
+            return null;
         }
+        if (pom.parent != null) {
+            PomModel parent = getPom(pom.parent);
+            if (parent == null) {
+                return null;
+            }
+            pom = pom.withParent(parent);
+        }
+        return pom;
     }
 
     /**
@@ -507,60 +921,59 @@ public class MavenResolver {
      */
     @Nullable
     private String getLastSnapshotVersion(@NotNull ResolvedFile mavenMeta, @Nullable String classifier, @NotNull String extension) throws IOException {
-        Document xmlDoc;
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            xmlDoc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(mavenMeta.getData()));
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException("Unable to parse maven-metadata.xml", e);
-        }
-
-        Element versioningElement = new IterableNodeList(xmlDoc.getDocumentElement().getChildNodes()).resolveFirstElement("versioning");
-        if (versioningElement == null) {
-            return null;
-        }
-
-        Element snapshotVersionsElement = new IterableNodeList(versioningElement.getChildNodes()).resolveFirstElement("snapshotVersions");
-        if (snapshotVersionsElement == null) {
-            return null;
-        }
-
-        for (Node node : new IterableNodeList(snapshotVersionsElement.getChildNodes())) {
-            if (!(node instanceof Element)) {
-                continue;
-            }
-            Element snapshotVersion = (Element) node;
-            if (!snapshotVersion.getTagName().equals("snapshotVersion")) {
-                // I do not think that any other tag is allowed there, but safe is safe
-                continue;
-            }
-            if (!snapshotVersion.getElementsByTagName("extension").item(0).getTextContent().equals(extension)) {
-                continue;
-            }
-            NodeList classifierNode = snapshotVersion.getElementsByTagName("classifier");
-            if (classifierNode.getLength() == 0 && classifier != null
-                    || classifier == null && classifierNode.getLength() != 0) {
-                continue;
-            }
-            if (classifier == null) {
-                if (classifierNode.getLength() != 0) {
-                    continue;
+        try (InputStream in = mavenMeta.openStream()) {
+            XMLStreamReader reader = XmlUtil.newStreamReader(in);
+            try {
+                reader.nextTag(); // <metadata>
+                if (!nextChild(reader, "versioning") || !nextChild(reader, "snapshotVersions")) {
+                    return null;
                 }
-            } else if (classifierNode.getLength() == 0) {
-                continue;
-            } else {
-                if (!classifierNode.item(0).getTextContent().equals(classifier)) {
-                    continue;
+                while (nextChild(reader, "snapshotVersion")) {
+                    String snapshotExtension = null;
+                    String snapshotClassifier = null;
+                    String value = null;
+                    while (XmlUtil.nextChild(reader)) {
+                        switch (reader.getLocalName()) {
+                        case "extension":
+                            snapshotExtension = XmlUtil.readText(reader);
+                            break;
+                        case "classifier":
+                            snapshotClassifier = XmlUtil.readText(reader);
+                            break;
+                        case "value":
+                            value = XmlUtil.readText(reader);
+                            break;
+                        default:
+                            XmlUtil.skipElement(reader);
+                            break;
+                        }
+                    }
+                    if (extension.equals(snapshotExtension) && Objects.equals(classifier, snapshotClassifier)) {
+                        return value;
+                    }
                 }
-            }
-            NodeList valueNode = snapshotVersion.getElementsByTagName("value");
-            if (valueNode.getLength() == 0) {
                 return null;
+            } finally {
+                reader.close();
             }
-            return valueNode.item(0).getTextContent();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to parse maven-metadata.xml", e);
         }
-        return null;
+    }
+
+    /**
+     * Moves to the next child element with the given name, skipping all other children.
+     *
+     * @return True if positioned at the start of the child, false if there is no such child left
+     */
+    private static boolean nextChild(@NotNull XMLStreamReader reader, @NotNull String name) throws XMLStreamException {
+        while (XmlUtil.nextChild(reader)) {
+            if (reader.getLocalName().equals(name)) {
+                return true;
+            }
+            XmlUtil.skipElement(reader);
+        }
+        return false;
     }
 
     /**
@@ -575,22 +988,200 @@ public class MavenResolver {
     @NotNull
     public Collection<JavaJarDependency> getTransitiveDependencies(@NotNull MavenId artifact) {
         Map<VersionlessMavenId, MavenId> versions = new HashMap<>();
-        Map<MavenId, JavaJarDependency> dependencies = new HashMap<>();
+        Map<MavenId, JavaJarDependency> dependencies = new LinkedHashMap<>();
         Set<VersionlessMavenId> unknownVersions = new HashSet<>();
-        getTransitiveDependencyVersions(artifact, versions, unknownVersions);
-        unknownVersions.forEach(mavenid -> {
-            Logger.warn("The artifact \"" + artifact + "\" was required by a dependency, but the version was left unspecified! It was thus not resolved");
+        Map<MavenId, String> scopes = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(downloadThreads, r -> {
+            Thread t = new Thread(r, "Brachyura maven download");
+            t.setDaemon(true);
+            return t;
         });
-        versions.values().forEach(shouldBeDependency -> {
-            JavaJarDependency resolvedDependency = getJarDepend(shouldBeDependency);
-            if (resolvedDependency == null) {
-                return;
+        try {
+            MavenLockfile lockfile = this.lockfile == null ? null : this.lockfile.get();
+            List<MavenLockfile.Artifact> locked = lockfile == null ? null : lockfile.get(artifact, getLockSettings());
+            if (locked != null) {
+                return getLockedDependencies(locked, executor);
             }
-            dependencies.put(shouldBeDependency, resolvedDependency);
-        });
+            scopes.put(artifact, "compile");
+            getTransitiveDependencyVersions(artifact, versions, unknownVersions, scopes, executor);
+            unknownVersions.forEach(mavenid -> {
+                Logger.warn("The artifact \"" + artifact + "\" was required by a dependency, but the version was left unspecified! It was thus not resolved");
+            });
+            // The graph is known at this point, so all artifacts can be fetched at once
+            List<MavenId> artifacts = new ArrayList<>(versions.values());
+            List<Future<JavaJarDependency>> futures = new ArrayList<>(artifacts.size());
+            for (MavenId shouldBeDependency : artifacts) {
+                futures.add(executor.submit(() -> getJarDepend(shouldBeDependency)));
+            }
+            for (int i = 0; i < artifacts.size(); i++) {
+                JavaJarDependency resolvedDependency = futures.get(i).get();
+                if (resolvedDependency != null) {
+                    dependencies.put(artifacts.get(i), resolvedDependency);
+                }
+            }
+            if (lockfile != null) {
+                List<MavenLockfile.Artifact> lock = new ArrayList<>(dependencies.size());
+                for (Map.Entry<MavenId, JavaJarDependency> entry : dependencies.entrySet()) {
+                    Path jar = entry.getValue().jar;
+                    lock.add(new MavenLockfile.Artifact(entry.getKey(), scopes.getOrDefault(entry.getKey(), "compile"),
+                            new ResolvedFile(null, jar).getSHA1MessageDigest(), origins.get(jar)));
+                }
+                lockfile.put(artifact, getLockSettings(), lock);
+            }
+        } catch (ExecutionException e) {
+            throw Util.sneak(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Util.sneak(e);
+        } finally {
+            executor.shutdownNow();
+        }
         return dependencies.values();
     }
 
+    /**
+     * Fetches the artifacts of a locked graph without reading any pom. Artifacts that were not in the cache
+     * before are checked against the checksum recorded in the lockfile.
+     */
+    @NotNull
+    private Collection<JavaJarDependency> getLockedDependencies(@NotNull List<MavenLockfile.Artifact> locked, @NotNull ExecutorService executor)
+            throws InterruptedException, ExecutionException {
+        List<Future<JavaJarDependency>> futures = new ArrayList<>(locked.size());
+        for (MavenLockfile.Artifact lockedArtifact : locked) {
+            futures.add(executor.submit(() -> {
+                boolean cached = resolveArtifactLocationCached(lockedArtifact.id, "", "jar") != null;
+                JavaJarDependency dependency = getJarDepend(lockedArtifact.id);
+                if (dependency == null) {
+                    Logger.warn("Locked artifact {} could not be resolved", lockedArtifact.id);
+                } else if (!cached) {
+                    String sha1 = new ResolvedFile(null, dependency.jar).getSHA1MessageDigest();
+                    if (!sha1.equalsIgnoreCase(lockedArtifact.sha1)) {
+                        throw new ChecksumViolationException(sha1, lockedArtifact.sha1, dependency.jar.toString());
+                    }
+                }
+                return dependency;
+            }));
+        }
+        List<JavaJarDependency> dependencies = new ArrayList<>(locked.size());
+        for (Future<JavaJarDependency> future : futures) {
+            JavaJarDependency dependency = future.get();
+            if (dependency != null) {
+                dependencies.add(dependency);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * The settings that influence which artifacts {@link #getTransitiveDependencies(MavenId)} selects.
+     * A locked graph is only reused if it was created with the same settings.
+     */
+    @NotNull
+    private String getLockSettings() {
+        List<String> blacklist = new ArrayList<>();
+        for (VersionlessMavenId id : blacklistedArtifacts) {
+            blacklist.add(id.toString());
+        }
+        Collections.sort(blacklist);
+        return "test=" + resolveTestDependencies + ";provided=" + resolveProvidedDependencies + ";blacklist=" + String.join(",", blacklist);
+    }
+
+    /**
+     * Sets the lockfile of this resolver. Once set, {@link #getTransitiveDependencies(MavenId)} records the resolved graph
+     * of each root in the lockfile and later calls, including those of other processes and on other machines, fetch the
+     * recorded artifacts directly instead of walking the poms again. Artifacts that are newly downloaded from a locked
+     * graph must match the recorded checksum.
+     *
+     * <p>Entries are replaced when the root is resolved with different settings, such as other blacklisted artifacts.
+     * Delete the lockfile, or the entry of the root, to pick up new versions.
+     *
+     * @param lockfile The lockfile, which does not need to exist yet. Null to not use a lockfile, which is the default
+     * @return The current {@link MavenResolver} instance, for chaining
+     */
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    @NotNull
+    public MavenResolver setLockfile(@Nullable Path lockfile) {
+        this.lockfile = lockfile == null ? null : new Lazy<>(() -> MavenLockfile.load(lockfile));
+        return this;
+    }
+
+    /**
+     * Sets whether files that are not cached are looked up in all repositories at once. Each repository is
+     * {@link MavenRepository#probe(String, String) probed} for the file, which is a HEAD request for http repositories,
+     * and the file is fetched from the first repository in the order they were added that has it. Probes of later repositories
+     * are cancelled at that point. Without probing, the repositories are asked one after the other and every repository
+     * that does not have the file costs a full round trip.
+     *
+     * <p>Repositories that do not have a file are not probed again for files of the same group by this resolver.
+     * They are still asked once no other repository has the file.
+     *
+     * <p>The default value is false.
+     *
+     * @param parallelProbing The new value
+     * @return The current {@link MavenResolver} instance, for chaining
+     */
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    @NotNull
+    public MavenResolver setParallelProbing(boolean parallelProbing) {
+        this.parallelProbing = parallelProbing;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of artifacts and poms that are downloaded at once by {@link #getTransitiveDependencies(MavenId)}.
+     * The amount of connections to a single host is limited further by the repository.
+     *
+     * <p>The default value is 8.
+     *
+     * @param downloadThreads The new value, 1 downloads one artifact after the other
+     * @return The current {@link MavenResolver} instance, for chaining
+     */
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    @NotNull
+    public MavenResolver setDownloadThreads(int downloadThreads) {
+        if (downloadThreads < 1) {
+            throw new IllegalArgumentException("downloadThreads must be positive");
+        }
+        this.downloadThreads = downloadThreads;
+        return this;
+    }
+
+    /**
+     * Sets whether this resolver works from its cache folder alone. An offline resolver never queries its repositories,
+     * not even to check whether the maven-metadata.xml of a snapshot changed, and treats files that are not cached as missing
+     * without remembering them as such.
+     *
+     * <p>The default value is false.
+     *
+     * @param offline The new value
+     * @return The current {@link MavenResolver} instance, for chaining
+     */
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    @NotNull
+    public MavenResolver setOffline(boolean offline) {
+        this.offline = offline;
+        return this;
+    }
+
+    /**
+     * Sets for how long files that no repository had are assumed to still be missing. Once that time has passed,
+     * the repositories are asked for the file again the next time it is needed.
+     *
+     * <p>The default value is {@link Long#MAX_VALUE}, so that missing files are never looked up again.
+     *
+     * @param millis The time in milliseconds
+     * @return The current {@link MavenResolver} instance, for chaining
+     */
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    @NotNull
+    public MavenResolver setNegativeLookupTtl(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("millis may not be negative");
+        }
+        this.negativeLookupTtl = millis;
+        return this;
+    }
+
     @Nullable
     public JavaJarDependency getJarDepend(@NotNull MavenId artifact) {
         ResolvedFile sources = null;
@@ -0,0 +1,81 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The way a {@link HttpMavenRepository} talks to the remote server. The default is {@link UrlConnectionTransport},
+ * other implementations may be set through {@link HttpMavenRepository#setTransport(MavenTransport)}, for example to use
+ * a different http client or to serve files from somewhere else entirely while testing.
+ *
+ * <p>Implementations must be safe to use from multiple threads at once.
+ */
+public abstract class MavenTransport {
+
+    /**
+     * Performs a GET request.
+     *
+     * @param url The file to fetch
+     * @param etag The entity tag of the copy the caller already has, or null to not make the request conditional on it
+     * @param ifModifiedSince The time in milliseconds since the epoch at which the caller's copy was obtained, or -1 to
+     * not make the request conditional on it
+     * @return The response, which needs to be closed by the caller
+     * @throws IOException If the server could not be reached or did not respond properly
+     */
+    @NotNull
+    public abstract Response get(@NotNull URL url, @Nullable String etag, long ifModifiedSince) throws IOException;
+
+    /**
+     * Performs a HEAD request. The default implementation performs a GET request and discards the content.
+     *
+     * @param url The file to look for
+     * @return The http status code of the response
+     * @throws IOException If the server could not be reached or did not respond properly
+     */
+    public int head(@NotNull URL url) throws IOException {
+        try (Response response = get(url, null, -1)) {
+            return response.status;
+        }
+    }
+
+    public static final class Response implements Closeable {
+        public static final int OK = 200;
+        public static final int NOT_MODIFIED = 304;
+
+        /**
+         * The http status code of the response.
+         */
+        public final int status;
+
+        /**
+         * The content of the file, already decoded. Only present if {@link #status} is {@link #OK}.
+         */
+        @Nullable
+        public final InputStream body;
+
+        /**
+         * The entity tag of the file, if the server sent one.
+         */
+        @Nullable
+        public final String etag;
+
+        public Response(int status, @Nullable InputStream body, @Nullable String etag) {
+            this.status = status;
+            this.body = body;
+            this.etag = etag;
+        }
+
+        @Override
+        public void close() throws IOException {
+            InputStream body = this.body;
+            if (body != null) {
+                body.close();
+            }
+        }
+    }
+}
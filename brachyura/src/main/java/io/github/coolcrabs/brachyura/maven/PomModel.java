@@ -0,0 +1,230 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.github.coolcrabs.brachyura.util.XmlUtil;
+
+/**
+ * The parts of a maven pom that are needed to resolve the dependencies of an artifact.
+ * Placeholders are left as they are in the pom; {@link #properties} is what they are resolved against.
+ */
+final class PomModel {
+    @NotNull
+    final MavenId id;
+    @Nullable
+    final MavenId parent;
+    /**
+     * The properties of the pom and all its parents, the closest pom taking precedence.
+     * Keys are in the format of "${key}".
+     */
+    @NotNull
+    final Map<String, String> properties;
+    @NotNull
+    final List<Dependency> dependencies;
+    /**
+     * The dependencyManagement entries of the pom and all its parents, the closest pom coming first.
+     */
+    @NotNull
+    final List<Dependency> dependencyManagement;
+
+    PomModel(@NotNull MavenId id, @Nullable MavenId parent, @NotNull Map<String, String> properties, @NotNull List<Dependency> dependencies,
+            @NotNull List<Dependency> dependencyManagement) {
+        this.id = id;
+        this.parent = parent;
+        this.properties = Collections.unmodifiableMap(properties);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+        this.dependencyManagement = Collections.unmodifiableList(dependencyManagement);
+    }
+
+    /**
+     * @param parent The model of the pom's {@link #parent}
+     * @return This model with the properties and managed dependencies of the parent added
+     */
+    @NotNull
+    @Contract(pure = true, value = "_ -> new")
+    PomModel withParent(@NotNull PomModel parent) {
+        Map<String, String> merged = new HashMap<>(parent.properties);
+        merged.putAll(properties);
+        List<Dependency> managed = new ArrayList<>(dependencyManagement);
+        managed.addAll(parent.dependencyManagement);
+        return new PomModel(id, this.parent, merged, dependencies, managed);
+    }
+
+    @NotNull
+    static PomModel parse(@NotNull MavenId artifact, byte[] pom) throws IOException {
+        Map<String, String> properties = new HashMap<>();
+        MavenId parent = null;
+        List<Dependency> dependencies = null;
+        List<Dependency> dependencyManagement = new ArrayList<>();
+        try {
+            XMLStreamReader reader = XmlUtil.newStreamReader(new ByteArrayInputStream(pom));
+            try {
+                reader.nextTag(); // <project>
+                while (XmlUtil.nextChild(reader)) {
+                    switch (reader.getLocalName()) {
+                    case "properties":
+                        while (XmlUtil.nextChild(reader)) {
+                            properties.putIfAbsent("${" + reader.getLocalName() + "}", XmlUtil.readText(reader));
+                        }
+                        break;
+                    case "parent":
+                        parent = parseParent(artifact, reader);
+                        break;
+                    case "dependencies":
+                        if (dependencies != null) {
+                            throw new IllegalStateException("Pom for artifact " + artifact.toString() + " contains multiple "
+                                    + "dependencies blocks.");
+                        }
+                        dependencies = new ArrayList<>();
+                        parseDependencies(artifact, reader, dependencies);
+                        break;
+                    case "dependencyManagement":
+                        while (XmlUtil.nextChild(reader)) {
+                            if (reader.getLocalName().equals("dependencies")) {
+                                parseDependencies(artifact, reader, dependencyManagement);
+                            } else {
+                                XmlUtil.skipElement(reader);
+                            }
+                        }
+                        break;
+                    default:
+                        XmlUtil.skipElement(reader);
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse maven pom of artifact " + artifact, e);
+        }
+        return new PomModel(artifact, parent, properties, dependencies == null ? Collections.emptyList() : dependencies, dependencyManagement);
+    }
+
+    private static void parseDependencies(@NotNull MavenId artifact, @NotNull XMLStreamReader reader, @NotNull List<Dependency> out) throws XMLStreamException {
+        while (XmlUtil.nextChild(reader)) {
+            if (!reader.getLocalName().equals("dependency")) {
+                XmlUtil.skipElement(reader);
+                continue;
+            }
+            String groupId = null;
+            String artifactId = null;
+            String version = null;
+            String scope = null;
+            // Only direct children, as exclusions also declare coordinates
+            while (XmlUtil.nextChild(reader)) {
+                switch (reader.getLocalName()) {
+                case "groupId":
+                    groupId = XmlUtil.readText(reader);
+                    break;
+                case "artifactId":
+                    artifactId = XmlUtil.readText(reader);
+                    break;
+                case "version":
+                    version = XmlUtil.readText(reader);
+                    break;
+                case "scope":
+                    scope = XmlUtil.readText(reader);
+                    break;
+                default:
+                    XmlUtil.skipElement(reader);
+                    break;
+                }
+            }
+            if (groupId == null || artifactId == null) {
+                throw new IllegalStateException("Pom of artifact " + artifact + " declares a dependency without a groupId or artifactId.");
+            }
+            out.add(new Dependency(groupId, artifactId, version, scope));
+        }
+    }
+
+    @NotNull
+    private static MavenId parseParent(@NotNull MavenId artifact, @NotNull XMLStreamReader reader) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        while (XmlUtil.nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "groupId":
+                groupId = XmlUtil.readText(reader);
+                break;
+            case "artifactId":
+                artifactId = XmlUtil.readText(reader);
+                break;
+            case "version":
+                version = XmlUtil.readText(reader);
+                break;
+            default:
+                XmlUtil.skipElement(reader);
+                break;
+            }
+        }
+
+        if (groupId == null) {
+            throw new IllegalStateException("Pom of artifact " + artifact + " does not specify the groupId of it's parent correctly.");
+        }
+        if (artifactId == null) {
+            throw new IllegalStateException("Pom of artifact " + artifact + " does not specify the artifactId of it's parent correctly.");
+        }
+        if (version == null) {
+            throw new IllegalStateException("Pom of artifact " + artifact + " does not specify the version of it's parent correctly.");
+        }
+        return new MavenId(groupId, artifactId, version);
+    }
+
+    /**
+     * Looks up the version that the dependencyManagement block of this pom or its parents assigns to an artifact.
+     * The groupId and artifactId of managed dependencies are compared after placeholders were applied by the given function.
+     *
+     * @return The managed dependency, or null if the artifact is not managed
+     */
+    @Nullable
+    Dependency getManagedDependency(@NotNull String groupId, @NotNull String artifactId, @NotNull UnaryOperator<String> placeholders) {
+        for (Dependency managed : dependencyManagement) {
+            try {
+                if (placeholders.apply(managed.artifactId).equals(artifactId) && placeholders.apply(managed.groupId).equals(groupId)) {
+                    return managed;
+                }
+            } catch (IllegalStateException e) {
+                // Placeholders that cannot be resolved within this pom, so the entry cannot be meant for any of its dependencies
+                continue;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A dependency as declared in the pom, before placeholders are applied
+     */
+    static final class Dependency {
+        @NotNull
+        final String groupId;
+        @NotNull
+        final String artifactId;
+        @Nullable
+        final String version;
+        @Nullable
+        final String scope;
+
+        Dependency(@NotNull String groupId, @NotNull String artifactId, @Nullable String version, @Nullable String scope) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.scope = scope;
+        }
+    }
+}
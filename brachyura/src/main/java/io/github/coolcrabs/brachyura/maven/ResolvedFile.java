@@ -1,8 +1,13 @@
 package io.github.coolcrabs.brachyura.maven;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -20,6 +25,20 @@ public class ResolvedFile {
     @Nullable
     private Path cachePath;
 
+    @Nullable
+    private String etag;
+
+    /**
+     * Whether {@link #cachePath} is a download in a temporary location that is to be moved into the cache.
+     */
+    private boolean temporary;
+
+    @Nullable
+    private String sha1;
+
+    @Nullable
+    private String sha256;
+
     public ResolvedFile(@Nullable MavenRepository repo, byte[] data) {
         this.repo = repo;
         this.data = data;
@@ -30,8 +49,32 @@ public class ResolvedFile {
         this.cachePath = cachePath;
     }
 
+    /**
+     * Creates a file that was downloaded to a temporary location. The file is owned by the resolved file
+     * and moved into the cache by the {@link MavenResolver}.
+     *
+     * @param repo The repository the file was downloaded from
+     * @param downloadPath The temporary file
+     * @param sha1 The sha1 hash of the file as computed while downloading it, as a hexadecimal string
+     * @param sha256 The SHA-256 hash of the file as computed while downloading it, as a hexadecimal string
+     * @return The resolved file
+     */
+    @NotNull
+    static ResolvedFile download(@NotNull MavenRepository repo, @NotNull Path downloadPath, @NotNull String sha1, @NotNull String sha256) {
+        ResolvedFile file = new ResolvedFile(repo, downloadPath);
+        file.temporary = true;
+        file.sha1 = sha1;
+        file.sha256 = sha256;
+        return file;
+    }
+
     void setCachePath(Path cachePath) {
         this.cachePath = cachePath;
+        this.temporary = false;
+    }
+
+    boolean isTemporary() {
+        return this.temporary;
     }
 
     @Nullable
@@ -39,6 +82,37 @@ public class ResolvedFile {
         return this.cachePath;
     }
 
+    void setEtag(@Nullable String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * The entity tag the server sent alongside the file, used to revalidate it later on.
+     */
+    @Nullable
+    String getEtag() {
+        return this.etag;
+    }
+
+    /**
+     * Opens the content of this file without reading it into memory first if it is stored on disk.
+     *
+     * @return A new stream of the contents of this file
+     * @throws IOException If the file could not be opened
+     */
+    @NotNull
+    public InputStream openStream() throws IOException {
+        byte[] data = this.data;
+        if (data != null) {
+            return new ByteArrayInputStream(data);
+        }
+        Path cachePath = this.cachePath;
+        if (cachePath == null) {
+            throw new NullPointerException();
+        }
+        return new BufferedInputStream(Files.newInputStream(cachePath));
+    }
+
     public byte @NotNull[] getData() {
         byte[] data = this.data;
         if (data != null) {
@@ -61,13 +135,42 @@ public class ResolvedFile {
 
     /**
      * Obtains the {@link MessageDigestUtil#SHA1 SHA1 Message Digest} of the content data of this object.
-     * It represents it as a hexadecimal string and is not cached.
+     * It represents it as a hexadecimal string and is not cached, unless it was already computed while downloading the file.
      *
      * @return The sha1 hash of the data array of this object.
      */
     @NotNull
     public String getSHA1MessageDigest() {
-        return MessageDigestUtil.toHexHash(MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1).digest(getData()));
+        String sha1 = this.sha1;
+        return sha1 == null ? digest(MessageDigestUtil.SHA1) : sha1;
+    }
+
+    /**
+     * Obtains the {@link MessageDigestUtil#SHA256 SHA-256 Message Digest} of the content data of this object, in the same way as {@link #getSHA1MessageDigest()}.
+     *
+     * @return The SHA-256 hash of the data array of this object.
+     */
+    @NotNull
+    public String getSHA256MessageDigest() {
+        String sha256 = this.sha256;
+        return sha256 == null ? digest(MessageDigestUtil.SHA256) : sha256;
+    }
+
+    @NotNull
+    private String digest(@NotNull String algorithm) {
+        MessageDigest digest = MessageDigestUtil.messageDigest(algorithm);
+        if (this.data == null) {
+            try (DigestInputStream in = new DigestInputStream(openStream(), digest)) {
+                byte[] buffer = new byte[16384];
+                while (in.read(buffer) != -1) {
+                    // Digest
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read data.", e);
+            }
+            return MessageDigestUtil.toHexHash(digest.digest());
+        }
+        return MessageDigestUtil.toHexHash(digest.digest(getData()));
     }
 
     /**
@@ -0,0 +1,85 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.zip.GZIPInputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+
+import io.github.coolcrabs.brachyura.util.NetUtil;
+
+/**
+ * A {@link MavenTransport} built on {@link HttpURLConnection}. Connections are kept alive and reused by the JVM
+ * as long as every response is read to the end and closed, which this class also does for error responses.
+ */
+public class UrlConnectionTransport extends MavenTransport {
+
+    @Override
+    @NotNull
+    public Response get(@NotNull URL url, @Nullable String etag, long ifModifiedSince) throws IOException {
+        URLConnection con = url.openConnection();
+        NetUtil.configure(con);
+        if (etag != null) {
+            con.addRequestProperty("If-None-Match", etag);
+        }
+        if (ifModifiedSince != -1) {
+            con.setIfModifiedSince(ifModifiedSince);
+        }
+        if (!(con instanceof HttpURLConnection)) {
+            return new Response(Response.OK, decode(con), null);
+        }
+        HttpURLConnection http = (HttpURLConnection) con;
+        int status = http.getResponseCode();
+        if (status != Response.OK) {
+            drainError(http);
+            return new Response(status, null, http.getHeaderField("ETag"));
+        }
+        long size = con.getContentLengthLong();
+        Logger.info("Downloading {} ({})", url, size == -1 ? "unknown size" : NetUtil.humanReadableByteCountSI(size));
+        return new Response(status, decode(con), http.getHeaderField("ETag"));
+    }
+
+    @Override
+    public int head(@NotNull URL url) throws IOException {
+        URLConnection con = url.openConnection();
+        if (!(con instanceof HttpURLConnection)) {
+            return super.head(url);
+        }
+        HttpURLConnection http = (HttpURLConnection) con;
+        NetUtil.configure(http);
+        http.setRequestMethod("HEAD");
+        int status = http.getResponseCode();
+        if (status != Response.OK) {
+            drainError(http);
+        }
+        return status;
+    }
+
+    /**
+     * The connection can only go back into the keep-alive pool once the error body was consumed.
+     */
+    private static void drainError(@NotNull HttpURLConnection http) throws IOException {
+        try (InputStream err = http.getErrorStream()) {
+            if (err != null) {
+                byte[] buffer = new byte[1024];
+                while (err.read(buffer) != -1) {
+                    // Drain
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static InputStream decode(@NotNull URLConnection con) throws IOException {
+        if ("gzip".equals(con.getContentEncoding())) {
+            return new GZIPInputStream(con.getInputStream());
+        } else {
+            return con.getInputStream();
+        }
+    }
+}
@@ -7,9 +7,9 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.security.DigestInputStream;
+import java.security.MessageDigest;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -60,6 +60,46 @@ public class AuthentificatedMavenPublishRepository implements PublishRepository
 
     @Override
     public void publish(@NotNull PublicationId id, @NotNull InputStream source) throws IOException {
+        URL url = resolve(id.toPath().toString());
+        MessageDigest md5 = MessageDigestUtil.messageDigest("MD5");
+        MessageDigest sha1 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1);
+        MessageDigest sha256 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        try (InputStream in = new DigestInputStream(new DigestInputStream(new DigestInputStream(source, md5), sha1), sha256)) {
+            Logger.info("Publishing " + url.toString());
+            NetUtil.put(url, in, username, password);
+        }
+        publishChecksums(id, new PublicationChecksums(MessageDigestUtil.toHexHash(md5.digest()),
+                MessageDigestUtil.toHexHash(sha1.digest()), MessageDigestUtil.toHexHash(sha256.digest())));
+    }
+
+    @Override
+    public void publish(@NotNull PublicationId id, byte @NotNull [] source, @NotNull PublicationChecksums checksums) throws IOException {
+        URL url = resolve(id.toPath().toString());
+        Logger.info("Publishing " + url.toString());
+        NetUtil.put(url, new ByteArrayInputStream(source), username, password);
+        publishChecksums(id, checksums);
+    }
+
+    @Override
+    public void publish(@NotNull PublicationId id, @NotNull Path source, @NotNull PublicationChecksums checksums) throws IOException {
+        URL url = resolve(id.toPath().toString());
+        Logger.info("Publishing " + url.toString());
+        try (InputStream in = PathUtil.inputStream(source)) {
+            NetUtil.put(url, in, username, password);
+        }
+        publishChecksums(id, checksums);
+    }
+
+    private void publishChecksums(@NotNull PublicationId id, @NotNull PublicationChecksums checksums) throws IOException {
+        String baseFileName = id.toPath().toString();
+        byte[][] hashes = checksums.getHexHashes();
+        for (int i = 0; i < hashes.length; i++) {
+            NetUtil.put(resolve(baseFileName + '.' + PublicationChecksums.EXTENSIONS[i]), new ByteArrayInputStream(hashes[i]), username, password);
+        }
+    }
+
+    @NotNull
+    private URL resolve(@NotNull String fileName) throws IOException {
         String trailSlashRepo;
         String mavenRepoUrl = mavenURL;
         if (mavenRepoUrl.codePointBefore(mavenRepoUrl.length()) == '/') {
@@ -67,33 +107,12 @@ public class AuthentificatedMavenPublishRepository implements PublishRepository
         } else {
             trailSlashRepo = mavenRepoUrl + '/';
         }
-        String baseFileName = id.toPath().toString();
-        URI basePath = null;
         try {
             trailSlashRepo = trailSlashRepo.replace(File.separatorChar, '/'); // Ensure consistency with windows
-            basePath = new URI(trailSlashRepo);
+            return new URI(trailSlashRepo).resolve(fileName).toURL();
         } catch (URISyntaxException ex) {
             throw new IOException("Invalid URI: " + trailSlashRepo + ".", ex);
         }
-
-        try (DigestInputStream digestInSha256 = new DigestInputStream(source, MessageDigestUtil.messageDigest("SHA-256"))) {
-            try (DigestInputStream digestInMd5 = new DigestInputStream(digestInSha256,  MessageDigestUtil.messageDigest("MD5"))) {
-                try (DigestInputStream digestInSha1 = new DigestInputStream(digestInMd5,  MessageDigestUtil.messageDigest("SHA-1"))) {
-                    URL url = basePath.resolve(baseFileName).toURL();
-                    Logger.info("Publishing " + url.toString());
-                    NetUtil.put(url, digestInSha1, username, password);
-                    byte[] checksum = MessageDigestUtil.toHexHash(digestInMd5.getMessageDigest().digest()).getBytes(StandardCharsets.UTF_8);
-                    url = basePath.resolve(baseFileName + ".sha1").toURL();
-                    NetUtil.put(url, new ByteArrayInputStream(checksum), username, password);
-                }
-                byte[] checksum = MessageDigestUtil.toHexHash(digestInMd5.getMessageDigest().digest()).getBytes(StandardCharsets.UTF_8);
-                URL checksumURL = basePath.resolve(baseFileName + ".md5").toURL();
-                NetUtil.put(checksumURL, new ByteArrayInputStream(checksum), username, password);
-            }
-            byte[] checksum = MessageDigestUtil.toHexHash(digestInSha256.getMessageDigest().digest()).getBytes(StandardCharsets.UTF_8);
-            URL checksumURL = basePath.resolve(baseFileName + ".sha256").toURL();
-            NetUtil.put(checksumURL, new ByteArrayInputStream(checksum), username, password);
-        }
     }
 
     @Override
@@ -10,6 +10,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -20,6 +25,7 @@ import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
 import io.github.coolcrabs.brachyura.dependency.MavenDependency;
 import io.github.coolcrabs.brachyura.dependency.MavenDependencyScope;
 import io.github.coolcrabs.brachyura.maven.MavenId;
+import io.github.coolcrabs.brachyura.util.Util;
 import io.github.coolcrabs.brachyura.util.XmlUtil;
 
 public class MavenPublisher {
@@ -27,6 +33,11 @@ public class MavenPublisher {
     @NotNull
     private final List<PublishRepository> repositories = new ArrayList<>();
 
+    /**
+     * The maximum amount of files uploaded at once, see {@link #setUploadThreads(int)}.
+     */
+    private int uploadThreads = 8;
+
     @NotNull
     @Contract(mutates = "this", pure = false, value = "!null -> this; null -> fail")
     public MavenPublisher addRepository(@NotNull PublishRepository repo) {
@@ -84,17 +95,37 @@ public class MavenPublisher {
         return new ArrayList<>(repositories);
     }
 
+    /**
+     * Sets the maximum amount of files that are uploaded at once by {@link #publishJar(JavaJarDependency, Collection)},
+     * across all repositories.
+     *
+     * <p>The default value is 8.
+     *
+     * @param uploadThreads The new value, 1 uploads one file after the other
+     * @return The current {@link MavenPublisher} instance, for chaining
+     */
+    @NotNull
+    @Contract(mutates = "this", pure = false, value = "_ -> this")
+    public MavenPublisher setUploadThreads(int uploadThreads) {
+        if (uploadThreads < 1) {
+            throw new IllegalArgumentException("uploadThreads must be at least 1");
+        }
+        this.uploadThreads = uploadThreads;
+        return this;
+    }
+
     /**
      * Publishes the jar, the sources (as far as present) and a created pom to all connected repository.
      * This method is not fail-fast, that is it will try to publish to all repositories and will then
      * throw an {@link PublicationException} f at least one publication attempt errored out. The cause
      * of that exception will be the first encountered {@link IOException}, any further {@link IOException}
      * are added as {@link Throwable#addSuppressed(Throwable) suppressed exceptions}. If any non-IOException
-     * throwable is thrown, the method does not proceed further as it makes no attempt at catching such exceptions.
+     * throwable is thrown, it is rethrown once all uploads finished.
      *
-     * <p>Should there be an issue writing the maven pom, a {@link PublicationException} will also be thrown.
-     * No files will be published in that case as the pom is the first file that is published. After that the
-     * jar itself is published and then the source jar - should it be present.
+     * <p>The checksums of every file are computed once up front and shared by all repositories. The files are then
+     * uploaded to all repositories at once, see {@link #setUploadThreads(int)}, so the order in which they arrive
+     * is not defined. Should there be an issue writing the maven pom, a {@link PublicationException} will
+     * be thrown before any file is published.
      *
      * @param artifact The artifact to publish
      * @param dependencies The dependencies of the artifact, used to generate the dependency section of the pom
@@ -103,39 +134,83 @@ public class MavenPublisher {
      */
     public void publishJar(@NotNull JavaJarDependency artifact, @NotNull Collection<? extends MavenDependency> dependencies) throws PublicationException{
         byte[] pomContent = generatePom(artifact.getMavenId(), dependencies);
-        PublicationException pubEx = null;
+        PublicationChecksums pomChecksums = PublicationChecksums.compute(pomContent);
+        PublicationChecksums jarChecksums;
+        PublicationChecksums sourcesChecksums;
+        Path source = artifact.sourcesJar;
+        try {
+            jarChecksums = PublicationChecksums.compute(artifact.jar);
+            sourcesChecksums = source == null ? null : PublicationChecksums.compute(source);
+        } catch (IOException e) {
+            throw new PublicationException("Cannot read artifact " + artifact.getMavenId(), e);
+        }
+
+        List<PublishRepository> targets = new ArrayList<>();
+        List<Callable<Void>> uploads = new ArrayList<>();
         for (PublishRepository repo : this.repositories) {
-            try {
-                repo.publish(new PublicationId(artifact.getMavenId(), "pom"), pomContent);
-            } catch (IOException e) {
-                if (pubEx == null) {
-                    pubEx = new PublicationException(repo, e);
-                } else {
-                    pubEx.addSuppressed(e);
-                }
-            }
-            try {
-                repo.publish(new PublicationId(artifact.getMavenId(), "jar"), artifact.jar);
-            } catch (IOException e) {
-                if (pubEx == null) {
-                    pubEx = new PublicationException(repo, e);
-                } else {
-                    pubEx.addSuppressed(e);
-                }
+            targets.add(repo);
+            uploads.add(() -> {
+                repo.publish(new PublicationId(artifact.getMavenId(), "pom"), pomContent, pomChecksums);
+                return null;
+            });
+            targets.add(repo);
+            uploads.add(() -> {
+                repo.publish(new PublicationId(artifact.getMavenId(), "jar"), artifact.jar, jarChecksums);
+                return null;
+            });
+            if (source != null && sourcesChecksums != null) {
+                targets.add(repo);
+                uploads.add(() -> {
+                    repo.publish(new PublicationId(artifact.getMavenId().withClassifier("sources"), "jar"), source, sourcesChecksums);
+                    return null;
+                });
             }
+        }
+        if (uploads.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(uploadThreads, uploads.size()), r -> {
+            Thread t = new Thread(r, "Maven publication");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Void>> results;
+        try {
+            results = executor.invokeAll(uploads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PublicationException("Interrupted while publishing " + artifact.getMavenId(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        PublicationException pubEx = null;
+        Throwable unexpected = null;
+        for (int i = 0; i < results.size(); i++) {
             try {
-                Path source = artifact.sourcesJar;
-                if (source != null) {
-                    repo.publish(new PublicationId(artifact.getMavenId().withClassifier("sources"), "jar"), source);
-                }
-            } catch (IOException e) {
-                if (pubEx == null) {
-                    pubEx = new PublicationException(repo, e);
+                results.get(i).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    if (pubEx == null) {
+                        pubEx = new PublicationException(targets.get(i), (IOException) cause);
+                    } else {
+                        pubEx.addSuppressed(cause);
+                    }
+                } else if (unexpected == null) {
+                    unexpected = cause;
                 } else {
-                    pubEx.addSuppressed(e);
+                    unexpected.addSuppressed(cause);
                 }
+            } catch (InterruptedException e) {
+                // Cannot happen, all uploads are done
+                Thread.currentThread().interrupt();
             }
         }
+        if (unexpected != null) {
+            throw Util.sneak(unexpected);
+        }
         if (pubEx != null) {
             throw pubEx;
         }
@@ -0,0 +1,116 @@
+package io.github.coolcrabs.brachyura.maven.publish;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+
+/**
+ * The checksums that are published alongside a file, computed in a single pass over the file so that
+ * they can be shared by all {@link PublishRepository repositories} the file is published to.
+ */
+public final class PublicationChecksums {
+
+    /**
+     * The extensions of the checksum files, in the same order as {@link #getHexHashes()}.
+     */
+    @NotNull
+    public static final String[] EXTENSIONS = {"md5", "sha1", "sha256"};
+
+    @NotNull
+    private final String md5;
+    @NotNull
+    private final String sha1;
+    @NotNull
+    private final String sha256;
+
+    /**
+     * @param md5 The MD5 hash as a hexadecimal string
+     * @param sha1 The SHA-1 hash as a hexadecimal string
+     * @param sha256 The SHA-256 hash as a hexadecimal string
+     */
+    public PublicationChecksums(@NotNull String md5, @NotNull String sha1, @NotNull String sha256) {
+        this.md5 = md5;
+        this.sha1 = sha1;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Reads a stream to the end and computes its checksums. The stream is not closed.
+     *
+     * @param source The stream to read
+     * @return The checksums of the content of the stream
+     * @throws IOException If the stream could not be read
+     */
+    @NotNull
+    @Contract(pure = false, value = "_ -> new")
+    public static PublicationChecksums compute(@NotNull InputStream source) throws IOException {
+        MessageDigest md5 = MessageDigestUtil.messageDigest("MD5");
+        MessageDigest sha1 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1);
+        MessageDigest sha256 = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        byte[] buffer = new byte[16384];
+        for (int read = source.read(buffer); read != -1; read = source.read(buffer)) {
+            md5.update(buffer, 0, read);
+            sha1.update(buffer, 0, read);
+            sha256.update(buffer, 0, read);
+        }
+        return new PublicationChecksums(MessageDigestUtil.toHexHash(md5.digest()), MessageDigestUtil.toHexHash(sha1.digest()),
+                MessageDigestUtil.toHexHash(sha256.digest()));
+    }
+
+    @NotNull
+    @Contract(pure = true, value = "_ -> new")
+    public static PublicationChecksums compute(byte @NotNull [] source) {
+        try {
+            return compute(new ByteArrayInputStream(source));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read byte array", e);
+        }
+    }
+
+    @NotNull
+    @Contract(pure = false, value = "_ -> new")
+    public static PublicationChecksums compute(@NotNull Path source) throws IOException {
+        try (InputStream in = PathUtil.inputStream(source)) {
+            return compute(in);
+        }
+    }
+
+    @NotNull
+    public String getMD5() {
+        return md5;
+    }
+
+    @NotNull
+    public String getSHA1() {
+        return sha1;
+    }
+
+    @NotNull
+    public String getSHA256() {
+        return sha256;
+    }
+
+    /**
+     * Obtains the checksums as the content of the checksum files, in the same order as {@link #EXTENSIONS}.
+     *
+     * @return The hexadecimal checksums, UTF-8 encoded
+     */
+    @NotNull
+    @Contract(pure = true, value = "-> new")
+    public byte @NotNull [][] getHexHashes() {
+        return new byte[][] {
+            md5.getBytes(StandardCharsets.UTF_8),
+            sha1.getBytes(StandardCharsets.UTF_8),
+            sha256.getBytes(StandardCharsets.UTF_8)
+        };
+    }
+}
@@ -34,4 +34,31 @@ public interface PublishRepository {
      * @throws IOException If there was an error while reading the source file or if there was an error during publishing
      */
     public void publish(@NotNull PublicationId id, @NotNull Path source) throws IOException;
+
+    /**
+     * Publishes a resource to the repository along with checksums that were already computed.
+     * The default implementation ignores the checksums and calls {@link #publish(PublicationId, byte[])}.
+     *
+     * @param id The id to publish the file under.
+     * @param source The contents of the published resource
+     * @param checksums The checksums of the source
+     * @throws IOException If there was an error during publishing
+     */
+    public default void publish(@NotNull PublicationId id, byte @NotNull[] source, @NotNull PublicationChecksums checksums) throws IOException {
+        publish(id, source);
+    }
+
+    /**
+     * Publishes an already existing resource to the publication repository along with checksums that were already computed,
+     * so that the source only needs to be read once for all repositories.
+     * The default implementation ignores the checksums and calls {@link #publish(PublicationId, Path)}.
+     *
+     * @param id The id to publish the file under.
+     * @param source The source to copy the file from.
+     * @param checksums The checksums of the source
+     * @throws IOException If there was an error while reading the source file or if there was an error during publishing
+     */
+    public default void publish(@NotNull PublicationId id, @NotNull Path source, @NotNull PublicationChecksums checksums) throws IOException {
+        publish(id, source);
+    }
 }
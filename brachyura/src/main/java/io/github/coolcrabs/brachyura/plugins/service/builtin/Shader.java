@@ -12,15 +12,16 @@ import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
+import org.jetbrains.annotations.NotNull;
 import org.tinylog.Logger;
 
 import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
 import io.github.coolcrabs.brachyura.processing.ProcessingSource;
-import io.github.coolcrabs.brachyura.processing.Processor;
+import io.github.coolcrabs.brachyura.processing.SelectiveProcessor;
 
-public class Shader implements Processor {
+public class Shader implements SelectiveProcessor {
 
     private final Path[] shadePaths;
 
@@ -28,6 +29,12 @@ public class Shader implements Processor {
         this.shadePaths = shadePaths;
     }
 
+    @Override
+    public boolean accepts(@NotNull String path) {
+        // Only adds entries
+        return false;
+    }
+
     @Override
     public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
         // TODO Processesors are confusing and need a rewrite. So do that!
@@ -0,0 +1,21 @@
+package io.github.coolcrabs.brachyura.processing;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A {@link Processor} whose output for an entry only depends on that entry.
+ * The {@link ParallelProcessorChain} can thus run such processors on several entries
+ * at once without having to wait for the whole input to be collected.
+ * Implementations must be thread safe.
+ */
+public interface EntryLocalProcessor extends Processor {
+    void processEntry(ProcessingEntry entry, ProcessingSink sink) throws IOException;
+
+    @Override
+    default void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
+        for (ProcessingEntry e : inputs) {
+            processEntry(e, sink);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package io.github.coolcrabs.brachyura.processing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jetbrains.annotations.NotNull;
+
+import io.github.coolcrabs.brachyura.util.Util;
+
+/**
+ * A {@link ProcessorChain} that runs its processors as a pipeline instead of one after another.
+ *
+ * <p>Consecutive {@link EntryLocalProcessor}s are fused into a single stage through which every entry
+ * is pushed on its own task of a bounded {@link ForkJoinPool}, as soon as the source (or the previous stage)
+ * emits it. All other processors see the whole set of their inputs, as they do in a plain {@link ProcessorChain};
+ * they act as barriers between stages and receive their inputs in the same order as the serial chain would
+ * give them. Entries that no remaining {@link SelectiveProcessor} accepts skip ahead without being buffered.
+ *
+ * <p>Calls to the output sink are serialized, but may occur in any order. Sinks such as
+ * {@link io.github.coolcrabs.brachyura.processing.sinks.ZipProcessingSink} sort their entries, so their output is
+ * the same as the output of a serial chain.
+ */
+public class ParallelProcessorChain extends ProcessorChain {
+    final int parallelism;
+
+    public ParallelProcessorChain(@NotNull Processor... processors) {
+        this(Runtime.getRuntime().availableProcessors(), processors);
+    }
+
+    public ParallelProcessorChain(int parallelism, @NotNull Processor... processors) {
+        super(processors);
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    public ParallelProcessorChain(int parallelism, ProcessorChain existing, @NotNull Processor... processors) {
+        super(existing, processors);
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void apply(ProcessingSink out, Iterable<? extends ProcessingSource> in) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            new Run(pool, out).execute(in);
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Position of an entry in the order in which a serial chain would have emitted it:
+     * first by the processor that emitted it (-1 for the sources), then by the position of the entry it
+     * was derived from (for entry-local processors) and then by the order of emission.
+     */
+    static final class Ticket implements Comparable<Ticket> {
+        final int emitter;
+        final Ticket parent;
+        final long index;
+
+        Ticket(int emitter, Ticket parent, long index) {
+            this.emitter = emitter;
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(Ticket o) {
+            int c = Integer.compare(emitter, o.emitter);
+            if (c != 0) return c;
+            if (parent != null) {
+                c = parent.compareTo(o.parent);
+                if (c != 0) return c;
+            }
+            return Long.compare(index, o.index);
+        }
+    }
+
+    static final class Ticketed {
+        final Ticket ticket;
+        final ProcessingEntry entry;
+        final int position;
+
+        Ticketed(Ticket ticket, ProcessingEntry entry, int position) {
+            this.ticket = ticket;
+            this.entry = entry;
+            this.position = position;
+        }
+    }
+
+    static final class Collector {
+        ArrayList<Ticketed> e = new ArrayList<>();
+
+        synchronized void add(Ticketed t) {
+            e.add(t);
+        }
+
+        synchronized List<Ticketed> drain() {
+            e.sort((a, b) -> a.ticket.compareTo(b.ticket));
+            List<Ticketed> r = e;
+            e = new ArrayList<>();
+            return r;
+        }
+    }
+
+    /**
+     * State of a single {@link #apply(ProcessingSink, Iterable)} invocation.
+     * Processors are split into segments, each consisting of a run of entry-local processors
+     * and terminated by a barrier (or the end of the chain).
+     */
+    final class Run {
+        final ForkJoinPool pool;
+        final ProcessingSink out;
+        final Object outLock = new Object();
+        final int[] segmentOf = new int[processors.length];
+        final List<Integer> barriers = new ArrayList<>();
+        // Inputs of the barrier terminating a segment
+        final List<Collector> barrierInputs = new ArrayList<>();
+        // Entries that skipped ahead to an entry-local processor of a later segment
+        final List<Collector> carried = new ArrayList<>();
+
+        Run(ForkJoinPool pool, ProcessingSink out) {
+            this.pool = pool;
+            this.out = out;
+            for (int i = 0; i < processors.length; i++) {
+                segmentOf[i] = barriers.size();
+                if (!(processors[i] instanceof EntryLocalProcessor)) {
+                    barriers.add(i);
+                }
+            }
+            barriers.add(processors.length);
+            for (int i = 0; i < barriers.size(); i++) {
+                barrierInputs.add(new Collector());
+                carried.add(new Collector());
+            }
+        }
+
+        void execute(Iterable<? extends ProcessingSource> in) throws IOException {
+            for (int k = 0; k < barriers.size(); k++) {
+                int segment = k;
+                Stage stage = new Stage(segment);
+                try {
+                    for (Ticketed t : carried.get(segment).drain()) {
+                        stage.dispatch(t.entry, t.ticket, t.position);
+                    }
+                    if (segment == 0) {
+                        ProcessingSink sink = stage.emitter(-1, 0);
+                        for (ProcessingSource s : in) {
+                            if (s == null) { // Slbrachyura: Better debugging
+                                throw new NullPointerException("One of the input processing sources was null!");
+                            }
+                            s.getInputs(sink);
+                        }
+                    } else {
+                        int barrier = barriers.get(segment - 1);
+                        List<ProcessingEntry> entries = new ArrayList<>();
+                        for (Ticketed t : barrierInputs.get(segment - 1).drain()) {
+                            entries.add(t.entry);
+                        }
+                        processors[barrier].process(entries, stage.emitter(barrier, barrier + 1));
+                    }
+                } catch (Throwable t) {
+                    stage.drain();
+                    throw t;
+                }
+                stage.await();
+            }
+        }
+
+        /**
+         * Moves an entry to the output or into the buffers of a later segment.
+         *
+         * @param q The index of the processor which accepts the entry
+         */
+        void deposit(ProcessingEntry entry, Ticket ticket, int q) {
+            if (q == processors.length) {
+                synchronized (outLock) {
+                    out.sink(entry.in, entry.id);
+                }
+                return;
+            }
+            int segment = segmentOf[q];
+            if (q == barriers.get(segment)) {
+                barrierInputs.get(segment).add(new Ticketed(ticket, entry, q));
+            } else {
+                carried.get(segment).add(new Ticketed(ticket, entry, q));
+            }
+        }
+
+        final class Stage {
+            final int segment;
+            // Keeps the producer from running arbitrarily far ahead of the workers
+            final Semaphore permits = new Semaphore(parallelism * 4);
+            final Phaser pending = new Phaser(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+            Stage(int segment) {
+                this.segment = segment;
+            }
+
+            boolean isLocal(int q) {
+                return q < processors.length && segmentOf[q] == segment && q != barriers.get(segment);
+            }
+
+            ProcessingSink emitter(int emitter, int position) {
+                AtomicLong next = new AtomicLong();
+                return (in, id) -> dispatch(new ProcessingEntry(in, id), new Ticket(emitter, null, next.getAndIncrement()), position);
+            }
+
+            /**
+             * Entry point for entries from the producing thread; forks off a task if any processor of this stage wants the entry.
+             */
+            void dispatch(ProcessingEntry entry, Ticket ticket, int position) {
+                int q = nextAccepting(position, entry.id.path);
+                if (!isLocal(q)) {
+                    deposit(entry, ticket, q);
+                    return;
+                }
+                if (failure.get() != null) {
+                    return;
+                }
+                permits.acquireUninterruptibly();
+                pending.register();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            runLocal(q, entry, ticket);
+                        } catch (Throwable t) {
+                            if (!failure.compareAndSet(null, t)) {
+                                failure.get().addSuppressed(t);
+                            }
+                        } finally {
+                            permits.release();
+                            pending.arriveAndDeregister();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    pending.arriveAndDeregister();
+                    throw e;
+                }
+            }
+
+            void runLocal(int q, ProcessingEntry entry, Ticket ticket) throws IOException {
+                AtomicLong child = new AtomicLong();
+                ((EntryLocalProcessor) processors[q]).processEntry(entry, (in, id) -> {
+                    try {
+                        route(new ProcessingEntry(in, id), new Ticket(q, ticket, child.getAndIncrement()), q + 1);
+                    } catch (IOException e) {
+                        throw Util.sneak(e);
+                    }
+                });
+            }
+
+            void route(ProcessingEntry entry, Ticket ticket, int position) throws IOException {
+                int q = nextAccepting(position, entry.id.path);
+                if (isLocal(q)) {
+                    runLocal(q, entry, ticket);
+                } else {
+                    deposit(entry, ticket, q);
+                }
+            }
+
+            void drain() {
+                pending.arriveAndAwaitAdvance();
+            }
+
+            void await() {
+                drain();
+                Throwable t = failure.get();
+                if (t != null) {
+                    throw Util.sneak(t);
+                }
+            }
+        }
+    }
+}
@@ -29,30 +29,70 @@ public class ProcessorChain {
 
     public void apply(ProcessingSink out, Iterable<? extends ProcessingSource> in) {
         try {
-            Collector c = new Collector();
+            Collector[] inputs = new Collector[processors.length];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new Collector();
+            }
+            ProcessingSink sourceRouter = new Router(inputs, out, 0);
             for (ProcessingSource s : in) {
                 if (s == null) { // Slbrachyura: Better debugging
                     throw new NullPointerException("One of the input processing sources was null!");
                 }
-                s.getInputs(c);
-            }
-            for (Processor p : processors) {
-                Collector c2 = new Collector();
-                p.process(c.e, c2);
-                c = c2; 
+                s.getInputs(sourceRouter);
             }
-            for (ProcessingEntry pe : c.e) {
-                out.sink(pe.in, pe.id);
+            for (int i = 0; i < processors.length; i++) {
+                Collector c = inputs[i];
+                inputs[i] = null;
+                processors[i].process(c.e, new Router(inputs, out, i + 1));
             }
         } catch (IOException e) {
             Util.sneak(e);
         }
     }
 
+    /**
+     * Obtains the index of the first processor at or after the given index which wants to see
+     * entries with the given path, or the amount of processors if no such processor exists.
+     */
+    int nextAccepting(int from, String path) {
+        for (int i = from; i < processors.length; i++) {
+            Processor p = processors[i];
+            if (!(p instanceof SelectiveProcessor) || ((SelectiveProcessor) p).accepts(path)) {
+                return i;
+            }
+        }
+        return processors.length;
+    }
+
     public Processor[] getProcessors() {
         return Arrays.copyOf(processors, processors.length);
     }
 
+    /**
+     * Hands entries to the next processor that accepts them, or to the output if none does.
+     */
+    class Router implements ProcessingSink {
+        final Collector[] inputs;
+        final ProcessingSink out;
+        final int from;
+
+        Router(Collector[] inputs, ProcessingSink out, int from) {
+            this.inputs = inputs;
+            this.out = out;
+            this.from = from;
+        }
+
+        @Override
+        public void sink(Supplier<InputStream> in, ProcessingId id) {
+            int i = nextAccepting(from, id.path);
+            if (i == processors.length) {
+                out.sink(in, id);
+            } else {
+                inputs[i].sink(in, id);
+            }
+        }
+    }
+
     static class Collector implements ProcessingSink {
         ArrayList<ProcessingEntry> e = new ArrayList<>();
 
@@ -0,0 +1,22 @@
+package io.github.coolcrabs.brachyura.processing;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Processor} that only ever reads a subset of the entries passing through a {@link ProcessorChain}.
+ * Entries that are not accepted are never handed to the processor; the chain passes them on to
+ * the next processor that accepts them, or straight to the output sink if there is none.
+ *
+ * <p>The entries emitted by the processor are not restricted by the filter, they are routed
+ * through the rest of the chain like any other entry.
+ */
+public interface SelectiveProcessor extends Processor {
+    /**
+     * Checks whether the processor needs to see the entry with the given path.
+     * Must be stateless and thread safe, as it can be invoked at any point during the chain's execution.
+     *
+     * @param path The path of the entry, as in {@link ProcessingId#path}
+     * @return True if the entry should be passed to the processor, false if it should skip it
+     */
+    boolean accepts(@NotNull String path);
+}
@@ -3,6 +3,7 @@ package io.github.coolcrabs.brachyura.processing.sinks;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.function.Supplier;
+import java.util.zip.Deflater;
 
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
@@ -14,9 +15,20 @@ public class AtomicZipProcessingSink implements ProcessingSink, AutoCloseable {
     ZipProcessingSink delegate;
 
     public AtomicZipProcessingSink(Path zip) {
+        this(zip, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AtomicZipProcessingSink(Path zip, int parallelism) {
+        this(zip, parallelism, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @see ZipProcessingSink#ZipProcessingSink(java.io.OutputStream, int, int)
+     */
+    public AtomicZipProcessingSink(Path zip, int parallelism, int level) {
         file = new AtomicFile(zip);
         PathUtil.deleteIfExists(file.tempPath);
-        delegate = new ZipProcessingSink(file.tempPath);
+        delegate = new ZipProcessingSink(file.tempPath, parallelism, level);
     }
 
     @Override
@@ -5,33 +5,67 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.Deflater;
 
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
 import io.github.coolcrabs.brachyura.util.PathUtil;
-import io.github.coolcrabs.brachyura.util.StreamUtil;
 import io.github.coolcrabs.brachyura.util.Util;
+import io.github.coolcrabs.brachyura.zip.ZipArchive;
+import io.github.coolcrabs.brachyura.zip.ZipWriter;
 
+/**
+ * Collects entries and writes them sorted by path into a zip once closed.
+ * Entries are compressed on up to {@code parallelism} threads; the output does not depend on it.
+ */
 public class ZipProcessingSink implements ProcessingSink, Closeable {
-    // https://github.com/gradle/gradle/blob/master/subprojects/core/src/main/java/org/gradle/api/internal/file/archive/ZipCopyAction.java
-    private static final long MAGIC_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0).getTimeInMillis();
-
-    final ZipOutputStream out;
+    final ZipWriter out;
+    final int parallelism;
+    final int level;
     final TreeMap<ProcessingId, Supplier<InputStream>> entries = new TreeMap<>((a, b) -> a.path.compareTo(b.path));
 
     public ZipProcessingSink(Path zip) {
-        this(PathUtil.outputStream(zip));
+        this(zip, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ZipProcessingSink(Path zip, int parallelism) {
+        this(zip, parallelism, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ZipProcessingSink(Path zip, int parallelism, int level) {
+        this(PathUtil.outputStream(zip), parallelism, level);
     }
 
     public ZipProcessingSink(OutputStream out) {
-        this.out = new ZipOutputStream(out);
+        this(out, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ZipProcessingSink(OutputStream out, int parallelism) {
+        this(out, parallelism, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param parallelism The number of threads compressing entries
+     * @param level The {@link Deflater} level of new entries; {@link Deflater#NO_COMPRESSION} stores them, which is
+     * the fastest option for jars that are only read back locally. Entries copied from a zip keep their compression.
+     */
+    public ZipProcessingSink(OutputStream out, int parallelism, int level) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        this.out = new ZipWriter(out, level);
+        this.parallelism = parallelism;
+        this.level = level;
     }
 
     @Override
@@ -42,18 +76,104 @@ public class ZipProcessingSink implements ProcessingSink, Closeable {
     @Override
     public void close() {
         try {
-            for (Map.Entry<ProcessingId, Supplier<InputStream>> e : entries.entrySet()) {
-                ZipEntry entry = new ZipEntry(e.getKey().path);
-                entry.setTime(MAGIC_TIME);
-                out.putNextEntry(entry);
-                try (InputStream is = e.getValue().get()) {
-                    StreamUtil.copy(is, out);
+            if (parallelism == 1 || entries.size() < 2) {
+                for (Map.Entry<ProcessingId, Supplier<InputStream>> e : entries.entrySet()) {
+                    Supplier<InputStream> in = e.getValue();
+                    // Entries straight from a ZipProcessingSource can be copied over as they are
+                    if (isRawCopyable(in)) {
+                        out.putRawEntry(e.getKey().path, (ZipArchive.Entry) in);
+                        continue;
+                    }
+                    try (InputStream is = in.get()) {
+                        out.putEntry(e.getKey().path, is);
+                    }
                 }
+            } else {
+                closeParallel();
             }
             out.close();
         } catch (IOException e) {
             throw Util.sneak(e);
         }
     }
-    
+
+    static boolean isRawCopyable(Supplier<InputStream> in) {
+        return in instanceof ZipArchive.Entry && ((ZipArchive.Entry) in).isRawCopyable();
+    }
+
+    /**
+     * Compresses entries on a pool, a bounded window ahead of the writer, and writes them in order.
+     */
+    void closeParallel() throws IOException {
+        List<ZipWriter.Compressor> compressors = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<ZipWriter.Compressor> compressor = ThreadLocal.withInitial(() -> {
+            ZipWriter.Compressor c = new ZipWriter.Compressor(level);
+            compressors.add(c);
+            return c;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, entries.size()), r -> {
+            Thread t = new Thread(r, "ZipProcessingSink compressor");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ArrayDeque<Pending> window = new ArrayDeque<>();
+            int windowSize = parallelism * 4;
+            for (Map.Entry<ProcessingId, Supplier<InputStream>> e : entries.entrySet()) {
+                String path = e.getKey().path;
+                Supplier<InputStream> in = e.getValue();
+                Future<ZipWriter.Compressed> f = null;
+                if (!isRawCopyable(in)) {
+                    f = pool.submit(() -> {
+                        try (InputStream is = in.get()) {
+                            return compressor.get().compress(path, is);
+                        }
+                    });
+                }
+                window.add(new Pending(path, in, f));
+                if (window.size() >= windowSize) {
+                    window.poll().write();
+                }
+            }
+            while (!window.isEmpty()) {
+                window.poll().write();
+            }
+        } finally {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (ZipWriter.Compressor c : compressors) {
+                c.close();
+            }
+        }
+    }
+
+    final class Pending {
+        final String path;
+        final Supplier<InputStream> in;
+        final Future<ZipWriter.Compressed> compressed;
+
+        Pending(String path, Supplier<InputStream> in, Future<ZipWriter.Compressed> compressed) {
+            this.path = path;
+            this.in = in;
+            this.compressed = compressed;
+        }
+
+        void write() {
+            if (compressed == null) {
+                out.putRawEntry(path, (ZipArchive.Entry) in);
+                return;
+            }
+            try {
+                out.putCompressed(path, compressed.get());
+            } catch (ExecutionException e) {
+                throw Util.sneak(e.getCause());
+            } catch (InterruptedException e) {
+                throw Util.sneak(e);
+            }
+        }
+    }
 }
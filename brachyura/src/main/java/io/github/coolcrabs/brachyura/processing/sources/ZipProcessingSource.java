@@ -2,55 +2,44 @@ package io.github.coolcrabs.brachyura.processing.sources;
 
 import java.io.Closeable;
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
 
 import org.jetbrains.annotations.NotNull;
 
 import io.github.coolcrabs.brachyura.processing.ProcessingId;
 import io.github.coolcrabs.brachyura.processing.ProcessingSink;
 import io.github.coolcrabs.brachyura.processing.ProcessingSource;
-import io.github.coolcrabs.brachyura.util.FileSystemUtil;
-import io.github.coolcrabs.brachyura.util.PathUtil;
 import io.github.coolcrabs.brachyura.util.Util;
+import io.github.coolcrabs.brachyura.zip.ZipArchive;
 
+/**
+ * Reads the entries of a zip file. The inputs are the {@link ZipArchive.Entry entries} themselves,
+ * so {@link io.github.coolcrabs.brachyura.processing.sinks.ZipProcessingSink} can copy entries that
+ * make it through a chain unchanged without re-compressing them.
+ * The source must stay open until the sinks it feeds are closed.
+ */
 public class ZipProcessingSource extends ProcessingSource implements Closeable {
-    final FileSystem fs;
+    final ZipArchive archive;
     
     public ZipProcessingSource(@NotNull Path file) {
         if (!Files.exists(file)) throw Util.sneak(new FileNotFoundException(file.toString()));
-        this.fs = FileSystemUtil.newJarFileSystem(file);
+        this.archive = new ZipArchive(file);
     }
 
     @Override
     public void getInputs(ProcessingSink sink) {
-        try {
-            Files.walkFileTree(fs.getPath("/"), new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (file == null) {
-                        throw new IOException("file is null");
-                    }
-                    sink.sink(() -> PathUtil.inputStream(file), new ProcessingId(file.toString().substring(1), ZipProcessingSource.this));
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        } catch (IOException ex) {
-            throw Util.sneak(ex);
+        HashSet<String> seen = new HashSet<>();
+        for (ZipArchive.Entry entry : archive.getEntries()) {
+            String path = entry.name.startsWith("/") ? entry.name.substring(1) : entry.name;
+            if (entry.isDirectory() || !seen.add(path)) continue;
+            sink.sink(entry, new ProcessingId(path, this));
         }
     }
 
     @Override
     public void close() {
-        try {
-            fs.close();
-        } catch (IOException e) {
-            throw Util.sneak(e);
-        }
+        archive.close();
     }
 }
@@ -0,0 +1,44 @@
+package io.github.coolcrabs.brachyura.project;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.tinylog.Logger;
+
+/**
+ * Work that tasks leave running after they return, such as decompiling minecraft for an IDE. The daemon keeps running
+ * so that such work finishes on its own, otherwise brachyura waits for it before it exits.
+ */
+public class BackgroundTasks {
+    private BackgroundTasks() { }
+
+    private static final Map<CompletableFuture<?>, String> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * @param description What the work does, for the log
+     * @param task Completed, normally or exceptionally, when the work is done
+     */
+    public static void add(@NotNull String description, @NotNull CompletableFuture<?> task) {
+        tasks.put(task, description);
+        task.whenComplete((result, t) -> tasks.remove(task));
+    }
+
+    static void awaitAll() {
+        while (!tasks.isEmpty()) {
+            for (Map.Entry<CompletableFuture<?>, String> task : new ArrayList<>(tasks.entrySet())) {
+                Logger.info("Waiting for {} to finish", task.getValue());
+                try {
+                    task.getKey().join();
+                } catch (CompletionException | CancellationException e) {
+                    // Reported by the task itself
+                }
+                tasks.remove(task.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package io.github.coolcrabs.brachyura.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+import org.tinylog.Logger;
+import org.tinylog.configuration.Configuration;
+
+import io.github.coolcrabs.brachyura.util.AtomicFile;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+import io.github.coolcrabs.brachyura.util.Util;
+
+/**
+ * Keeps brachyura running between invocations for a project. Started by passing {@code daemon} to the bootstrap,
+ * which from then on forwards its invocations over a loopback socket instead of doing the work itself. The JIT,
+ * the compiler, the buildscript and everything the project computed (mappings, remapped jars, ...) stay warm.
+ *
+ * <p>The buildscript project is recreated whenever the buildscript changes; otherwise {@link Project#invalidate()}
+ * drops whatever depends on the project's sources before each invocation. Invocations are handled one at a time,
+ * and {@code daemon stop} stops the daemon.
+ *
+ * <p>Protocol (all {@link DataOutputStream} encoded, must match the bootstrap): the client sends
+ * {@link #PROTOCOL_VERSION}, the token from the {@link #infoFile(Path) info file}, its classpath and its arguments,
+ * each list prefixed by its size. The daemon answers with {@link #OUT} and {@link #ERR} frames (length prefixed
+ * bytes) followed by either {@link #EXIT} and the exit code, or {@link #REJECTED} and a reason, in which case the
+ * client does the work itself.
+ */
+class BrachyuraDaemon {
+    static final int PROTOCOL_VERSION = 1;
+    static final int OUT = 1;
+    static final int ERR = 2;
+    static final int EXIT = 3;
+    static final int REJECTED = 4;
+
+    final Path projectDir;
+    final List<Path> classpath;
+    final Path infoFile;
+    final long idleTimeout = TimeUnit.MINUTES.toMillis(Long.getLong("brachyura.daemon.idleMinutes", 180));
+
+    @Nullable
+    BuildscriptProject buildscriptProject;
+    @Nullable
+    String buildscriptFingerprint;
+    int invocations = 0;
+    @Nullable
+    volatile Client client;
+
+    BrachyuraDaemon(Path projectDir, List<Path> classpath) {
+        this.projectDir = projectDir;
+        this.classpath = classpath;
+        this.infoFile = infoFile(projectDir);
+    }
+
+    /**
+     * Where a running daemon publishes its port and token
+     */
+    static Path infoFile(Path projectDir) {
+        return projectDir.resolve(".brachyura").resolve("daemon.properties");
+    }
+
+    void run() {
+        // Log entries must reach the client before the exit frame, so they are written by the logging threads themselves
+        if (Configuration.isFrozen()) {
+            Logger.warn("Logging was configured before the daemon started, output of invocations may be cut off");
+        } else {
+            Configuration.set("writingthread", "false");
+        }
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        String token = new BigInteger(130, new SecureRandom()).toString(32);
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleTimeout));
+            Properties info = new Properties();
+            info.setProperty("port", Integer.toString(server.getLocalPort()));
+            info.setProperty("token", token);
+            try (AtomicFile f = new AtomicFile(infoFile)) {
+                try (Writer w = Files.newBufferedWriter(f.tempPath)) {
+                    info.store(w, "Brachyura daemon");
+                }
+                f.commit();
+            }
+            // Output of invocations goes to their client
+            System.setOut(new PrintStream(new Forwarding(OUT, originalOut), true));
+            System.setErr(new PrintStream(new Forwarding(ERR, originalErr), true));
+            Logger.info("Brachyura daemon for {} listening on port {}", projectDir, server.getLocalPort());
+            try {
+                boolean running = true;
+                while (running) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (SocketTimeoutException e) {
+                        Logger.info("Brachyura daemon idle for too long, stopping");
+                        break;
+                    }
+                    try (Socket s = socket) {
+                        running = handle(s, token);
+                    } catch (Exception e) {
+                        Logger.warn("Brachyura daemon connection failed");
+                        Logger.warn(e);
+                    }
+                }
+            } finally {
+                PathUtil.deleteIfExists(infoFile);
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+            }
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * @return Whether to keep running
+     */
+    boolean handle(Socket socket, String token) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (in.readInt() != PROTOCOL_VERSION) {
+            reject(out, "Unsupported daemon protocol version");
+            return true;
+        }
+        if (!token.equals(in.readUTF())) {
+            reject(out, "Invalid daemon token");
+            return true;
+        }
+        int cpCount = in.readInt();
+        ArrayList<Path> clientClasspath = new ArrayList<>(cpCount);
+        for (int i = 0; i < cpCount; i++) clientClasspath.add(Paths.get(in.readUTF()));
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) args[i] = in.readUTF();
+        if (!clientClasspath.equals(classpath)) {
+            reject(out, "The brachyura classpath changed since the daemon was started, it needs to be restarted");
+            return true;
+        }
+        if (args.length == 2 && "daemon".equalsIgnoreCase(args[0]) && "stop".equalsIgnoreCase(args[1])) {
+            Logger.info("Brachyura daemon stopping");
+            exit(out, 0);
+            return false;
+        }
+        Client c = new Client(out);
+        client = c;
+        long start = System.nanoTime();
+        int exitcode;
+        try {
+            exitcode = BrachyuraEntry.run(args, prepare());
+        } catch (Throwable t) {
+            Logger.error("Task Failed");
+            Logger.error(t);
+            exitcode = 1;
+        }
+        Logger.info("Daemon invocation #{} finished in {} ms", ++invocations, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.flush();
+        System.err.flush();
+        client = null;
+        synchronized (c) {
+            exit(out, exitcode);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the buildscript project to use for the next invocation, recreating it if the buildscript changed
+     */
+    BuildscriptProject prepare() {
+        String fingerprint = fingerprintBuildscript();
+        BuildscriptProject b = buildscriptProject;
+        if (b == null || !fingerprint.equals(buildscriptFingerprint)) {
+            if (b != null) Logger.info("Buildscript changed, reloading it");
+            b = new BuildscriptProject();
+            buildscriptProject = b;
+            buildscriptFingerprint = fingerprint;
+            return b;
+        }
+        try {
+            Optional<Project> project = b.project.get();
+            if (project.isPresent()) project.get().invalidate();
+        } catch (RuntimeException e) {
+            buildscriptProject = null;
+            throw e;
+        }
+        return b;
+    }
+
+    /**
+     * Hashes the path, size and modification time of the buildscript sources and properties
+     */
+    String fingerprintBuildscript() {
+        MessageDigest md = MessageDigestUtil.messageDigest(MessageDigestUtil.SHA256);
+        Path buildscript = projectDir.resolve("buildscript");
+        try {
+            Path properties = buildscript.resolve("buildscript.properties");
+            if (Files.exists(properties)) {
+                MessageDigestUtil.update(md, Files.size(properties));
+                MessageDigestUtil.update(md, Files.getLastModifiedTime(properties).toMillis());
+            }
+            Path src = buildscript.resolve("src");
+            if (Files.isDirectory(src)) {
+                try (Stream<Path> files = Files.walk(src)) {
+                    for (Path f : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                        MessageDigestUtil.update(md, f.toString());
+                        MessageDigestUtil.update(md, Files.size(f));
+                        MessageDigestUtil.update(md, Files.getLastModifiedTime(f).toMillis());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+        return MessageDigestUtil.toHexHash(md.digest());
+    }
+
+    static void reject(DataOutputStream out, String reason) throws IOException {
+        Logger.warn("Rejected daemon invocation: {}", reason);
+        out.writeByte(REJECTED);
+        out.writeUTF(reason);
+        out.flush();
+    }
+
+    static void exit(DataOutputStream out, int exitcode) throws IOException {
+        out.writeByte(EXIT);
+        out.writeInt(exitcode);
+        out.flush();
+    }
+
+    static final class Client {
+        final DataOutputStream out;
+        /**
+         * Written while holding the lock on the client, read without it
+         */
+        volatile boolean broken = false;
+
+        Client(DataOutputStream out) {
+            this.out = out;
+        }
+    }
+
+    /**
+     * Sends output to the current client, or to the daemon's own console when there is none
+     */
+    final class Forwarding extends OutputStream {
+        final int type;
+        final PrintStream fallback;
+
+        Forwarding(int type, PrintStream fallback) {
+            this.type = type;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            Client c = client;
+            if (c != null) {
+                synchronized (c) {
+                    if (!c.broken) {
+                        try {
+                            c.out.writeByte(type);
+                            c.out.writeInt(len);
+                            c.out.write(b, off, len);
+                        } catch (IOException e) {
+                            // Client went away, the invocation still runs to completion
+                            c.broken = true;
+                        }
+                    }
+                }
+                if (!c.broken) return;
+            }
+            fallback.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            Client c = client;
+            if (c != null) {
+                synchronized (c) {
+                    try {
+                        if (!c.broken) c.out.flush();
+                    } catch (IOException e) {
+                        c.broken = true;
+                    }
+                }
+            }
+            fallback.flush();
+        }
+    }
+}
@@ -128,13 +128,29 @@ public class BrachyuraEntry {
         }
         EntryGlobals.setProjectDir(projectDir);
         EntryGlobals.setCompileDependencies(classpath);
+        if (args.length != 0 && args[0].equalsIgnoreCase("daemon")) {
+            new BrachyuraDaemon(projectDir, classpath).run();
+            BackgroundTasks.awaitAll();
+            System.exit(0);
+        }
+        int exitcode = run(args, new BuildscriptProject());
+        // Exiting would kill them
+        BackgroundTasks.awaitAll();
+        System.exit(exitcode);
+    }
+
+    /**
+     * Runs the task named by the arguments, or lists the available tasks.
+     *
+     * @return The exit code
+     */
+    static int run(String[] args, BuildscriptProject buildscriptProject) {
         int exitcode = 0;
         List<@NotNull Plugin> plugins = Plugins.getPlugins();
         for (Plugin plugin : plugins) {
             plugin.onEntry();
         }
         try {
-            BuildscriptProject buildscriptProject = new BuildscriptProject();
             // Slbrachyura start: Improved task system
             if (args.length >= 1 && "buildscript".equalsIgnoreCase(args[0])) {
                 boolean searchingTasks = true;
@@ -202,6 +218,6 @@ public class BrachyuraEntry {
         for (Plugin plugin : plugins) {
             plugin.onExit();
         }
-        System.exit(exitcode);
+        return exitcode;
     }
 }
@@ -148,7 +148,8 @@ class BuildscriptProject extends BaseJavaProject {
             JavaCompilationResult compilation = getCompileOptions().commit(new JavaCompilation()
                 .addSourceDir(getSrcDir())
                 .addClasspath(getCompileDependencies())
-                .addOption(JvmUtil.compileArgs(JvmUtil.CURRENT_JAVA_VERSION, javaVersion)))
+                .addOption(JvmUtil.compileArgs(JvmUtil.CURRENT_JAVA_VERSION, javaVersion))
+                .setOutputCache(getLocalBrachyuraPath().resolve("compilation-cache")))
                 .compile();
             BuildscriptClassloader r = new BuildscriptClassloader(BuildscriptProject.class.getClassLoader());
             compilation.getInputs(r);
@@ -46,6 +46,14 @@ public abstract class Project { // Slbrachyura: Make the Project class abstract
         // Slbrachyura end
     }
 
+    /**
+     * Called by the daemon before this instance is reused for another invocation. Everything derived from the
+     * project's own sources and resources has to be dropped here; state that only depends on the buildscript,
+     * such as resolved dependencies, can be kept warm. The instance is discarded whenever the buildscript changes.
+     */
+    public void invalidate() {
+    }
+
     @NotNull
     public Path getProjectDir() {
         return EntryGlobals.getProjectDir();
@@ -1,6 +1,8 @@
 package io.github.coolcrabs.brachyura.project.java;
 
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -22,6 +24,13 @@ public abstract class BuildModule {
     @NotNull
     public abstract Path getModuleRoot();
 
+    /**
+     * @return The modules whose outputs this module is compiled against
+     */
+    protected List<BuildModule> getModuleDependencies() {
+        return Collections.emptyList();
+    }
+
     public final Lazy<ProcessingSource> compilationOutput = new Lazy<>(this::createCompilationOutput);
     protected abstract ProcessingSource createCompilationOutput();
 
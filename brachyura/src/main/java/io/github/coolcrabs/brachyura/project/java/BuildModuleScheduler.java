@@ -0,0 +1,112 @@
+package io.github.coolcrabs.brachyura.project.java;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.coolcrabs.brachyura.util.Util;
+
+/**
+ * Computes the {@link BuildModule#compilationOutput compilation outputs} of modules and all modules they depend on,
+ * compiling every module as soon as its dependencies are done. Independent modules are compiled concurrently,
+ * each by its own javac task and file manager.
+ */
+public final class BuildModuleScheduler {
+    private BuildModuleScheduler() { }
+
+    public static void compile(Collection<? extends BuildModule> modules) {
+        compile(modules, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism The maximum number of modules compiled at once
+     */
+    public static void compile(Collection<? extends BuildModule> modules, int parallelism) {
+        // Dependencies come before their dependents
+        LinkedHashMap<BuildModule, List<BuildModule>> order = new LinkedHashMap<>();
+        for (BuildModule m : modules) {
+            visit(m, order, new HashSet<>());
+        }
+        if (order.size() <= 1 || parallelism <= 1) {
+            for (BuildModule m : order.keySet()) m.compilationOutput.get();
+            return;
+        }
+        HashMap<BuildModule, Integer> pending = new HashMap<>();
+        HashMap<BuildModule, List<BuildModule>> dependents = new HashMap<>();
+        for (Map.Entry<BuildModule, List<BuildModule>> e : order.entrySet()) {
+            BuildModule m = e.getKey();
+            pending.put(m, e.getValue().size());
+            for (BuildModule dep : e.getValue()) {
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>()).add(m);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, order.size()), r -> {
+            Thread t = new Thread(r, "Brachyura module compiler");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ExecutorCompletionService<BuildModule> completion = new ExecutorCompletionService<>(executor);
+            Map<Future<BuildModule>, BuildModule> running = new HashMap<>();
+            for (BuildModule m : order.keySet()) {
+                if (pending.get(m) == 0) running.put(submit(completion, m), m);
+            }
+            Throwable failure = null;
+            while (!running.isEmpty()) {
+                Future<BuildModule> done = completion.take();
+                BuildModule m = running.remove(done);
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    // Let the modules already being compiled finish, but don't start any new ones
+                    if (failure == null) failure = e.getCause();
+                    continue;
+                }
+                if (failure != null) continue;
+                for (BuildModule dependent : dependents.getOrDefault(m, new ArrayList<>())) {
+                    int left = pending.get(dependent) - 1;
+                    pending.put(dependent, left);
+                    if (left == 0) running.put(submit(completion, dependent), dependent);
+                }
+            }
+            if (failure != null) throw Util.sneak(failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Util.sneak(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static Future<BuildModule> submit(ExecutorCompletionService<BuildModule> completion, BuildModule m) {
+        return completion.submit(() -> {
+            m.compilationOutput.get();
+            return m;
+        });
+    }
+
+    /**
+     * Adds the module after all its dependencies, asking every module for its dependencies only once
+     */
+    static void visit(BuildModule m, LinkedHashMap<BuildModule, List<BuildModule>> order, HashSet<BuildModule> path) {
+        if (order.containsKey(m)) return;
+        if (!path.add(m)) {
+            throw new IllegalStateException("Circular module dependency: " + m.getModuleName());
+        }
+        List<BuildModule> deps = m.getModuleDependencies();
+        for (BuildModule dep : deps) {
+            visit(dep, order, path);
+        }
+        path.remove(m);
+        order.put(m, deps);
+    }
+}
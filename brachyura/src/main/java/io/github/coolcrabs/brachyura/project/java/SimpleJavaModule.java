@@ -2,12 +2,12 @@ package io.github.coolcrabs.brachyura.project.java;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilation;
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilationResult;
@@ -26,10 +26,6 @@ public abstract class SimpleJavaModule extends BuildModule {
     @NotNull
     protected abstract List<JavaJarDependency> createDependencies();
 
-    protected List<BuildModule> getModuleDependencies() {
-        return Collections.emptyList();
-    }
-
     public List<Path> getCompileDependencies() {
         List<JavaJarDependency> deps = dependencies.get();
         ArrayList<Path> result = new ArrayList<>(deps.size());
@@ -53,13 +49,43 @@ public abstract class SimpleJavaModule extends BuildModule {
         JavaCompilation r = new JavaCompilation()
             .addSourceDir(getSrcDirs())
             .addClasspath(getCompileDependencies())
-            .addOption(JvmUtil.compileArgs(JvmUtil.CURRENT_JAVA_VERSION, getJavaVersion()));
-        for (BuildModule m : getModuleDependencies()) {
+            .addOption(JvmUtil.compileArgs(JvmUtil.CURRENT_JAVA_VERSION, getJavaVersion()))
+            .setIncremental(getIncrementalCompilationState())
+            .setOutputCache(getCompilationOutputCache());
+        List<BuildModule> moduleDependencies = getModuleDependencies();
+        BuildModuleScheduler.compile(moduleDependencies);
+        for (BuildModule m : moduleDependencies) {
             r.addClasspath(m.compilationOutput.get());
         }
         return r;
     }
 
+    /**
+     * Incremental compilation is off by default, override this to opt in, for example with
+     * {@link #getDefaultIncrementalCompilationState()}.
+     *
+     * @return Where {@link JavaCompilation#setIncremental(Path) incremental compilation} keeps its state between builds,
+     * or null to always compile all sources
+     */
+    @Nullable
+    protected Path getIncrementalCompilationState() {
+        return null;
+    }
+
+    @NotNull
+    protected final Path getDefaultIncrementalCompilationState() {
+        return getModuleRoot().resolve(".brachyura").resolve("incremental").resolve(getModuleName() + ".bin");
+    }
+
+    /**
+     * @return Where the {@link JavaCompilation#setOutputCache(Path) outputs of recent compilations} are kept,
+     * or null to not keep them
+     */
+    @Nullable
+    protected Path getCompilationOutputCache() {
+        return getModuleRoot().resolve(".brachyura").resolve("compilation-cache").resolve(getModuleName());
+    }
+
     @SuppressWarnings("null")
     @Override
     @NotNull
@@ -54,6 +54,11 @@ public abstract class SimpleJavaProject extends BaseJavaProject {
         return new SimpleJavaProjectModule();
     }
 
+    @Override
+    public void invalidate() {
+        projectModule.invalidate();
+    }
+
     public ProcessorChain getResourceProcessorChain() {
         return new ProcessorChain();
     }
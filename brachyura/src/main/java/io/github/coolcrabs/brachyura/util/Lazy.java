@@ -31,4 +31,18 @@ public class Lazy<T> implements Supplier<T> {
         return value;
     }
 
+    /**
+     * @return Whether the value has been computed and not {@link #invalidate() invalidated} since
+     */
+    public boolean isComputed() {
+        return value != null;
+    }
+
+    /**
+     * Forgets the value so that the next {@link #get()} computes it again.
+     */
+    public synchronized void invalidate() {
+        value = null;
+    }
+
 }
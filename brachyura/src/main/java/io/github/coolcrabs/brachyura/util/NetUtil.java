@@ -18,6 +18,12 @@ import org.jetbrains.annotations.Nullable;
 import org.tinylog.Logger;
 
 public class NetUtil {
+    /**
+     * Timeouts of all connections opened by brachyura, so that a stalled server fails the same way on every JVM.
+     */
+    public static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    public static final int READ_TIMEOUT_MILLIS = 60_000;
+
     private NetUtil() { }
 
     public static URL url(String url) {
@@ -39,8 +45,7 @@ public class NetUtil {
     public static InputStream inputStream(URL url) {
         try {
             URLConnection con = url.openConnection();
-            con.addRequestProperty("User-Agent", "brachyura");
-            con.addRequestProperty("Accept-Encoding", "gzip");
+            configure(con);
             long size = con.getContentLengthLong();
             Logger.info("Downloading {} ({})", url, size == -1 ? "unknown size" : humanReadableByteCountSI(size));
             if ("gzip".equals(con.getContentEncoding())) {
@@ -53,6 +58,16 @@ public class NetUtil {
         }
     }
     
+    /**
+     * Sets the headers and timeouts that all downloads share on a connection that was not connected yet
+     */
+    public static void configure(URLConnection con) {
+        con.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        con.setReadTimeout(READ_TIMEOUT_MILLIS);
+        con.addRequestProperty("User-Agent", "brachyura");
+        con.addRequestProperty("Accept-Encoding", "gzip");
+    }
+
     // https://stackoverflow.com/a/3758880
     public static String humanReadableByteCountSI(long bytes) {
         if (-1000 < bytes && bytes < 1000) {
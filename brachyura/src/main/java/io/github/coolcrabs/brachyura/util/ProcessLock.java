@@ -0,0 +1,42 @@
+package io.github.coolcrabs.brachyura.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An exclusive lock on a file that is shared between processes. Blocks until the lock is obtained.
+ *
+ * <p>Locks are held on behalf of the whole JVM, so threads of the same process must not lock the same file at once;
+ * guard it with an in-process lock as well. The lock file itself is left behind, as deleting it would race with other
+ * processes that are about to lock it.
+ */
+public class ProcessLock implements AutoCloseable {
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    public ProcessLock(@NotNull Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.getParent());
+        this.channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            this.lock = channel.lock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,21 +1,90 @@
 package io.github.coolcrabs.brachyura.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Writer;
 
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 public class XmlUtil {
+    // Factories are not guaranteed to be thread safe
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
     private XmlUtil() {
     }
 
+    /**
+     * Creates a pull parser that neither loads DTDs nor external entities
+     */
+    @NotNull
+    public static XMLStreamReader newStreamReader(InputStream in) throws XMLStreamException {
+        return INPUT_FACTORY.get().createXMLStreamReader(in);
+    }
+
+    /**
+     * Moves to the next child element of the current element, skipping text and comments.
+     *
+     * @return True if positioned at the start of the child, false if positioned at the end of the current element
+     */
+    public static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) return true;
+            if (event == XMLStreamConstants.END_ELEMENT) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Reads all text inside the current element, including the text of nested elements, and moves to its end
+     */
+    @NotNull
+    public static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Moves to the end of the current element
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
     @NotNull
     @Contract(pure = true, value = "!null -> new")
     public static FormattedXMLStreamWriter newStreamWriter(Writer writer) {
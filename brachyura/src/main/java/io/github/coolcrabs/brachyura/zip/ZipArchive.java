@@ -0,0 +1,431 @@
+package io.github.coolcrabs.brachyura.zip;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import io.github.coolcrabs.brachyura.util.Util;
+
+/**
+ * A read-only view of a zip file which gives access to the raw (still compressed) data of the entries
+ * alongside of the usual inflating streams. The central directory is parsed once when the archive is opened.
+ * All methods are thread safe.
+ *
+ * <p>Archives are memory mapped, except for those over 2GiB which are read through a {@link FileChannel}.
+ * The mapping is released by the garbage collector once the archive and all buffers handed out are unreachable.
+ * Windows does not allow replacing or deleting a file while it is mapped, so there archives are always read through
+ * a channel which is closed with the archive.
+ */
+public class ZipArchive implements Closeable {
+    static final int LOCAL_HEADER_SIG = 0x04034b50;
+    static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    static final int END_SIG = 0x06054b50;
+    static final int ZIP64_END_SIG = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    static final boolean MAP = !System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH).startsWith("windows");
+
+    final Path file;
+    final long size;
+    // Exactly one of these is set
+    @Nullable final ByteBuffer map;
+    @Nullable final FileChannel channel;
+    final List<Entry> entries;
+    final HashMap<String, Entry> byName;
+    volatile boolean closed = false;
+
+    public ZipArchive(@NotNull Path file) {
+        this(file, MAP);
+    }
+
+    ZipArchive(@NotNull Path file, boolean map) {
+        this.file = file;
+        try {
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                this.size = ch.size();
+                if (map && size <= Integer.MAX_VALUE) {
+                    this.map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    this.channel = null;
+                    ch.close(); // The mapping stays valid
+                } else {
+                    this.map = null;
+                    this.channel = ch;
+                }
+                this.entries = Collections.unmodifiableList(readCentralDirectory());
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+        this.byName = new HashMap<>(entries.size() * 2);
+        for (Entry e : entries) {
+            byName.putIfAbsent(e.name, e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return All entries, in the order of the central directory
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Nullable
+    public Entry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Opens a stream over the uncompressed contents of the entry.
+     */
+    public InputStream getInputStream(Entry entry) {
+        InputStream raw = openRaw(entry);
+        switch (entry.method) {
+            case STORED:
+                return raw;
+            case DEFLATED:
+                return new InflaterInputStream(raw, new Inflater(true), 8192) {
+                    boolean closed = false;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            inf.end();
+                            super.close();
+                        }
+                    }
+                };
+            default:
+                throw Util.sneak(new ZipException("Unsupported compression method " + entry.method + " of " + entry.name + " in " + file));
+        }
+    }
+
+    /**
+     * The compressed data of the entry; for {@link #STORED} entries this is the content itself.
+     * The buffer is read-only and, unless the archive is too large to be mapped, a view of the mapping.
+     */
+    public ByteBuffer getRawData(Entry entry) {
+        try {
+            if (entry.compressedSize > Integer.MAX_VALUE) throw new ZipException(entry + " is too large");
+            return read(entry.getDataOffset(), (int) entry.compressedSize).asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * Copies the compressed data of the entry as-is.
+     */
+    public void transferRaw(Entry entry, OutputStream out) {
+        try (InputStream in = openRaw(entry)) {
+            byte[] buffer = new byte[(int) Math.min(entry.compressedSize, 65536L) + 1];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    InputStream openRaw(Entry entry) {
+        if (map != null) {
+            return new ByteBufferInputStream(getRawData(entry));
+        }
+        ensureOpen();
+        return new ChannelInputStream(entry.getDataOffset(), entry.compressedSize);
+    }
+
+    void ensureOpen() {
+        if (closed) throw Util.sneak(new ClosedChannelException());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw Util.sneak(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ZipArchive [file=" + file + "]";
+    }
+
+    void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = Objects.requireNonNull(channel).read(buffer, position);
+            if (read < 0) throw new EOFException("Unexpected end of " + file);
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    ByteBuffer read(long position, int size) throws IOException {
+        ensureOpen();
+        if (position < 0 || position + size > this.size) throw new EOFException("Unexpected end of " + file);
+        if (map != null) {
+            ByteBuffer b = map.duplicate();
+            b.position((int) position);
+            b.limit((int) position + size);
+            return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(b, position);
+        return b;
+    }
+
+    List<Entry> readCentralDirectory() throws IOException {
+        int tailSize = (int) Math.min(size, END_SIZE + 0xFFFF);
+        ByteBuffer tail = read(size - tailSize, tailSize);
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailSize) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) throw new ZipException("End of central directory not found in " + file);
+        long count = tail.getShort(end + 10) & 0xFFFF;
+        long cdSize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long cdOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+            long locator = size - tailSize + end - ZIP64_LOCATOR_SIZE;
+            if (locator >= 0) {
+                ByteBuffer loc = read(locator, ZIP64_LOCATOR_SIZE);
+                if (loc.getInt(0) == ZIP64_LOCATOR_SIG) {
+                    ByteBuffer end64 = read(loc.getLong(8), 56);
+                    if (end64.getInt(0) != ZIP64_END_SIG) throw new ZipException("Invalid zip64 end of central directory in " + file);
+                    count = end64.getLong(32);
+                    cdSize = end64.getLong(40);
+                    cdOffset = end64.getLong(48);
+                }
+            }
+        }
+        if (cdSize > Integer.MAX_VALUE) throw new ZipException("Central directory of " + file + " is too large");
+        ByteBuffer cd = read(cdOffset, (int) cdSize);
+        ArrayList<Entry> r = new ArrayList<>((int) Math.min(count, 1 << 16));
+        int p = 0;
+        while (p + CENTRAL_HEADER_SIZE <= cd.limit() && cd.getInt(p) == CENTRAL_HEADER_SIG) {
+            int flags = cd.getShort(p + 8) & 0xFFFF;
+            int method = cd.getShort(p + 10) & 0xFFFF;
+            int dosTime = cd.getInt(p + 12);
+            int crc = cd.getInt(p + 16);
+            long csize = cd.getInt(p + 20) & 0xFFFFFFFFL;
+            long usize = cd.getInt(p + 24) & 0xFFFFFFFFL;
+            int nameLen = cd.getShort(p + 28) & 0xFFFF;
+            int extraLen = cd.getShort(p + 30) & 0xFFFF;
+            int commentLen = cd.getShort(p + 32) & 0xFFFF;
+            long offset = cd.getInt(p + 42) & 0xFFFFFFFFL;
+            byte[] nameBytes = new byte[nameLen];
+            cd.position(p + CENTRAL_HEADER_SIZE);
+            cd.get(nameBytes);
+            int extra = p + CENTRAL_HEADER_SIZE + nameLen;
+            int extraEnd = extra + extraLen;
+            while (extra + 4 <= extraEnd) {
+                int id = cd.getShort(extra) & 0xFFFF;
+                int len = cd.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA_ID) {
+                    int q = extra + 4;
+                    if (usize == 0xFFFFFFFFL) {
+                        usize = cd.getLong(q);
+                        q += 8;
+                    }
+                    if (csize == 0xFFFFFFFFL) {
+                        csize = cd.getLong(q);
+                        q += 8;
+                    }
+                    if (offset == 0xFFFFFFFFL) {
+                        offset = cd.getLong(q);
+                    }
+                }
+                extra += 4 + len;
+            }
+            r.add(new Entry(new String(nameBytes, StandardCharsets.UTF_8), flags, method, dosTime, crc, csize, usize, offset));
+            p = extraEnd + commentLen;
+        }
+        return r;
+    }
+
+    /**
+     * An entry of the archive. As a {@link Supplier} it opens a new stream over the uncompressed contents,
+     * which lets sinks recognize entries that are passed on unchanged.
+     */
+    public final class Entry implements Supplier<InputStream> {
+        @NotNull
+        public final String name;
+        public final int flags;
+        public final int method;
+        public final int dosTime;
+        public final int crc;
+        public final long compressedSize;
+        public final long size;
+        public final long localHeaderOffset;
+        private volatile long dataOffset = -1;
+
+        Entry(@NotNull String name, int flags, int method, int dosTime, int crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public ZipArchive getArchive() {
+            return ZipArchive.this;
+        }
+
+        @Override
+        public InputStream get() {
+            return getInputStream(this);
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * Whether the raw data of this entry can be copied into another archive without re-compressing it.
+         */
+        public boolean isRawCopyable() {
+            return (flags & 1) == 0 && (method == STORED || method == DEFLATED);
+        }
+
+        long getDataOffset() {
+            long r = dataOffset;
+            if (r < 0) {
+                try {
+                    ByteBuffer h = read(localHeaderOffset, LOCAL_HEADER_SIZE);
+                    if (h.getInt(0) != LOCAL_HEADER_SIG) throw new ZipException("Invalid local header for " + name + " in " + file);
+                    r = localHeaderOffset + LOCAL_HEADER_SIZE + (h.getShort(26) & 0xFFFF) + (h.getShort(28) & 0xFFFF);
+                } catch (IOException e) {
+                    throw Util.sneak(e);
+                }
+                dataOffset = r;
+            }
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry [name=" + name + ", archive=" + file + "]";
+        }
+    }
+
+    class ChannelInputStream extends InputStream {
+        long position;
+        final long end;
+
+        ChannelInputStream(long position, long length) {
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) return -1;
+            int toRead = (int) Math.min(len, end - position);
+            int read = Objects.requireNonNull(channel).read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read < 0) throw new EOFException("Unexpected end of " + file);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            int toRead = Math.min(len, buffer.remaining());
+            buffer.get(b, off, toRead);
+            return toRead;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package io.github.coolcrabs.brachyura.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import io.github.coolcrabs.brachyura.util.ByteArrayOutputStreamEx;
+import io.github.coolcrabs.brachyura.util.Util;
+
+/**
+ * Writes zip files entry by entry. Every entry gets the same timestamp and no extra metadata,
+ * so equal inputs always result in equal bytes.
+ *
+ * <p>Entries are compressed in memory before being written so the local headers can carry the real sizes;
+ * entries of a {@link ZipArchive} can also be copied over without being decompressed at all.
+ */
+public class ZipWriter implements Closeable {
+    // 1980-02-01 00:00:00
+    // https://github.com/gradle/gradle/blob/master/subprojects/core/src/main/java/org/gradle/api/internal/file/archive/ZipCopyAction.java
+    public static final int MAGIC_DOS_TIME = ((0 << 9) | (2 << 5) | 1) << 16;
+
+    static final int FLAG_UTF8 = 0x800;
+    static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    final CountingOutputStream out;
+    final ArrayList<Written> written = new ArrayList<>();
+    final Compressor compressor;
+    boolean closed = false;
+
+    public ZipWriter(OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level The {@link Deflater} level for new entries; {@link Deflater#NO_COMPRESSION} stores them uncompressed
+     */
+    public ZipWriter(OutputStream out, int level) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 65536));
+        this.compressor = new Compressor(level);
+    }
+
+    /**
+     * Compresses and writes an entry, consuming (but not closing) the stream.
+     */
+    public void putEntry(String name, InputStream in) {
+        putCompressed(name, compressor.compress(name, in));
+    }
+
+    /**
+     * Writes an entry compressed earlier, possibly on another thread, by a {@link Compressor}.
+     */
+    public void putCompressed(String name, Compressed compressed) {
+        try {
+            writeEntry(name, compressed.method, compressed.crc, compressed.data.size(), compressed.size, null);
+            out.write(compressed.data.buf(), 0, compressed.data.size());
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * Copies the compressed data of an entry of another archive.
+     * The caller must make sure the entry {@link ZipArchive.Entry#isRawCopyable() can be copied}.
+     */
+    public void putRawEntry(String name, ZipArchive.Entry entry) {
+        try {
+            if (!entry.isRawCopyable()) throw new ZipException("Can't copy " + entry);
+            writeEntry(name, entry.method, entry.crc, entry.compressedSize, entry.size, entry);
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    void writeEntry(String name, int method, int crc, long compressedSize, long size, ZipArchive.Entry raw) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        Written w = new Written(nameBytes, method, crc, compressedSize, size, out.count);
+        boolean zip64 = w.needsZip64Sizes();
+        LittleEndian h = new LittleEndian(30 + nameBytes.length + (zip64 ? 20 : 0));
+        h.int32(ZipArchive.LOCAL_HEADER_SIG);
+        h.int16(zip64 ? 45 : w.version());
+        h.int16(FLAG_UTF8);
+        h.int16(method);
+        h.int32(MAGIC_DOS_TIME);
+        h.int32(crc);
+        h.int32(zip64 ? ZIP64_MAGIC : compressedSize);
+        h.int32(zip64 ? ZIP64_MAGIC : size);
+        h.int16(nameBytes.length);
+        h.int16(zip64 ? 20 : 0);
+        h.bytes(nameBytes);
+        if (zip64) {
+            h.int16(ZipArchive.ZIP64_EXTRA_ID);
+            h.int16(16);
+            h.int64(size);
+            h.int64(compressedSize);
+        }
+        h.writeTo(out);
+        if (raw != null) {
+            raw.getArchive().transferRaw(raw, out);
+        }
+        written.add(w);
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            compressor.close();
+            long cdOffset = out.count;
+            for (Written w : written) {
+                boolean zip64Sizes = w.needsZip64Sizes();
+                boolean zip64Offset = w.offset >= ZIP64_MAGIC;
+                int extraLen = (zip64Sizes ? 16 : 0) + (zip64Offset ? 8 : 0);
+                LittleEndian h = new LittleEndian(46 + w.name.length + (extraLen > 0 ? 4 + extraLen : 0));
+                int version = extraLen > 0 ? 45 : w.version();
+                h.int32(ZipArchive.CENTRAL_HEADER_SIG);
+                h.int16(version);
+                h.int16(version);
+                h.int16(FLAG_UTF8);
+                h.int16(w.method);
+                h.int32(MAGIC_DOS_TIME);
+                h.int32(w.crc);
+                h.int32(zip64Sizes ? ZIP64_MAGIC : w.compressedSize);
+                h.int32(zip64Sizes ? ZIP64_MAGIC : w.size);
+                h.int16(w.name.length);
+                h.int16(extraLen > 0 ? 4 + extraLen : 0);
+                h.int16(0); // Comment
+                h.int16(0); // Disk
+                h.int16(0); // Internal attributes
+                h.int32(0); // External attributes
+                h.int32(zip64Offset ? ZIP64_MAGIC : w.offset);
+                h.bytes(w.name);
+                if (extraLen > 0) {
+                    h.int16(ZipArchive.ZIP64_EXTRA_ID);
+                    h.int16(extraLen);
+                    if (zip64Sizes) {
+                        h.int64(w.size);
+                        h.int64(w.compressedSize);
+                    }
+                    if (zip64Offset) {
+                        h.int64(w.offset);
+                    }
+                }
+                h.writeTo(out);
+            }
+            long cdEnd = out.count;
+            long cdSize = cdEnd - cdOffset;
+            int count = written.size();
+            boolean zip64 = count >= 0xFFFF || cdSize >= ZIP64_MAGIC || cdOffset >= ZIP64_MAGIC;
+            if (zip64) {
+                LittleEndian h = new LittleEndian(56 + ZipArchive.ZIP64_LOCATOR_SIZE);
+                h.int32(ZipArchive.ZIP64_END_SIG);
+                h.int64(44);
+                h.int16(45);
+                h.int16(45);
+                h.int32(0);
+                h.int32(0);
+                h.int64(count);
+                h.int64(count);
+                h.int64(cdSize);
+                h.int64(cdOffset);
+                h.int32(ZipArchive.ZIP64_LOCATOR_SIG);
+                h.int32(0);
+                h.int64(cdEnd);
+                h.int32(1);
+                h.writeTo(out);
+            }
+            LittleEndian h = new LittleEndian(ZipArchive.END_SIZE);
+            h.int32(ZipArchive.END_SIG);
+            h.int16(0);
+            h.int16(0);
+            h.int16(zip64 ? 0xFFFF : count);
+            h.int16(zip64 ? 0xFFFF : count);
+            h.int32(zip64 ? ZIP64_MAGIC : cdSize);
+            h.int32(zip64 ? ZIP64_MAGIC : cdOffset);
+            h.int16(0);
+            h.writeTo(out);
+            out.close();
+        } catch (IOException e) {
+            throw Util.sneak(e);
+        }
+    }
+
+    /**
+     * The contents of an entry, ready to be written by {@link #putCompressed(String, Compressed)}.
+     */
+    public static final class Compressed {
+        final int method;
+        final int crc;
+        final long size;
+        final ByteArrayOutputStreamEx data;
+
+        Compressed(int method, int crc, long size, ByteArrayOutputStreamEx data) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Compresses entries independently of any writer, so several of them can be compressed at once.
+     * Each entry is its own deflate stream, so the result does not depend on which compressor produced it.
+     * Instances are not thread safe.
+     */
+    public static final class Compressor implements Closeable {
+        final Deflater deflater;
+        final CRC32 crc = new CRC32();
+        final byte[] readBuffer = new byte[16384];
+        final byte[] deflateBuffer = new byte[16384];
+
+        public Compressor() {
+            this(Deflater.DEFAULT_COMPRESSION);
+        }
+
+        /**
+         * @param level The {@link Deflater} level; {@link Deflater#NO_COMPRESSION} produces stored entries
+         */
+        public Compressor(int level) {
+            if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+                throw new IllegalArgumentException("Invalid compression level " + level);
+            }
+            // Stored entries skip the deflater entirely
+            this.deflater = level == Deflater.NO_COMPRESSION ? null : new Deflater(level, true);
+        }
+
+        /**
+         * Compresses the contents of an entry, consuming (but not closing) the stream.
+         */
+        public Compressed compress(String name, InputStream in) {
+            try {
+                if (name.endsWith("/")) {
+                    while (in.read(readBuffer) != -1) {
+                        // Directories have no contents
+                    }
+                    return new Compressed(ZipArchive.STORED, 0, 0, new ByteArrayOutputStreamEx());
+                }
+                crc.reset();
+                ByteArrayOutputStreamEx buffer = new ByteArrayOutputStreamEx();
+                long size = 0;
+                int read;
+                if (deflater == null) {
+                    while ((read = in.read(readBuffer)) != -1) {
+                        crc.update(readBuffer, 0, read);
+                        size += read;
+                        buffer.write(readBuffer, 0, read);
+                    }
+                    return new Compressed(ZipArchive.STORED, (int) crc.getValue(), size, buffer);
+                }
+                deflater.reset();
+                while ((read = in.read(readBuffer)) != -1) {
+                    crc.update(readBuffer, 0, read);
+                    size += read;
+                    deflater.setInput(readBuffer, 0, read);
+                    while (!deflater.needsInput()) {
+                        int len = deflater.deflate(deflateBuffer);
+                        buffer.write(deflateBuffer, 0, len);
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int len = deflater.deflate(deflateBuffer);
+                    buffer.write(deflateBuffer, 0, len);
+                }
+                return new Compressed(ZipArchive.DEFLATED, (int) crc.getValue(), size, buffer);
+            } catch (IOException e) {
+                throw Util.sneak(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (deflater != null) deflater.end();
+        }
+    }
+
+    static final class Written {
+        final byte[] name;
+        final int method;
+        final int crc;
+        final long compressedSize;
+        final long size;
+        final long offset;
+
+        Written(byte[] name, int method, int crc, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        boolean needsZip64Sizes() {
+            return compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC;
+        }
+
+        int version() {
+            return method == ZipArchive.DEFLATED ? 20 : 10;
+        }
+    }
+
+    static final class LittleEndian {
+        final byte[] b;
+        int p = 0;
+
+        LittleEndian(int size) {
+            b = new byte[size];
+        }
+
+        void int16(int v) {
+            b[p++] = (byte) v;
+            b[p++] = (byte) (v >>> 8);
+        }
+
+        void int32(long v) {
+            int16((int) v);
+            int16((int) (v >>> 16));
+        }
+
+        void int64(long v) {
+            int32(v);
+            int32(v >>> 32);
+        }
+
+        void bytes(byte[] v) {
+            System.arraycopy(v, 0, b, p, v.length);
+            p += v.length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(b, 0, p);
+        }
+    }
+
+    static final class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
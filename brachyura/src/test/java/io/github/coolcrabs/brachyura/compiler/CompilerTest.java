@@ -1,14 +1,30 @@
 package io.github.coolcrabs.brachyura.compiler;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.github.coolcrabs.brachyura.TestUtil;
+import io.github.coolcrabs.brachyura.compiler.java.CompilationFailedException;
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilation;
 import io.github.coolcrabs.brachyura.compiler.java.JavaCompilationResult;
 import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
@@ -16,6 +32,7 @@ import io.github.coolcrabs.brachyura.maven.HttpMavenRepository;
 import io.github.coolcrabs.brachyura.maven.MavenId;
 import io.github.coolcrabs.brachyura.maven.MavenResolver;
 import io.github.coolcrabs.brachyura.processing.sources.ProcessingSponge;
+import io.github.coolcrabs.brachyura.util.StreamUtil;
 
 class CompilerTest {
     @Test
@@ -87,4 +104,109 @@ class CompilerTest {
             });
         }
     }
+
+    @Test
+    void incremental(@TempDir Path tmp) throws IOException {
+        Path src = tmp.resolve("src");
+        Path state = tmp.resolve("state.bin");
+        Files.createDirectories(src.resolve("pkg"));
+        Files.write(src.resolve("pkg/A.java"), "package pkg; public class A { public static int f() { return 1; } }".getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("pkg/B.java"), "package pkg; class B { int g() { return A.f() + K.X; } class Inner { } }".getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("pkg/C.java"), "package pkg; class C { }".getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("pkg/K.java"), "package pkg; class K { static final int X = 1; }".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> first = outputs(new JavaCompilation().addSourceDir(src).setIncremental(state).compile(), src);
+        assertEquals(5, first.size());
+        assertTrue(Files.exists(state));
+        // Only C changes
+        Files.write(src.resolve("pkg/C.java"), "package pkg; class C { int h() { return 0; } }".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> second = outputs(new JavaCompilation().addSourceDir(src).setIncremental(state).compile(), src);
+        assertEquals(first.keySet(), second.keySet());
+        assertArrayEquals(first.get("pkg/B$Inner.class"), second.get("pkg/B$Inner.class"));
+        assertFalse(Arrays.equals(first.get("pkg/C.class"), second.get("pkg/C.class")));
+        // B depends on A, so it has to be recompiled (and fail) when A loses a method
+        Files.write(src.resolve("pkg/A.java"), "package pkg; public class A { }".getBytes(StandardCharsets.UTF_8));
+        assertThrows(CompilationFailedException.class, () -> new JavaCompilation().addSourceDir(src).setIncremental(state).compile());
+        // Inlined constants still reach B
+        Files.write(src.resolve("pkg/A.java"), "package pkg; public class A { public static int f() { return 1; } }".getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("pkg/K.java"), "package pkg; class K { static final int X = 2; }".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> third = outputs(new JavaCompilation().addSourceDir(src).setIncremental(state).compile(), src);
+        Map<String, byte[]> full = outputs(new JavaCompilation().addSourceDir(src).compile(), src);
+        assertEquals(full.keySet(), third.keySet());
+        for (String k : full.keySet()) {
+            assertArrayEquals(full.get(k), third.get(k), k);
+        }
+    }
+
+    @Test
+    void outputCache(@TempDir Path tmp) throws IOException {
+        Path src = tmp.resolve("src");
+        Path cache = tmp.resolve("cache");
+        Files.createDirectories(src.resolve("pkg"));
+        Files.write(src.resolve("pkg/A.java"), "package pkg; public class A { class Inner { } }".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> first = outputs(new JavaCompilation().addSourceDir(src).setOutputCache(cache).compile(), src);
+        assertEquals(2, first.size());
+        assertEquals(1, Files.list(cache).count());
+        Map<String, byte[]> second = outputs(new JavaCompilation().addSourceDir(src).setOutputCache(cache).compile(), src);
+        assertEquals(first.keySet(), second.keySet());
+        for (String k : first.keySet()) {
+            assertArrayEquals(first.get(k), second.get(k), k);
+        }
+        // Different options are a different entry
+        outputs(new JavaCompilation().addSourceDir(src).addOption("-g:none").setOutputCache(cache).compile(), src);
+        assertEquals(2, Files.list(cache).count());
+        Files.write(src.resolve("pkg/A.java"), "package pkg; public class A { }".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> third = outputs(new JavaCompilation().addSourceDir(src).setOutputCache(cache).compile(), src);
+        assertEquals(1, third.size());
+        assertEquals(3, Files.list(cache).count());
+    }
+
+    @Test
+    void outputCacheJarContents(@TempDir Path tmp) throws IOException {
+        Path src = tmp.resolve("src");
+        Path cache = tmp.resolve("cache");
+        Path jar = tmp.resolve("lib.jar");
+        Files.createDirectories(src.resolve("pkg"));
+        Files.write(src.resolve("pkg/U.java"), "package pkg; class U { int u() { return lib.L.X; } }".getBytes(StandardCharsets.UTF_8));
+        libJar(tmp, jar, 1);
+        long size = Files.size(jar);
+        FileTime time = Files.getLastModifiedTime(jar);
+        Map<String, byte[]> first = outputs(new JavaCompilation().addSourceDir(src).addClasspath(jar).setOutputCache(cache).compile(), src);
+        // Replaced by a jar that only differs in its contents, the inlined constant has to change
+        libJar(tmp, jar, 2);
+        Files.setLastModifiedTime(jar, time);
+        assertEquals(size, Files.size(jar));
+        Map<String, byte[]> second = outputs(new JavaCompilation().addSourceDir(src).addClasspath(jar).setOutputCache(cache).compile(), src);
+        assertFalse(Arrays.equals(first.get("pkg/U.class"), second.get("pkg/U.class")));
+        assertEquals(2, Files.list(cache).count());
+    }
+
+    static void libJar(Path tmp, Path jar, int x) throws IOException {
+        Path src = tmp.resolve("lib" + x);
+        Files.createDirectories(src.resolve("lib"));
+        Files.write(src.resolve("lib/L.java"), ("package lib; public class L { public static final int X = " + x + "; }").getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = outputs(new JavaCompilation().addSourceDir(src).compile(), src).get("lib/L.class");
+        ZipEntry entry = new ZipEntry("lib/L.class");
+        // Stored, so that both jars have the same size
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        entry.setCrc(crc.getValue());
+        entry.setTime(0);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(entry);
+            out.write(bytes);
+        }
+    }
+
+    static Map<String, byte[]> outputs(JavaCompilationResult result, Path src) {
+        HashMap<String, byte[]> r = new HashMap<>();
+        result.getInputs((in, id) -> {
+            Path sourceFile = result.getSourceFile(id);
+            assertNotNull(sourceFile, id.path);
+            assertTrue(sourceFile.startsWith(src), id.path);
+            r.put(id.path, StreamUtil.readFullyAsBytes(in.get()));
+        });
+        return r;
+    }
 }
@@ -0,0 +1,221 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.coolcrabs.brachyura.exception.ChecksumViolationException;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+
+class HttpMavenRepositoryTest {
+    final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger notModified = new AtomicInteger();
+    final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    HttpServer server;
+    String url;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/repo";
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        log.add(exchange.getRequestMethod() + ' ' + exchange.getRequestURI().getPath());
+        byte[] data = files.get(exchange.getRequestURI().getPath());
+        if (data == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        String etag = '"' + MessageDigestUtil.toHexHash(MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1).digest(data)) + '"';
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+    }
+
+    void put(String path, String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        files.put("/repo/" + path, data);
+        files.put("/repo/" + path + ".sha1", MessageDigestUtil.toHexHash(MessageDigestUtil.messageDigest(MessageDigestUtil.SHA1).digest(data)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void resolve() throws IOException {
+        put("org/example/a/1.0/a-1.0.pom", "<project/>");
+        HttpMavenRepository repo = new HttpMavenRepository(url);
+        ResolvedFile file = repo.resolve("org/example/a/1.0/", "a-1.0.pom");
+        assertArrayEquals("<project/>".getBytes(StandardCharsets.UTF_8), file.getData());
+        // Kept in memory, so there is no download for the caller to delete
+        assertNull(file.getCachePath());
+        ResolvedFile download = repo.resolveToDisk("org/example/a/1.0/", "a-1.0.pom");
+        try {
+            assertTrue(download.isTemporary());
+            assertArrayEquals("<project/>".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(download.getCachePath()));
+        } finally {
+            Files.delete(download.getCachePath());
+        }
+        assertNull(repo.resolve("org/example/a/1.0/", "a-1.0.jar"));
+        files.put("/repo/org/example/a/1.0/a-1.0.pom.sha1", "0000".getBytes(StandardCharsets.UTF_8));
+        assertThrows(ChecksumViolationException.class, () -> repo.resolve("org/example/a/1.0/", "a-1.0.pom"));
+    }
+
+    @Test
+    void streamToCache(@TempDir Path tmp) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            content.append(i);
+        }
+        put("org/example/a/1.0/a-1.0.jar", content.toString());
+        MavenResolver resolver = new MavenResolver(tmp).addRepository(new HttpMavenRepository(url));
+        ResolvedFile file = resolver.resolveArtifact(new MavenId("org.example", "a", "1.0"), null, "jar");
+        Path cached = tmp.resolve("org/example/a/1.0/a-1.0.jar");
+        assertEquals(cached, file.getCachePath());
+        assertFalse(file.isTemporary());
+        assertArrayEquals(content.toString().getBytes(StandardCharsets.UTF_8), Files.readAllBytes(cached));
+        assertEquals(new String(files.get("/repo/org/example/a/1.0/a-1.0.jar.sha1"), StandardCharsets.UTF_8), file.getSHA1MessageDigest());
+    }
+
+    @Test
+    void downloadOnceAndDeduplicate(@TempDir Path tmp) throws Exception {
+        put("org/example/a/1.0/a-1.0.jar", "same");
+        put("org/example/b/1.0/b-1.0.jar", "same");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ResolvedFile>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                // Separate resolvers, as separate builds sharing the cache would use
+                MavenResolver resolver = new MavenResolver(tmp).addRepository(new HttpMavenRepository(url));
+                results.add(executor.submit(() -> resolver.resolveArtifact(new MavenId("org.example", "a", "1.0"), null, "jar")));
+            }
+            for (Future<ResolvedFile> result : results) {
+                assertEquals("same", new String(result.get().getData(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // The jar and its checksum
+        assertEquals(2, requests.get());
+        new MavenResolver(tmp).addRepository(new HttpMavenRepository(url)).resolveArtifact(new MavenId("org.example", "b", "1.0"), null, "jar");
+        assertTrue(Files.isSameFile(tmp.resolve("org/example/a/1.0/a-1.0.jar"), tmp.resolve("org/example/b/1.0/b-1.0.jar")));
+    }
+
+    @Test
+    void parallelProbing(@TempDir Path tmp) throws IOException {
+        put("org/example/a/1.0/a-1.0.jar", "a");
+        put("org/example/b/1.0/b-1.0.jar", "b");
+        String base = url.substring(0, url.length() - "/repo".length());
+        MavenResolver resolver = new MavenResolver(tmp)
+                .addRepository(new HttpMavenRepository(base + "/first"))
+                .addRepository(new HttpMavenRepository(url))
+                .setParallelProbing(true);
+        assertEquals("a", new String(resolver.resolveArtifact(new MavenId("org.example", "a", "1.0"), null, "jar").getData(), StandardCharsets.UTF_8));
+        assertTrue(log.contains("HEAD /first/org/example/a/1.0/a-1.0.jar"));
+        assertFalse(log.contains("GET /first/org/example/a/1.0/a-1.0.jar"));
+        log.clear();
+        // The first repository did not have anything of the group
+        assertEquals("b", new String(resolver.resolveArtifact(new MavenId("org.example", "b", "1.0"), null, "jar").getData(), StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("HEAD /repo/org/example/b/1.0/b-1.0.jar", "GET /repo/org/example/b/1.0/b-1.0.jar", "GET /repo/org/example/b/1.0/b-1.0.jar.sha1"), log);
+        // But is still asked once nobody else has a file
+        put("org/example/c/1.0/c-1.0.jar", "c");
+        files.put("/first/org/example/c/1.0/c-1.0.jar", files.remove("/repo/org/example/c/1.0/c-1.0.jar"));
+        files.put("/first/org/example/c/1.0/c-1.0.jar.sha1", files.remove("/repo/org/example/c/1.0/c-1.0.jar.sha1"));
+        assertEquals("c", new String(resolver.resolveArtifact(new MavenId("org.example", "c", "1.0"), null, "jar").getData(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parallelProbingWithinGroup(@TempDir Path tmp) throws IOException {
+        put("org/example/a/1.0/a-1.0.jar", "a");
+        put("org/example/b/1.0/b-1.0.jar", "b");
+        String base = url.substring(0, url.length() - "/repo".length());
+        MavenResolver resolver = new MavenResolver(tmp)
+                .addRepository(new HttpMavenRepository(base + "/first"))
+                .addRepository(new HttpMavenRepository(base + "/second"))
+                .addRepository(new HttpMavenRepository(base + "/third"))
+                .addRepository(new HttpMavenRepository(url))
+                .setParallelProbing(true);
+        // Has neither sources nor annotations, which says nothing about the rest of the group
+        assertEquals("a", new String(Files.readAllBytes(resolver.getJarDepend(new MavenId("org.example", "a", "1.0")).jar), StandardCharsets.UTF_8));
+        log.clear();
+        assertEquals("b", new String(Files.readAllBytes(resolver.getJarDepend(new MavenId("org.example", "b", "1.0")).jar), StandardCharsets.UTF_8));
+        assertTrue(log.contains("HEAD /repo/org/example/b/1.0/b-1.0.jar"), log.toString());
+        assertFalse(log.contains("GET /first/org/example/b/1.0/b-1.0.jar"), log.toString());
+        assertFalse(log.contains("HEAD /first/org/example/b/1.0/b-1.0.jar"), log.toString());
+    }
+
+    @Test
+    void revalidateSnapshotMetadata(@TempDir Path tmp) throws IOException {
+        String folder = "org/example/a/1.0-SNAPSHOT/";
+        put(folder + "maven-metadata.xml", metadata("1.0-20220101.000000-1"));
+        put(folder + "a-1.0-20220101.000000-1.jar", "1");
+        put(folder + "a-1.0-20220102.000000-2.jar", "2");
+        MavenId id = new MavenId("org.example", "a", "1.0-SNAPSHOT");
+
+        assertEquals("1", new String(new MavenResolver(tmp).addRepository(new HttpMavenRepository(url)).resolveArtifact(id, null, "jar").getData(), StandardCharsets.UTF_8));
+        // Unchanged metadata is not downloaded again
+        MavenResolver resolver = new MavenResolver(tmp).addRepository(new HttpMavenRepository(url));
+        assertEquals("1", new String(resolver.resolveArtifact(id, null, "jar").getData(), StandardCharsets.UTF_8));
+        assertEquals(1, notModified.get());
+
+        put(folder + "maven-metadata.xml", metadata("1.0-20220102.000000-2"));
+        // Checked at most once per resolver
+        assertEquals("1", new String(resolver.resolveArtifact(id, null, "jar").getData(), StandardCharsets.UTF_8));
+        resolver = new MavenResolver(tmp).addRepository(new HttpMavenRepository(url));
+        assertEquals("2", new String(resolver.resolveArtifact(id, null, "jar").getData(), StandardCharsets.UTF_8));
+    }
+
+    static String metadata(String value) {
+        return "<metadata><versioning><snapshotVersions><snapshotVersion><extension>jar</extension><value>" + value
+                + "</value></snapshotVersion></snapshotVersions></versioning></metadata>";
+    }
+}
@@ -0,0 +1,230 @@
+package io.github.coolcrabs.brachyura.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
+import io.github.coolcrabs.brachyura.exception.ChecksumViolationException;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+
+class MavenResolverTest {
+    /**
+     * Writes a pom with the given dependencies ("group:artifact:version" or "group:artifact:version:scope") and a jar
+     */
+    static void artifact(Path repo, String group, String artifact, String version, String properties, String... dependencies) throws IOException {
+        Path dir = repo.resolve(group.replace('.', '/')).resolve(artifact).resolve(version);
+        Files.createDirectories(dir);
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project><modelVersion>4.0.0</modelVersion>");
+        pom.append("<groupId>").append(group).append("</groupId><artifactId>").append(artifact).append("</artifactId><version>").append(version).append("</version>");
+        pom.append("<properties>").append(properties).append("</properties>");
+        pom.append("<dependencies>");
+        for (String dep : dependencies) {
+            String[] d = dep.split(":");
+            pom.append("<dependency><groupId>").append(d[0]).append("</groupId><artifactId>").append(d[1]).append("</artifactId><version>").append(d[2]).append("</version>");
+            if (d.length > 3) pom.append("<scope>").append(d[3]).append("</scope>");
+            pom.append("</dependency>");
+        }
+        pom.append("</dependencies></project>");
+        Files.write(dir.resolve(artifact + "-" + version + ".pom"), pom.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve(artifact + "-" + version + ".jar"), (group + artifact + version).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Path sampleRepo(Path tmp) throws IOException {
+        Path repo = tmp.resolve("repo");
+        artifact(repo, "org.example", "root", "1.0", "<dver>2.0</dver>", "org.example:a:1.0", "org.example:b:1.0", "org.example:d:${dver}", "org.example:t:1.0:test");
+        artifact(repo, "org.example", "a", "1.0", "", "org.example:c:1.0");
+        artifact(repo, "org.example", "b", "1.0", "", "org.example:c:1.1");
+        artifact(repo, "org.example", "c", "1.0", "");
+        artifact(repo, "org.example", "c", "1.1", "");
+        artifact(repo, "org.example", "d", "2.0", "");
+        artifact(repo, "org.example", "t", "1.0", "");
+        return repo;
+    }
+
+    static Map<String, JavaJarDependency> byArtifact(Collection<JavaJarDependency> deps) {
+        HashMap<String, JavaJarDependency> r = new HashMap<>();
+        for (JavaJarDependency dep : deps) {
+            r.put(dep.mavenId.artifactId, dep);
+        }
+        return r;
+    }
+
+    @Test
+    void transitive(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo));
+        Map<String, JavaJarDependency> deps = byArtifact(resolver.getTransitiveDependencies(new MavenId("org.example", "root", "1.0")));
+        assertEquals(5, deps.size(), deps.toString());
+        assertEquals("2.0", deps.get("d").mavenId.version);
+        assertNull(deps.get("t"));
+        for (JavaJarDependency dep : deps.values()) {
+            assertTrue(Files.isRegularFile(dep.jar), dep.jar.toString());
+            assertNull(dep.sourcesJar);
+        }
+        // Missing files are remembered
+        assertTrue(Files.exists(tmp.resolve("cache/org/example/a/1.0/a-1.0-sources.jar.nolookup")));
+    }
+
+    @Test
+    void nearestVersionWins(@TempDir Path tmp) throws IOException {
+        Path repo = tmp.resolve("repo");
+        artifact(repo, "org.example", "root", "1.0", "", "org.example:a:1.0", "org.example:b:1.0");
+        artifact(repo, "org.example", "a", "1.0", "", "org.example:x:1.0");
+        artifact(repo, "org.example", "x", "1.0", "", "org.example:c:1.9");
+        artifact(repo, "org.example", "b", "1.0", "", "org.example:c:1.10");
+        artifact(repo, "org.example", "c", "1.9", "");
+        artifact(repo, "org.example", "c", "1.10", "");
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo));
+        Map<String, JavaJarDependency> deps = byArtifact(resolver.getTransitiveDependencies(new MavenId("org.example", "root", "1.0")));
+        // Neither version replaces the other, the one closer to the root is kept
+        assertEquals("1.10", deps.get("c").mavenId.version);
+        assertEquals(5, deps.size(), deps.toString());
+    }
+
+    @Test
+    void parentProperties(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        Path parentDir = repo.resolve("org/example/parent/1.0");
+        Files.createDirectories(parentDir);
+        Files.write(parentDir.resolve("parent-1.0.pom"), ("<project><groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version>"
+                + "<properties><aver>1.0</aver><dver>1.0</dver></properties></project>").getBytes(StandardCharsets.UTF_8));
+        artifact(repo, "org.example", "child", "1.0", "<dver>2.0</dver>", "org.example:a:${aver}", "org.example:d:${dver}");
+        Path childPom = repo.resolve("org/example/child/1.0/child-1.0.pom");
+        String pom = new String(Files.readAllBytes(childPom), StandardCharsets.UTF_8);
+        Files.write(childPom, pom.replace("<modelVersion>4.0.0</modelVersion>", "<parent><groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>")
+                .getBytes(StandardCharsets.UTF_8));
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo));
+        Map<String, JavaJarDependency> deps = byArtifact(resolver.getTransitiveDependencies(new MavenId("org.example", "child", "1.0")));
+        assertEquals("1.0", deps.get("a").mavenId.version);
+        assertEquals("2.0", deps.get("d").mavenId.version);
+        assertNotNull(deps.get("c"));
+        // Parsed once and shared
+        assertSame(resolver.getPom(new MavenId("org.example", "parent", "1.0")), resolver.getPom(new MavenId("org.example", "parent", "1.0")));
+        assertNull(resolver.getPom(new MavenId("org.example", "missing", "1.0")));
+    }
+
+    @Test
+    void managedVersions(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        Path parentDir = repo.resolve("org/example/bom/1.0");
+        Files.createDirectories(parentDir);
+        Files.write(parentDir.resolve("bom-1.0.pom"), ("<project><groupId>org.example</groupId><artifactId>bom</artifactId><version>1.0</version>"
+                + "<properties><cver>1.1</cver></properties><dependencyManagement><dependencies>"
+                + "<dependency><groupId>${project.groupId}</groupId><artifactId>c</artifactId><version>${cver}</version></dependency>"
+                + "<dependency><groupId>org.example</groupId><artifactId>t</artifactId><version>1.0</version><scope>test</scope></dependency>"
+                + "</dependencies></dependencyManagement></project>").getBytes(StandardCharsets.UTF_8));
+        Path dir = repo.resolve("org/example/managed/1.0");
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("managed-1.0.pom"), ("<project><parent><groupId>org.example</groupId><artifactId>bom</artifactId><version>1.0</version></parent>"
+                + "<artifactId>managed</artifactId><dependencies>"
+                + "<dependency><groupId>org.example</groupId><artifactId>c</artifactId>"
+                + "<exclusions><exclusion><groupId>org.example</groupId><artifactId>x</artifactId><version>9.9</version></exclusion></exclusions></dependency>"
+                + "<dependency><groupId>org.example</groupId><artifactId>t</artifactId></dependency>"
+                + "</dependencies><build><plugins><plugin><version>9.9</version></plugin></plugins></build></project>").getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("managed-1.0.jar"), new byte[0]);
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo));
+        Map<String, JavaJarDependency> deps = byArtifact(resolver.getTransitiveDependencies(new MavenId("org.example", "managed", "1.0")));
+        assertEquals("1.1", deps.get("c").mavenId.version);
+        assertNull(deps.get("t"));
+        assertEquals(2, deps.size(), deps.toString());
+    }
+
+    @Test
+    void offline(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).getTransitiveDependencies(new MavenId("org.example", "root", "1.0"));
+        assertTrue(Files.exists(tmp.resolve("cache").resolve(MavenCacheIndex.FILE_NAME)));
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).setOffline(true);
+        Map<String, JavaJarDependency> deps = byArtifact(resolver.getTransitiveDependencies(new MavenId("org.example", "root", "1.0")));
+        assertEquals(5, deps.size(), deps.toString());
+        // Never fetched before
+        assertNull(resolver.getJarDepend(new MavenId("org.example", "t", "1.0")));
+        assertFalse(Files.exists(tmp.resolve("cache/org/example/t/1.0/t-1.0.jar.nolookup")));
+    }
+
+    @Test
+    void deletedCacheFiles(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        MavenId id = new MavenId("org.example", "c", "1.1");
+        assertNotNull(new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).getJarDepend(id));
+        PathUtil.deleteDirectory(tmp.resolve("cache/org/example/c"));
+        JavaJarDependency dep = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).getJarDepend(id);
+        assertNotNull(dep);
+        assertEquals("org.examplec1.1", new String(Files.readAllBytes(dep.jar), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void negativeLookupTtl(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        MavenId id = new MavenId("org.example", "late", "1.0");
+        assertNull(new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).getJarDepend(id));
+        artifact(repo, "org.example", "late", "1.0", "");
+        assertNull(new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).getJarDepend(id));
+        assertNotNull(new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).setNegativeLookupTtl(0).getJarDepend(id));
+        assertNotNull(new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).getJarDepend(id));
+    }
+
+    @Test
+    void lockfile(@TempDir Path tmp) throws IOException {
+        Path repo = sampleRepo(tmp);
+        Path lockfile = tmp.resolve("maven.lock");
+        MavenId root = new MavenId("org.example", "root", "1.0");
+        Map<String, JavaJarDependency> deps = byArtifact(new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo))
+                .setLockfile(lockfile).getTransitiveDependencies(root));
+        assertEquals(5, deps.size(), deps.toString());
+        String lock = new String(Files.readAllBytes(lockfile), StandardCharsets.UTF_8);
+        assertEquals(1, lock.split("org\\.example:c:").length - 1, lock);
+
+        // Poms are no longer read
+        artifact(repo, "org.example", "root", "1.0", "", "org.example:a:1.0");
+        deps = byArtifact(new MavenResolver(tmp.resolve("cache2")).addRepository(new LocalMavenRepository(repo))
+                .setLockfile(lockfile).getTransitiveDependencies(root));
+        assertEquals(5, deps.size(), deps.toString());
+        assertEquals(new MavenId(lock.substring(lock.indexOf("org.example:c:")).split("\"")[0]), deps.get("c").mavenId);
+
+        // Newly downloaded artifacts must match
+        Files.write(repo.resolve("org/example/d/2.0/d-2.0.jar"), new byte[] {1});
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache3")).addRepository(new LocalMavenRepository(repo)).setLockfile(lockfile);
+        assertThrows(ChecksumViolationException.class, () -> resolver.getTransitiveDependencies(root));
+
+        // Different settings resolve again
+        deps = byArtifact(new MavenResolver(tmp.resolve("cache2")).addRepository(new LocalMavenRepository(repo))
+                .setLockfile(lockfile).setResolveTestDependencies(true).getTransitiveDependencies(root));
+        assertEquals(3, deps.size(), deps.toString());
+    }
+
+    @Test
+    void concurrentResolution(@TempDir Path tmp) throws Exception {
+        Path repo = sampleRepo(tmp);
+        MavenResolver resolver = new MavenResolver(tmp.resolve("cache")).addRepository(new LocalMavenRepository(repo)).setDownloadThreads(4);
+        Thread[] threads = new Thread[8];
+        JavaJarDependency[] results = new JavaJarDependency[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            int j = i;
+            threads[i] = new Thread(() -> results[j] = resolver.getJarDepend(new MavenId("org.example", "c", "1.1")));
+            threads[i].start();
+        }
+        for (Thread t : threads) t.join();
+        for (JavaJarDependency r : results) {
+            assertNotNull(r);
+            assertEquals("org.examplec1.1", new String(Files.readAllBytes(r.jar), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.coolcrabs.brachyura.maven.publish;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.coolcrabs.brachyura.dependency.JavaJarDependency;
+import io.github.coolcrabs.brachyura.maven.LocalMavenRepository;
+import io.github.coolcrabs.brachyura.maven.MavenId;
+import io.github.coolcrabs.brachyura.util.MessageDigestUtil;
+
+class MavenPublisherTest {
+    @Test
+    void publishToAll(@TempDir Path tmp) throws Exception {
+        Path jar = tmp.resolve("a.jar");
+        Path sources = tmp.resolve("a-sources.jar");
+        Files.write(jar, "jar".getBytes(StandardCharsets.UTF_8));
+        Files.write(sources, "sources".getBytes(StandardCharsets.UTF_8));
+        MavenPublisher publisher = new MavenPublisher()
+                .addRepository(new LocalMavenRepository(tmp.resolve("first")))
+                .addRepository(new LocalMavenRepository(tmp.resolve("second")));
+        publisher.publishJar(new JavaJarDependency(jar, sources, new MavenId("org.example", "a", "1.0")), Collections.emptyList());
+        for (String repo : new String[] {"first", "second"}) {
+            Path folder = tmp.resolve(repo).resolve("org/example/a/1.0");
+            assertTrue(Files.exists(folder.resolve("a-1.0.pom")));
+            assertArrayEquals(Files.readAllBytes(jar), Files.readAllBytes(folder.resolve("a-1.0.jar")));
+            assertArrayEquals(Files.readAllBytes(sources), Files.readAllBytes(folder.resolve("a-1.0-sources.jar")));
+            assertChecksum(folder.resolve("a-1.0.jar"), "MD5", "md5");
+            assertChecksum(folder.resolve("a-1.0.jar"), MessageDigestUtil.SHA1, "sha1");
+            assertChecksum(folder.resolve("a-1.0-sources.jar"), MessageDigestUtil.SHA256, "sha256");
+            assertChecksum(folder.resolve("a-1.0.pom"), MessageDigestUtil.SHA1, "sha1");
+        }
+    }
+
+    static void assertChecksum(Path file, String algorithm, String extension) throws IOException {
+        String expected = MessageDigestUtil.toHexHash(MessageDigestUtil.messageDigest(algorithm).digest(Files.readAllBytes(file)));
+        assertEquals(expected, new String(Files.readAllBytes(file.resolveSibling(file.getFileName() + "." + extension)), StandardCharsets.UTF_8));
+    }
+}
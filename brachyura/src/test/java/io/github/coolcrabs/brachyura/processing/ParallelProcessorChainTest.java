@@ -0,0 +1,111 @@
+package io.github.coolcrabs.brachyura.processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.coolcrabs.brachyura.processing.sinks.ZipProcessingSink;
+import io.github.coolcrabs.brachyura.util.StreamUtil;
+
+class ParallelProcessorChainTest {
+    static final ProcessingSource SOURCE = new ProcessingSource() {
+        @Override
+        public void getInputs(ProcessingSink sink) {
+            for (int i = 0; i < 500; i++) {
+                byte[] bytes = ("entry " + i).getBytes(StandardCharsets.UTF_8);
+                sink.sink(() -> new ByteArrayInputStream(bytes), new ProcessingId("dir" + (i % 7) + "/file" + i + ".txt", this));
+            }
+        }
+    };
+
+    static final EntryLocalProcessor UPPERCASE = (e, sink) -> {
+        String s = StreamUtil.readFullyAsString(e.in.get()).toUpperCase(Locale.ROOT);
+        sink.sink(() -> new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)), e.id);
+    };
+
+    static final EntryLocalProcessor DUPLICATE = (e, sink) -> {
+        sink.sink(e.in, e.id);
+        sink.sink(e.in, new ProcessingId(e.id.path + ".copy", e.id.source));
+    };
+
+    static class Recorder implements Processor {
+        final List<String> seen = new ArrayList<>();
+
+        @Override
+        public void process(Collection<ProcessingEntry> inputs, ProcessingSink sink) throws IOException {
+            for (ProcessingEntry e : inputs) {
+                seen.add(e.id.path);
+                sink.sink(e.in, e.id);
+            }
+        }
+    }
+
+    static class SelectiveRecorder extends Recorder implements SelectiveProcessor {
+        final String prefix;
+
+        SelectiveRecorder(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean accepts(String path) {
+            return path.startsWith(prefix);
+        }
+    }
+
+    static class SelectiveUppercase implements EntryLocalProcessor, SelectiveProcessor {
+        @Override
+        public boolean accepts(String path) {
+            return path.endsWith(".copy");
+        }
+
+        @Override
+        public void processEntry(ProcessingEntry entry, ProcessingSink sink) throws IOException {
+            UPPERCASE.processEntry(entry, sink);
+        }
+    }
+
+    @Test
+    void selectiveProcessors() {
+        SelectiveRecorder serialRecorder = new SelectiveRecorder("dir3/");
+        SelectiveRecorder parallelRecorder = new SelectiveRecorder("dir3/");
+        byte[] serial = zip(new ProcessorChain(DUPLICATE, serialRecorder, new SelectiveUppercase()));
+        byte[] parallel = zip(new ParallelProcessorChain(4, DUPLICATE, parallelRecorder, new SelectiveUppercase()));
+        for (String path : serialRecorder.seen) {
+            assertTrue(path.startsWith("dir3/"), path);
+        }
+        assertEquals(142, serialRecorder.seen.size());
+        assertEquals(serialRecorder.seen, parallelRecorder.seen);
+        assertArrayEquals(serial, parallel);
+    }
+
+    @Test
+    void matchesSerialChain() {
+        Recorder serialRecorder = new Recorder();
+        Recorder parallelRecorder = new Recorder();
+        byte[] serial = zip(new ProcessorChain(UPPERCASE, DUPLICATE, serialRecorder, UPPERCASE));
+        byte[] parallel = zip(new ParallelProcessorChain(4, UPPERCASE, DUPLICATE, parallelRecorder, UPPERCASE));
+        assertEquals(1000, serialRecorder.seen.size());
+        assertEquals(serialRecorder.seen, parallelRecorder.seen);
+        assertArrayEquals(serial, parallel);
+    }
+
+    static byte[] zip(ProcessorChain chain) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipProcessingSink sink = new ZipProcessingSink(out)) {
+            chain.apply(sink, SOURCE);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.coolcrabs.brachyura.project.java;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.coolcrabs.brachyura.ide.IdeModule;
+import io.github.coolcrabs.brachyura.processing.ProcessingSource;
+import io.github.coolcrabs.brachyura.processing.sources.ProcessingSponge;
+import io.github.coolcrabs.brachyura.util.Util;
+
+class BuildModuleSchedulerTest {
+    static class TestModule extends BuildModule {
+        final String name;
+        final List<BuildModule> dependencies;
+        final List<String> log;
+        final CyclicBarrier barrier;
+
+        TestModule(String name, List<String> log, CyclicBarrier barrier, BuildModule... dependencies) {
+            this.name = name;
+            this.log = log;
+            this.barrier = barrier;
+            this.dependencies = Arrays.asList(dependencies);
+        }
+
+        @Override
+        public String getModuleName() {
+            return name;
+        }
+
+        @Override
+        public Path getModuleRoot() {
+            return Paths.get(name);
+        }
+
+        @Override
+        protected List<BuildModule> getModuleDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        protected ProcessingSource createCompilationOutput() {
+            for (BuildModule dep : dependencies) {
+                synchronized (log) {
+                    assertTrue(log.contains(dep.getModuleName()), name + " compiled before " + dep.getModuleName());
+                }
+            }
+            if (barrier != null) {
+                try {
+                    // Only passes if all modules sharing the barrier are compiled at once
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw Util.sneak(e);
+                }
+            }
+            if (name.startsWith("broken")) throw new IllegalStateException(name);
+            synchronized (log) {
+                log.add(name);
+            }
+            return new ProcessingSponge();
+        }
+
+        @Override
+        public IdeModule ideModule() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    void independentModulesCompileConcurrently() {
+        List<String> log = new ArrayList<>();
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        TestModule api = new TestModule("api", log, null);
+        TestModule a = new TestModule("a", log, barrier, api);
+        TestModule b = new TestModule("b", log, barrier, api);
+        TestModule c = new TestModule("c", log, barrier, api);
+        TestModule root = new TestModule("root", log, null, a, b, c, api);
+        BuildModuleScheduler.compile(Collections.singletonList(root), 3);
+        assertEquals(5, log.size());
+        assertEquals("api", log.get(0));
+        assertEquals("root", log.get(4));
+    }
+
+    @Test
+    void failureStopsDependents() {
+        List<String> log = new ArrayList<>();
+        TestModule api = new TestModule("api", log, null);
+        TestModule broken = new TestModule("broken", log, null, api);
+        TestModule other = new TestModule("other", log, null, api);
+        TestModule root = new TestModule("root", log, null, broken, other);
+        assertThrows(IllegalStateException.class, () -> BuildModuleScheduler.compile(Collections.singletonList(root), 4));
+        assertFalse(log.contains("root"));
+    }
+
+    @Test
+    void cycle() {
+        List<BuildModule> deps = new ArrayList<>();
+        TestModule a = new TestModule("a", new ArrayList<>(), null) {
+            @Override
+            protected List<BuildModule> getModuleDependencies() {
+                return deps;
+            }
+        };
+        TestModule b = new TestModule("b", new ArrayList<>(), null, a);
+        deps.add(b);
+        assertThrows(IllegalStateException.class, () -> BuildModuleScheduler.compile(Collections.singletonList(b), 2));
+    }
+}
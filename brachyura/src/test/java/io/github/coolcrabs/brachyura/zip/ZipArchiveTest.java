@@ -0,0 +1,209 @@
+package io.github.coolcrabs.brachyura.zip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.coolcrabs.brachyura.processing.ProcessingEntry;
+import io.github.coolcrabs.brachyura.processing.ProcessingId;
+import io.github.coolcrabs.brachyura.processing.ProcessorChain;
+import io.github.coolcrabs.brachyura.processing.sinks.ZipProcessingSink;
+import io.github.coolcrabs.brachyura.processing.sources.ZipProcessingSource;
+import io.github.coolcrabs.brachyura.util.PathUtil;
+import io.github.coolcrabs.brachyura.util.StreamUtil;
+
+class ZipArchiveTest {
+    @TempDir
+    Path tmp;
+
+    static Map<String, byte[]> contents() {
+        LinkedHashMap<String, byte[]> r = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = 0; j < i * 100; j++) b.append("line ").append(j).append('\n');
+            r.put("pkg" + (i % 3) + "/File" + i + ".txt", b.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        r.put("ünïcödé.txt", "ü".getBytes(StandardCharsets.UTF_8));
+        r.put("empty", new byte[0]);
+        return r;
+    }
+
+    Path writeJdkZip() throws Exception {
+        Path zip = tmp.resolve("in.zip");
+        try (ZipOutputStream out = new ZipOutputStream(PathUtil.outputStream(zip))) {
+            out.putNextEntry(new ZipEntry("pkg0/"));
+            int i = 0;
+            for (Map.Entry<String, byte[]> e : contents().entrySet()) {
+                ZipEntry entry = new ZipEntry(e.getKey());
+                if (i++ % 2 == 0) {
+                    CRC32 crc = new CRC32();
+                    crc.update(e.getValue());
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(e.getValue().length);
+                    entry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(entry);
+                out.write(e.getValue());
+            }
+        }
+        return zip;
+    }
+
+    static void assertContents(Map<String, byte[]> expected, Path zip) throws Exception {
+        try (ZipFile f = new ZipFile(zip.toFile())) {
+            assertEquals(expected.size(), f.size());
+            for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+                ZipEntry entry = f.getEntry(e.getKey());
+                assertNotNull(entry, e.getKey());
+                try (InputStream in = f.getInputStream(entry)) {
+                    assertArrayEquals(e.getValue(), StreamUtil.readFullyAsBytes(in), e.getKey());
+                }
+            }
+        }
+    }
+
+    @Test
+    void readJdkZip() throws Exception {
+        readJdkZip(true);
+    }
+
+    @Test
+    void readJdkZipChannel() throws Exception {
+        Path zip = readJdkZip(false);
+        // Nothing keeps the file open after closing
+        Files.delete(zip);
+    }
+
+    Path readJdkZip(boolean map) throws Exception {
+        Map<String, byte[]> expected = contents();
+        Path zip = writeJdkZip();
+        try (ZipArchive archive = new ZipArchive(zip, map)) {
+            assertEquals(expected.size() + 1, archive.getEntries().size());
+            for (Map.Entry<String, byte[]> e : expected.entrySet()) {
+                ZipArchive.Entry entry = archive.getEntry(e.getKey());
+                assertNotNull(entry, e.getKey());
+                try (InputStream in = entry.get()) {
+                    assertArrayEquals(e.getValue(), StreamUtil.readFullyAsBytes(in), e.getKey());
+                }
+                if (entry.method == ZipArchive.STORED) {
+                    ByteBuffer data = archive.getRawData(entry);
+                    byte[] bytes = new byte[data.remaining()];
+                    data.get(bytes);
+                    assertArrayEquals(e.getValue(), bytes, e.getKey());
+                }
+            }
+        }
+        return zip;
+    }
+
+    @Test
+    void passthrough() throws Exception {
+        Path in = writeJdkZip();
+        Path out = tmp.resolve("out.zip");
+        Path out2 = tmp.resolve("out2.zip");
+        Map<String, byte[]> expected = contents();
+        try (
+            ZipProcessingSource source = new ZipProcessingSource(in);
+            ZipProcessingSink sink = new ZipProcessingSink(out)
+        ) {
+            new ProcessorChain().apply(sink, source);
+        }
+        assertContents(expected, out);
+        // Raw copies keep the compressed data of the input
+        try (ZipArchive a = new ZipArchive(in); ZipArchive b = new ZipArchive(out)) {
+            for (String name : expected.keySet()) {
+                assertEquals(a.getEntry(name).method, b.getEntry(name).method, name);
+                assertEquals(a.getEntry(name).compressedSize, b.getEntry(name).compressedSize, name);
+            }
+        }
+        // Modified entries are compressed again, untouched ones are copied from the previous output
+        byte[] replaced = "replaced".getBytes(StandardCharsets.UTF_8);
+        try (
+            ZipProcessingSource source = new ZipProcessingSource(out);
+            ZipProcessingSink sink = new ZipProcessingSink(out2)
+        ) {
+            new ProcessorChain((inputs, s) -> inputs.forEach(e ->
+                s.sink(e.id.path.equals("empty") ? () -> new ByteArrayInputStream(replaced) : e.in, new ProcessingId(e.id.path, e.id.source))
+            )).apply(sink, source);
+        }
+        expected.put("empty", replaced);
+        assertContents(expected, out2);
+    }
+
+    @Test
+    void reproducible() throws Exception {
+        Path a = tmp.resolve("a.zip");
+        Path b = tmp.resolve("b.zip");
+        for (Path p : new Path[] {a, b}) {
+            try (ZipProcessingSink sink = new ZipProcessingSink(p)) {
+                for (Map.Entry<String, byte[]> e : contents().entrySet()) {
+                    sink.sink(() -> new ByteArrayInputStream(e.getValue()), new ProcessingId(e.getKey(), null));
+                }
+            }
+        }
+        assertContents(contents(), a);
+        assertArrayEquals(Files.readAllBytes(a), Files.readAllBytes(b));
+        try (ZipFile f = new ZipFile(a.toFile())) {
+            assertEquals(new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0).getTimeInMillis(), f.getEntry("empty").getTime());
+        }
+    }
+
+    @Test
+    void parallelMatchesSerial() throws Exception {
+        Path in = writeJdkZip();
+        Path serial = tmp.resolve("serial.zip");
+        Path parallel = tmp.resolve("parallel.zip");
+        for (Path p : new Path[] {serial, parallel}) {
+            try (
+                ZipProcessingSource source = new ZipProcessingSource(in);
+                ZipProcessingSink sink = new ZipProcessingSink(p, p == serial ? 1 : 4)
+            ) {
+                // Recompress every other entry
+                new ProcessorChain((inputs, s) -> {
+                    int i = 0;
+                    for (ProcessingEntry e : inputs) {
+                        s.sink(i++ % 2 == 0 ? () -> e.in.get() : e.in, e.id);
+                    }
+                }).apply(sink, source);
+            }
+        }
+        assertContents(contents(), serial);
+        assertArrayEquals(Files.readAllBytes(serial), Files.readAllBytes(parallel));
+    }
+
+    @Test
+    void stored() throws Exception {
+        Path zip = tmp.resolve("stored.zip");
+        try (ZipProcessingSink sink = new ZipProcessingSink(zip, 2, Deflater.NO_COMPRESSION)) {
+            for (Map.Entry<String, byte[]> e : contents().entrySet()) {
+                sink.sink(() -> new ByteArrayInputStream(e.getValue()), new ProcessingId(e.getKey(), null));
+            }
+        }
+        assertContents(contents(), zip);
+        try (ZipArchive archive = new ZipArchive(zip)) {
+            for (ZipArchive.Entry e : archive.getEntries()) {
+                assertEquals(ZipArchive.STORED, e.method, e.name);
+                assertEquals(e.size, e.compressedSize, e.name);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.benf.cfr.reader.api.CfrDriver;
 import org.benf.cfr.reader.api.ClassFileSource;
 import org.benf.cfr.reader.api.OutputSinkFactory;
 import org.benf.cfr.reader.apiunreleased.ClassFileSource2;
+import org.benf.cfr.reader.mapping.MappingFactory;
 import org.benf.cfr.reader.state.ClassFileSourceChained;
 import org.benf.cfr.reader.state.ClassFileSourceImpl;
 import org.benf.cfr.reader.state.ClassFileSourceWrapper;
@@ -61,10 +62,25 @@ public class CfrDriverImpl implements CfrDriver {
         // Can't sort a 1.6 singleton list.
         toAnalyse = ListFactory.newList(toAnalyse);
         Collections.sort(toAnalyse);
+        // Classes that are analysed together may share their state, so that the classes they reference are only
+        // parsed once.  Bounding the size of the batches, and thus the size of the cache, is up to the caller.
+        DCCommonState sharedState = null;
+        if (options.getOption(OptionsImpl.SHARE_CLASS_STATE)) {
+            sharedState = new DCCommonState(options, classFileSource);
+            sharedState.javadocProvider = javadocProvider;
+            sharedState = new DCCommonState(sharedState, MappingFactory.get(options, sharedState));
+        }
         for (String path : toAnalyse) {
             // TODO : We shouldn't have to discard state here.  But we do, because
             // it causes test fails.  (used class name table retains useful symbols).
             classFileSource.informAnalysisRelativePathDetail(null, null);
+            if (sharedState != null) {
+                DumperFactory dumperFactory = outputSinkFactory != null ?
+                        new SinkDumperFactory(outputSinkFactory, options) :
+                        new InternalDumperFactoryImpl(options);
+                Driver.doMappedClass(sharedState, path, skipInnerClass, dumperFactory);
+                continue;
+            }
             // Note - both of these need to be reset, as they have caches.
             DCCommonState dcCommonState = new DCCommonState(options, classFileSource);
             dcCommonState.javadocProvider = javadocProvider;
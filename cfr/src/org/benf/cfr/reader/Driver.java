@@ -53,7 +53,15 @@ class Driver {
         Options options = dcCommonState.getOptions();
         ObfuscationMapping mapping = MappingFactory.get(options, dcCommonState);
         dcCommonState = new DCCommonState(dcCommonState, mapping);
+        doMappedClass(dcCommonState, path, skipInnerClass, dumperFactory);
+    }
 
+    /*
+     * As doClass, for a state that the obfuscation mapping was already applied to.  Used to analyse several classes
+     * with the same state, which then only loads each class they reference once.
+     */
+    static void doMappedClass(DCCommonState dcCommonState, String path, boolean skipInnerClass, DumperFactory dumperFactory) {
+        Options options = dcCommonState.getOptions();
         IllegalIdentifierDump illegalIdentifierDump = IllegalIdentifierDump.Factory.get(options);
         Dumper d = new ToStringDumper(); // sentinel dumper.
         ExceptionDumper ed = dumperFactory.getExceptionDumper();
@@ -563,6 +563,9 @@ public class OptionsImpl implements Options {
     public static final PermittedOptionProvider.Argument<Boolean> TRACK_BYTECODE_LOC = register(new PermittedOptionProvider.Argument<Boolean>(
             "trackbytecodeloc", defaultFalseBooleanDecoder,
             "Propagate bytecode location info."));
+    public static final PermittedOptionProvider.Argument<Boolean> SHARE_CLASS_STATE = register(new PermittedOptionProvider.Argument<Boolean>(
+            "shareclassstate", defaultFalseBooleanDecoder,
+            "When analysing several classes at once through the API, load and parse every class they reference only once, as when analysing a jar.\nBy default the state is discarded after every class."));
 
 
     public OptionsImpl(Map<String, String> opts) {